@@ -0,0 +1,17 @@
+package net.meteor.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 为GET和HEAD请求的输出生成ETag，If-None-Match匹配时返回304。
+ * <p>
+ * Controller实现了{@link net.meteor.handler.VersionProvider}时先使用它提供的版本和最后修改时间判断，不执行处理方法；
+ * 没有提供版本时对输出的内容计算hash，内容需要全部缓冲后才能写出
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ETag {
+}
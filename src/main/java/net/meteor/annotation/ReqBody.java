@@ -0,0 +1,15 @@
+package net.meteor.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReqBody {
+	/**
+	 * 请求体的最大字节数，小于0时使用ConverterFactory中的默认值
+	 */
+	long maxSize() default -1;
+}
@@ -3,9 +3,17 @@ package net.meteor.converter;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+
+import net.meteor.exception.ConvertFailedException;
+import net.meteor.utils.ScalarParser;
+import net.meteor.utils.ScalarParsers;
+
+import org.apache.commons.lang.StringUtils;
 
 /**
- * 类型转换器，用于将request请求中的参数、uriTemplateVariables中的变量值转换为数组类型
+ * 类型转换器，用于将request请求中的参数、uriTemplateVariables中的变量值转换为数组类型。
+ * 使用默认转换器的基本类型数组直接解析填充
  * 
  * @author wuqh
  * @see CollectionConverter
@@ -14,6 +22,8 @@ import java.util.Collection;
 public class ArrayConverter implements Converter {
 	private final CollectionConverter collectionConverter;
 	private final Class<?> componentType;
+	private final boolean primitive;
+	private final ScalarParser<?> parser;
 
 	/**
 	 * 构造函数
@@ -26,19 +36,129 @@ public class ArrayConverter implements Converter {
 	public ArrayConverter(Converter internalConverter, Class<?> componentType) {
 		this.componentType = componentType;
 		this.collectionConverter = new CollectionConverter(internalConverter, componentType);
+		// 只有默认的转换器才直接解析，自定义的转换器仍然通过转换器转换
+		this.primitive = componentType.isPrimitive() && internalConverter.getClass() == SimpleTypeConverter.class;
+		this.parser = (primitive ? ScalarParsers.getParser(componentType) : null);
 	}
 
-	@SuppressWarnings("rawtypes")
 	@Override
 	public Object convertValue(ContextProvider provider, String propertyName, Class<?> arrayType) {
-		Collection collection = (Collection) collectionConverter.convertValue(provider, propertyName, ArrayList.class);
-		Object array = Array.newInstance(componentType, collection.size());
-		int index = 0;
-		for (Object o : collection) {
-			Array.set(array, index, o);
-			index++;
+		if (primitive) {
+			return convertPrimitiveArray(provider, propertyName);
+		}
+		Collection<?> collection = (Collection<?>) collectionConverter.convertValue(provider, propertyName,
+				ArrayList.class);
+		Object[] array = (Object[]) Array.newInstance(componentType, collection.size());
+		return collection.toArray(array);
+	}
+
+	/**
+	 * 直接解析请求参数填充基本类型数组，不需要装箱后再通过{@link Array#set(Object, int, Object)}设置
+	 * 
+	 * @param provider
+	 * @param propertyName
+	 * @return
+	 */
+	private Object convertPrimitiveArray(ContextProvider provider, String propertyName) {
+		int size = collectionConverter.getElementCount(provider, propertyName);
+		Map<String, String[]> parameterValues = provider.getRequestParameters();
+		String[] values = (parameterValues == null ? null : parameterValues.get(propertyName));
+		if (values == null) {
+			values = new String[0];
+		}
+		if (values.length < size) {
+			if (provider.addBindingError(propertyName)) {
+				return Array.newInstance(componentType, 0);
+			}
+			throw new ConvertFailedException("参数[" + propertyName + "]只有" + values.length + "个值，无法设置到长度为" + size
+					+ "的基本类型数组");
+		}
+
+		if (provider.isCollectBindingErrors()) {
+			values = checkValues(provider, propertyName, values, size);
+		}
+
+		try {
+			if (componentType == int.class) {
+				int[] array = new int[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = StringUtils.isBlank(values[i]) ? 0 : Integer.parseInt(values[i]);
+				}
+				return array;
+			}
+			if (componentType == long.class) {
+				long[] array = new long[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = StringUtils.isBlank(values[i]) ? 0L : Long.parseLong(values[i]);
+				}
+				return array;
+			}
+			if (componentType == double.class) {
+				double[] array = new double[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = StringUtils.isBlank(values[i]) ? 0.0 : Double.parseDouble(values[i]);
+				}
+				return array;
+			}
+			if (componentType == boolean.class) {
+				boolean[] array = new boolean[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = !StringUtils.isBlank(values[i]) && Boolean.parseBoolean(values[i]);
+				}
+				return array;
+			}
+			if (componentType == float.class) {
+				float[] array = new float[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = StringUtils.isBlank(values[i]) ? 0.0f : Float.parseFloat(values[i]);
+				}
+				return array;
+			}
+			if (componentType == short.class) {
+				short[] array = new short[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = StringUtils.isBlank(values[i]) ? 0 : Short.parseShort(values[i]);
+				}
+				return array;
+			}
+			if (componentType == byte.class) {
+				byte[] array = new byte[size];
+				for (int i = 0; i < size; i++) {
+					array[i] = StringUtils.isBlank(values[i]) ? 0 : Byte.parseByte(values[i]);
+				}
+				return array;
+			}
+			char[] array = new char[size];
+			for (int i = 0; i < size; i++) {
+				array[i] = StringUtils.isBlank(values[i]) ? (char) 0 : values[i].charAt(0);
+			}
+			return array;
+		} catch (NumberFormatException e) {
+			throw new ConvertFailedException("解析参数[" + propertyName + "]到[" + componentType + "[]]失败：", e);
+		}
+	}
+
+	/**
+	 * 检查参数值的格式，格式不正确时记录绑定错误，并将该位置的值作为空字符串处理
+	 * 
+	 * @param provider
+	 * @param propertyName
+	 * @param values
+	 * @param size
+	 * @return 都正确时返回原数组
+	 */
+	private String[] checkValues(ContextProvider provider, String propertyName, String[] values, int size) {
+		String[] checkedValues = values;
+		for (int i = 0; i < size; i++) {
+			if (!ScalarParsers.isParsable(parser, values[i])) {
+				if (checkedValues == values) {
+					checkedValues = values.clone();
+					provider.addBindingError(propertyName);
+				}
+				checkedValues[i] = null;
+			}
 		}
-		return array;
+		return checkedValues;
 	}
 
 }
@@ -0,0 +1,52 @@
+package net.meteor.converter;
+
+/**
+ * Bean访问器，用于创建Bean实例以及按照属性序号调用getter、setter方法，每个Bean类型生成一个。
+ * int、long、double、boolean类型的属性可以通过对应的方法直接设置，不需要装箱。
+ * <p>
+ * 该类只在框架内部使用，声明为public是因为生成的访问器类由单独的ClassLoader加载，需要能够继承该类
+ *
+ * @author wuqh
+ *
+ * @see BeanAccessorGenerator
+ */
+public abstract class BeanAccessor {
+	/**
+	 * 创建Bean实例
+	 *
+	 * @return
+	 * @throws Exception
+	 */
+	public abstract Object newInstance() throws Exception;
+
+	/**
+	 * 设置属性值
+	 *
+	 * @param bean
+	 * @param index
+	 *            属性序号
+	 * @param value
+	 * @throws Exception
+	 */
+	public abstract void set(Object bean, int index, Object value) throws Exception;
+
+	/**
+	 * 获取属性值，基本类型返回封装类型
+	 *
+	 * @param bean
+	 * @param index
+	 *            属性序号
+	 * @return
+	 * @throws Exception
+	 *             属性没有getter方法时抛出IllegalArgumentException
+	 */
+	public abstract Object get(Object bean, int index) throws Exception;
+
+	public abstract void setInt(Object bean, int index, int value) throws Exception;
+
+	public abstract void setLong(Object bean, int index, long value) throws Exception;
+
+	public abstract void setDouble(Object bean, int index, double value) throws Exception;
+
+	public abstract void setBoolean(Object bean, int index, boolean value) throws Exception;
+}
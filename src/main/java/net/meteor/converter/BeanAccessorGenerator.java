@@ -0,0 +1,310 @@
+package net.meteor.converter;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.meteor.utils.BytecodeUtils;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bean访问器生成器，使用ASM为每个Bean类型生成一个{@link BeanAccessor}子类，直接调用构造方法和getter、setter方法。
+ * <p>
+ * 只有public的类、public的无参构造方法和public的getter、setter方法，并且属性类型都是public的才能生成访问器，否则使用反射访问器
+ *
+ * @author wuqh
+ *
+ */
+class BeanAccessorGenerator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BeanAccessorGenerator.class);
+
+	private static final String ACCESSOR_CLASS_PREFIX = "net.meteor.converter.GeneratedBeanAccessor$";
+	private static final String SUPER_NAME = Type.getInternalName(BeanAccessor.class);
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private BeanAccessorGenerator() {
+	}
+
+	/**
+	 * 为Bean类型创建访问器
+	 *
+	 * @param clazz
+	 * @param setters
+	 *            按属性序号排列的setter方法
+	 * @param getters
+	 *            按属性序号排列的getter方法，没有getter方法的属性为<code>null</code>
+	 * @return
+	 */
+	static BeanAccessor createAccessor(Class<?> clazz, Method[] setters, Method[] getters) {
+		if (isAccessible(clazz, setters, getters)) {
+			ClassLoader classLoader = BytecodeUtils.getParentClassLoader(clazz, BeanAccessor.class);
+			if (classLoader != null) {
+				try {
+					String className = ACCESSOR_CLASS_PREFIX + COUNTER.incrementAndGet();
+					byte[] bytes = generateClass(className.replace('.', '/'), clazz, setters, getters);
+					Class<?> accessorClass = BytecodeUtils.defineClass(classLoader, className, bytes);
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("生成[" + clazz + "]的访问器[" + className + "]成功");
+					}
+					return (BeanAccessor) accessorClass.newInstance();
+				} catch (Throwable e) {
+					LOGGER.warn("生成[" + clazz + "]的访问器失败，使用反射访问", e);
+				}
+			}
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("[" + clazz + "]使用反射访问");
+		}
+		return new ReflectiveBeanAccessor(clazz, setters, getters);
+	}
+
+	private static boolean isAccessible(Class<?> clazz, Method[] setters, Method[] getters) {
+		int modifiers = clazz.getModifiers();
+		if (!BytecodeUtils.isPublicType(clazz) || Modifier.isAbstract(modifiers) || clazz.isInterface()) {
+			return false;
+		}
+		try {
+			if (!Modifier.isPublic(clazz.getConstructor().getModifiers())) {
+				return false;
+			}
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+		for (Method setter : setters) {
+			if (!Modifier.isPublic(setter.getModifiers()) || Modifier.isStatic(setter.getModifiers())
+					|| !BytecodeUtils.isPublicType(setter.getParameterTypes()[0])) {
+				return false;
+			}
+		}
+		for (Method getter : getters) {
+			if (getter != null
+					&& (!Modifier.isPublic(getter.getModifiers()) || Modifier.isStatic(getter.getModifiers())
+							|| !BytecodeUtils.isPublicType(getter.getReturnType()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] generateClass(String internalName, Class<?> clazz, Method[] setters, Method[] getters) {
+		String owner = Type.getInternalName(clazz);
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SYNTHETIC, internalName, null,
+				SUPER_NAME, null);
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, SUPER_NAME, "<init>", "()V");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "newInstance", "()Ljava/lang/Object;", null,
+				new String[] { "java/lang/Exception" });
+		mv.visitCode();
+		mv.visitTypeInsn(Opcodes.NEW, owner);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", "()V");
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		generateSetMethod(cw, owner, "set", Object.class, setters);
+		generateSetMethod(cw, owner, "setInt", int.class, setters);
+		generateSetMethod(cw, owner, "setLong", long.class, setters);
+		generateSetMethod(cw, owner, "setDouble", double.class, setters);
+		generateSetMethod(cw, owner, "setBoolean", boolean.class, setters);
+		generateGetMethod(cw, owner, getters);
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * 生成按属性序号分派的set方法，valueType为Object时包含所有属性，否则只包含该基本类型的属性
+	 */
+	private static void generateSetMethod(ClassWriter cw, String owner, String methodName, Class<?> valueType,
+			Method[] setters) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i = 0; i < setters.length; i++) {
+			if (valueType == Object.class || setters[i].getParameterTypes()[0] == valueType) {
+				indexes.add(Integer.valueOf(i));
+			}
+		}
+
+		String descriptor = "(Ljava/lang/Object;I" + Type.getDescriptor(valueType) + ")V";
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, methodName, descriptor, null,
+				new String[] { "java/lang/Exception" });
+		mv.visitCode();
+
+		Label defaultLabel = new Label();
+		if (!indexes.isEmpty()) {
+			int[] keys = new int[indexes.size()];
+			Label[] labels = new Label[indexes.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = indexes.get(i).intValue();
+				labels[i] = new Label();
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, 2);
+			mv.visitLookupSwitchInsn(defaultLabel, keys, labels);
+			for (int i = 0; i < keys.length; i++) {
+				Method setter = setters[keys[i]];
+				Class<?> propertyType = setter.getParameterTypes()[0];
+				mv.visitLabel(labels[i]);
+				mv.visitVarInsn(Opcodes.ALOAD, 1);
+				mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+				mv.visitVarInsn(Type.getType(valueType).getOpcode(Opcodes.ILOAD), 3);
+				if (valueType == Object.class) {
+					BytecodeUtils.unbox(mv, propertyType);
+				}
+				mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, setter.getName(), Type.getMethodDescriptor(setter));
+				Class<?> returnType = setter.getReturnType();
+				if (returnType == long.class || returnType == double.class) {
+					mv.visitInsn(Opcodes.POP2);
+				} else if (returnType != void.class) {
+					mv.visitInsn(Opcodes.POP);
+				}
+				mv.visitInsn(Opcodes.RETURN);
+			}
+		}
+
+		mv.visitLabel(defaultLabel);
+		mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "()V");
+		mv.visitInsn(Opcodes.ATHROW);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * 生成按属性序号分派的get方法
+	 */
+	private static void generateGetMethod(ClassWriter cw, String owner, Method[] getters) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i = 0; i < getters.length; i++) {
+			if (getters[i] != null) {
+				indexes.add(Integer.valueOf(i));
+			}
+		}
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "get", "(Ljava/lang/Object;I)Ljava/lang/Object;", null,
+				new String[] { "java/lang/Exception" });
+		mv.visitCode();
+
+		Label defaultLabel = new Label();
+		if (!indexes.isEmpty()) {
+			int[] keys = new int[indexes.size()];
+			Label[] labels = new Label[indexes.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = indexes.get(i).intValue();
+				labels[i] = new Label();
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, 2);
+			mv.visitLookupSwitchInsn(defaultLabel, keys, labels);
+			for (int i = 0; i < keys.length; i++) {
+				Method getter = getters[keys[i]];
+				mv.visitLabel(labels[i]);
+				mv.visitVarInsn(Opcodes.ALOAD, 1);
+				mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+				mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, getter.getName(), Type.getMethodDescriptor(getter));
+				BytecodeUtils.box(mv, getter.getReturnType());
+				mv.visitInsn(Opcodes.ARETURN);
+			}
+		}
+
+		mv.visitLabel(defaultLabel);
+		mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "()V");
+		mv.visitInsn(Opcodes.ATHROW);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * 反射访问器，只在创建时调用一次setAccessible
+	 */
+	private static class ReflectiveBeanAccessor extends BeanAccessor {
+		private final Class<?> clazz;
+		private final Constructor<?> constructor;
+		private final Method[] setters;
+		private final Method[] getters;
+
+		ReflectiveBeanAccessor(Class<?> clazz, Method[] setters, Method[] getters) {
+			this.clazz = clazz;
+			Constructor<?> constructor;
+			try {
+				constructor = clazz.getDeclaredConstructor();
+				constructor.setAccessible(true);
+			} catch (Exception e) {
+				// 在创建实例时报错
+				constructor = null;
+			}
+			this.constructor = constructor;
+			this.setters = setters;
+			this.getters = getters;
+			for (Method setter : setters) {
+				setter.setAccessible(true);
+			}
+			for (Method getter : getters) {
+				if (getter != null) {
+					getter.setAccessible(true);
+				}
+			}
+		}
+
+		@Override
+		public Object newInstance() throws Exception {
+			if (constructor == null) {
+				throw new InstantiationException("[" + clazz + "]没有无参构造方法");
+			}
+			return constructor.newInstance();
+		}
+
+		@Override
+		public void set(Object bean, int index, Object value) throws Exception {
+			setters[index].invoke(bean, value);
+		}
+
+		@Override
+		public Object get(Object bean, int index) throws Exception {
+			if (getters[index] == null) {
+				throw new IllegalArgumentException();
+			}
+			return getters[index].invoke(bean);
+		}
+
+		@Override
+		public void setInt(Object bean, int index, int value) throws Exception {
+			set(bean, index, Integer.valueOf(value));
+		}
+
+		@Override
+		public void setLong(Object bean, int index, long value) throws Exception {
+			set(bean, index, Long.valueOf(value));
+		}
+
+		@Override
+		public void setDouble(Object bean, int index, double value) throws Exception {
+			set(bean, index, Double.valueOf(value));
+		}
+
+		@Override
+		public void setBoolean(Object bean, int index, boolean value) throws Exception {
+			set(bean, index, Boolean.valueOf(value));
+		}
+	}
+}
@@ -1,65 +1,127 @@
 package net.meteor.converter;
 
 import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.meteor.exception.ConvertFailedException;
-import net.meteor.utils.BeanUtils;
+import net.meteor.utils.BeanMetadata;
+import net.meteor.utils.BeanMetadata.PropertyMetadata;
+import net.meteor.utils.ScalarParser;
+import net.meteor.utils.ScalarParsers;
+
+import org.apache.commons.lang.StringUtils;
 
 /**
- * 类型转换器，用于将request请求中的参数、uriTemplateVariables中的变量值转换为Bean对象
- * 
+ * 类型转换器，用于将request请求中的参数、uriTemplateVariables中的变量值转换为Bean对象。
+ * <p>
+ * 创建实例和调用setter方法使用生成的{@link BeanAccessor}，转换时遍历请求参数和可设置的属性中数量较少的一方。
+ * 使用默认转换器的int、long、double、boolean属性直接解析后设置，不需要装箱。
+ * <p>
+ * 支持<code>address.city</code>、<code>items[3].qty</code>形式的参数名，参数名第一次出现时解析为属性路径并缓存，
+ * 绑定时沿路径通过getter获取中间对象，不存在时才创建，因此每个中间对象只创建一次。索引属性只支持List和数组，
+ * 集合和数组属性同时支持<code>tags=a&amp;tags=b</code>形式的多值参数
+ *
  * @author wuqh
- * 
+ *
  */
 public class BeanConverter implements Converter {
-	private final Map<String, Method> writeMethods = new HashMap<String, Method>();
-	private final Map<String, Class<?>> parameterTypes = new HashMap<String, Class<?>>();
-	private final Map<String, Converter> parameterConverters = new HashMap<String, Converter>();
+	private static final int OBJECT_PROPERTY = 0;
+	private static final int INT_PROPERTY = 1;
+	private static final int LONG_PROPERTY = 2;
+	private static final int DOUBLE_PROPERTY = 3;
+	private static final int BOOLEAN_PROPERTY = 4;
+
+	// 索引属性自动扩展的最大长度，避免请求中的大索引导致创建超大的List或者数组
+	private static final int AUTO_GROW_LIMIT = 256;
+	// 缓存的属性路径最大数量，超过后不再缓存。只缓存能解析的参数名，避免请求中任意的参数名占满缓存
+	private static final int PATH_CACHE_LIMIT = 1024;
+	private static final PropertyPath INVALID_PATH = new PropertyPath(null, null, null);
+
+	private final Map<String, PropertyBinding> propertyBindings = new HashMap<String, PropertyBinding>();
+	private final PropertyBinding[] properties;
+	private final BeanAccessor accessor;
+	private final Map<String, PropertyPath> pathCache = new ConcurrentHashMap<String, PropertyPath>();
+	private boolean pathSupported;
 
 	/**
 	 * 构造函数
-	 * 
+	 *
 	 * @param clazz
 	 *            bean对象的类型
 	 * @throws IntrospectionException
 	 */
 	public BeanConverter(Class<?> clazz) throws IntrospectionException {
-		Map<String, PropertyDescriptor> propertyDescriptors;
-
-		propertyDescriptors = BeanUtils.getPropertyDescriptors(clazz);
+		PropertyMetadata[] writableProperties = BeanMetadata.forClass(clazz).getWritableProperties();
 
-		for (String property : propertyDescriptors.keySet()) {
-			PropertyDescriptor propertyDescriptor = propertyDescriptors.get(property);
-			Method method = propertyDescriptor.getWriteMethod();
-
-			if (method == null) {
-				continue;
-			}
+		this.properties = new PropertyBinding[writableProperties.length];
+		Method[] setters = new Method[writableProperties.length];
+		Method[] getters = new Method[writableProperties.length];
+		for (int i = 0; i < writableProperties.length; i++) {
+			PropertyMetadata property = writableProperties[i];
+			PropertyBinding binding = new PropertyBinding(property.getName(), property.getType(), i);
+			binding.readable = (property.getReadMethod() != null);
+			properties[i] = binding;
+			setters[i] = property.getWriteMethod();
+			getters[i] = property.getReadMethod();
+			propertyBindings.put(property.getName(), binding);
+		}
 
-			method.setAccessible(true);
-			writeMethods.put(property, method);
+		this.accessor = BeanAccessorGenerator.createAccessor(clazz, setters, getters);
+	}
 
-			Class<?> type = propertyDescriptor.getPropertyType();
-			if (type == null) {
-				continue;
+	/**
+	 * 增加参数和参数对应解析的映射关系
+	 *
+	 * @param property
+	 * @param converter
+	 */
+	public void addConverter(String property, Converter converter) {
+		PropertyBinding binding = propertyBindings.get(property);
+		if (binding != null) {
+			binding.setConverter(converter);
+			if (converter instanceof BeanConverter) {
+				pathSupported = true;
 			}
-
-			parameterTypes.put(property, type);
 		}
 	}
 
 	/**
-	 * 增加参数和参数对应解析的映射关系
-	 * 
+	 * 增加只用于属性路径（如<code>parent.name</code>）的转换器，参数名与属性名相同时不绑定，
+	 * 用于类型之间存在循环引用的属性
+	 *
 	 * @param property
 	 * @param converter
 	 */
-	public void addConverter(String property, Converter converter) {
-		parameterConverters.put(property, converter);
+	public void addPathConverter(String property, Converter converter) {
+		PropertyBinding binding = propertyBindings.get(property);
+		if (binding != null) {
+			binding.setConverter(converter);
+			binding.pathOnly = true;
+			pathSupported = true;
+		}
+	}
+
+	/**
+	 * 增加List、数组属性的元素转换器，用于<code>items[3].qty</code>形式的参数
+	 *
+	 * @param property
+	 * @param elementConverter
+	 * @param elementType
+	 */
+	public void addElementConverter(String property, Converter elementConverter, Class<?> elementType) {
+		PropertyBinding binding = propertyBindings.get(property);
+		if (binding != null && (binding.type.isArray() || List.class.isAssignableFrom(binding.type))) {
+			binding.elementConverter = elementConverter;
+			binding.elementType = elementType;
+			pathSupported = true;
+		}
 	}
 
 	@Override
@@ -67,26 +129,342 @@ public class BeanConverter implements Converter {
 		Object result;
 
 		try {
-			result = toType.newInstance();
+			result = accessor.newInstance();
 		} catch (Exception e) {
 			throw new ConvertFailedException("创建[" + toType + "]的实例失败：", e);
 		}
 
-		for (String parameter : provider.getRequestParameters().keySet()) {
-			Method method = writeMethods.get(parameter);
-			if (method == null) {
-				continue;
+		Map<String, String[]> parameterValues = provider.getRequestParameters();
+		try {
+			if (parameterValues.size() <= properties.length) {
+				for (String parameter : parameterValues.keySet()) {
+					PropertyBinding binding = propertyBindings.get(parameter);
+					if (binding != null) {
+						if (!binding.pathOnly && provider.hasRequestParameter(parameter)) {
+							bindProperty(result, binding, provider, parameter);
+						}
+					} else if (pathSupported) {
+						bindPath(result, parameter, provider);
+					}
+				}
+			} else {
+				for (PropertyBinding binding : properties) {
+					if (!binding.pathOnly && provider.hasRequestParameter(binding.name)) {
+						bindProperty(result, binding, provider, binding.name);
+					}
+				}
+				if (pathSupported) {
+					for (String parameter : parameterValues.keySet()) {
+						bindPath(result, parameter, provider);
+					}
+				}
+			}
+		} catch (ConvertFailedException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ConvertFailedException("解析[" + toType + "]的实例失败：", e);
+		}
+
+		return result;
+	}
+
+	private void bindProperty(Object bean, PropertyBinding binding, ContextProvider provider, String parameter)
+			throws Exception {
+		if (binding.converter == null) {
+			return;
+		}
+
+		if (binding.kind == OBJECT_PROPERTY) {
+			accessor.set(bean, binding.index, binding.converter.convertValue(provider, parameter, binding.type));
+			return;
+		}
+
+		String value = provider.getRequestParameter(parameter);
+		if (value == null) {
+			if (provider.addBindingError(parameter)) {
+				return;
 			}
-			Class<?> returnType = parameterTypes.get(parameter);
-			Converter converter = parameterConverters.get(parameter);
+			throw new ConvertFailedException("参数[" + parameter + "]没有值，无法设置到基本类型的属性");
+		}
+		boolean blank = StringUtils.isBlank(value);
+		// 收集绑定错误时先检查格式，格式不正确的属性保持默认值
+		if (!blank && provider.isCollectBindingErrors() && !ScalarParsers.isParsable(binding.parser, value)) {
+			provider.addBindingError(parameter);
+			return;
+		}
+		switch (binding.kind) {
+		case INT_PROPERTY:
+			accessor.setInt(bean, binding.index, blank ? 0 : Integer.parseInt(value));
+			break;
+		case LONG_PROPERTY:
+			accessor.setLong(bean, binding.index, blank ? 0L : Long.parseLong(value));
+			break;
+		case DOUBLE_PROPERTY:
+			accessor.setDouble(bean, binding.index, blank ? 0.0 : Double.parseDouble(value));
+			break;
+		default:
+			accessor.setBoolean(bean, binding.index, !blank && Boolean.parseBoolean(value));
+			break;
+		}
+	}
+
+	/**
+	 * 按照属性路径绑定参数
+	 */
+	private void bindPath(Object root, String parameter, ContextProvider provider) throws Exception {
+		if (parameter.indexOf('.') < 0 && parameter.indexOf('[') < 0) {
+			return;
+		}
+		PropertyPath path = getPropertyPath(parameter);
+		if (path == INVALID_PATH || !provider.hasRequestParameter(parameter)) {
+			return;
+		}
+
+		Object bean = root;
+		int last = path.bindings.length - 1;
+		for (int i = 0; i < last; i++) {
+			bean = path.owners[i].getOrCreate(bean, path.bindings[i], path.indexes[i]);
+		}
+
+		BeanConverter owner = path.owners[last];
+		PropertyBinding binding = path.bindings[last];
+		int index = path.indexes[last];
+		if (index < 0) {
+			owner.bindProperty(bean, binding, provider, parameter);
+		} else {
+			Object value = binding.elementConverter.convertValue(provider, parameter, binding.elementType);
+			owner.setElement(bean, binding, index, value);
+		}
+	}
 
-			try {
-				method.invoke(result, converter.convertValue(provider, parameter, returnType));
-			} catch (Exception e) {
-				throw new ConvertFailedException("解析[" + toType + "]的实例失败：", e);
+	private PropertyPath getPropertyPath(String parameter) {
+		PropertyPath path = pathCache.get(parameter);
+		if (path == null) {
+			path = resolvePath(parameter);
+			if (path != INVALID_PATH && pathCache.size() < PATH_CACHE_LIMIT) {
+				pathCache.put(parameter, path);
 			}
 		}
+		return path;
+	}
 
-		return result;
+	/**
+	 * 将参数名解析为属性路径
+	 *
+	 * @param parameter
+	 * @return 无法解析时返回{@link #INVALID_PATH}
+	 */
+	private PropertyPath resolvePath(String parameter) {
+		List<BeanConverter> owners = new ArrayList<BeanConverter>();
+		List<PropertyBinding> bindings = new ArrayList<PropertyBinding>();
+		List<Integer> indexes = new ArrayList<Integer>();
+
+		BeanConverter current = this;
+		int length = parameter.length();
+		int pos = 0;
+		while (true) {
+			int end = pos;
+			while (end < length && parameter.charAt(end) != '.' && parameter.charAt(end) != '[') {
+				end++;
+			}
+			if (end == pos) {
+				return INVALID_PATH;
+			}
+			PropertyBinding binding = current.propertyBindings.get(parameter.substring(pos, end));
+			if (binding == null) {
+				return INVALID_PATH;
+			}
+
+			int index = -1;
+			if (end < length && parameter.charAt(end) == '[') {
+				int close = parameter.indexOf(']', end);
+				// 索引最多4位
+				if (close < 0 || close == end + 1 || close - end > 5 || binding.elementConverter == null
+						|| !binding.readable) {
+					return INVALID_PATH;
+				}
+				index = 0;
+				for (int i = end + 1; i < close; i++) {
+					char c = parameter.charAt(i);
+					if (c < '0' || c > '9') {
+						return INVALID_PATH;
+					}
+					index = index * 10 + (c - '0');
+				}
+				if (index >= AUTO_GROW_LIMIT) {
+					return INVALID_PATH;
+				}
+				end = close + 1;
+			}
+
+			owners.add(current);
+			bindings.add(binding);
+			indexes.add(Integer.valueOf(index));
+
+			Converter next = (index < 0 ? binding.converter : binding.elementConverter);
+			if (end == length) {
+				// 最后一级不能是Bean，单独的属性名不是路径
+				if (next instanceof BeanConverter || (bindings.size() == 1 && index < 0)) {
+					return INVALID_PATH;
+				}
+				break;
+			}
+			if (parameter.charAt(end) != '.' || !(next instanceof BeanConverter) || !binding.readable) {
+				return INVALID_PATH;
+			}
+			current = (BeanConverter) next;
+			pos = end + 1;
+		}
+
+		int[] indexArray = new int[indexes.size()];
+		for (int i = 0; i < indexArray.length; i++) {
+			indexArray[i] = indexes.get(i).intValue();
+		}
+		return new PropertyPath(owners.toArray(new BeanConverter[owners.size()]),
+				bindings.toArray(new PropertyBinding[bindings.size()]), indexArray);
+	}
+
+	/**
+	 * 获取中间对象，不存在时创建并设置到属性中
+	 */
+	private Object getOrCreate(Object bean, PropertyBinding binding, int index) throws Exception {
+		if (index < 0) {
+			Object child = accessor.get(bean, binding.index);
+			if (child == null) {
+				child = ((BeanConverter) binding.converter).accessor.newInstance();
+				accessor.set(bean, binding.index, child);
+			}
+			return child;
+		}
+
+		Object element = getElement(bean, binding, index);
+		if (element == null) {
+			element = ((BeanConverter) binding.elementConverter).accessor.newInstance();
+			setElement(bean, binding, index, element);
+		}
+		return element;
+	}
+
+	private Object getElement(Object bean, PropertyBinding binding, int index) throws Exception {
+		Object container = accessor.get(bean, binding.index);
+		if (container == null) {
+			return null;
+		}
+		if (container instanceof List) {
+			List<?> list = (List<?>) container;
+			return (index < list.size() ? list.get(index) : null);
+		}
+		return (index < Array.getLength(container) ? Array.get(container, index) : null);
+	}
+
+	/**
+	 * 设置List、数组属性的元素，长度不够时自动扩展
+	 */
+	@SuppressWarnings("unchecked")
+	private void setElement(Object bean, PropertyBinding binding, int index, Object value) throws Exception {
+		Object container = accessor.get(bean, binding.index);
+		if (binding.type.isArray()) {
+			if (value == null && binding.elementType.isPrimitive()) {
+				return;
+			}
+			int length = (container == null ? 0 : Array.getLength(container));
+			if (index >= length) {
+				Object array = Array.newInstance(binding.elementType, index + 1);
+				if (container != null) {
+					System.arraycopy(container, 0, array, 0, length);
+				}
+				container = array;
+				accessor.set(bean, binding.index, container);
+			}
+			Array.set(container, index, value);
+			return;
+		}
+
+		if (container == null) {
+			if (binding.type.isInterface() || Modifier.isAbstract(binding.type.getModifiers())) {
+				container = new ArrayList<Object>();
+			} else {
+				container = binding.type.newInstance();
+			}
+			accessor.set(bean, binding.index, container);
+		}
+		List<Object> list = (List<Object>) container;
+		while (list.size() <= index) {
+			list.add(null);
+		}
+		list.set(index, value);
+	}
+
+	/**
+	 * 判断是否所有属性都使用支持按位置绑定的转换器，自定义的转换器可能直接读取请求参数的第一个值
+	 *
+	 * @return
+	 * @see CollectionConverter
+	 */
+	boolean isIndexAware() {
+		for (PropertyBinding binding : properties) {
+			if (binding.converter != null && !binding.pathOnly && !CollectionConverter.isIndexAware(binding.converter)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 属性的绑定信息
+	 */
+	private static class PropertyBinding {
+		private final String name;
+		private final Class<?> type;
+		private final int index;
+		private Converter converter;
+		private int kind = OBJECT_PROPERTY;
+		private boolean readable;
+		// 只用于属性路径，参数名与属性名相同时不绑定
+		private boolean pathOnly;
+		// List、数组属性的元素转换器
+		private Converter elementConverter;
+		private Class<?> elementType;
+		// 直接解析的基本类型属性的解析器，用于检查格式
+		private ScalarParser<?> parser;
+
+		PropertyBinding(String name, Class<?> type, int index) {
+			this.name = name;
+			this.type = type;
+			this.index = index;
+		}
+
+		void setConverter(Converter converter) {
+			this.converter = converter;
+			this.kind = OBJECT_PROPERTY;
+			// 只有默认的转换器才直接解析，自定义的转换器仍然通过转换器转换
+			if (converter.getClass() == SimpleTypeConverter.class) {
+				if (type == int.class) {
+					kind = INT_PROPERTY;
+				} else if (type == long.class) {
+					kind = LONG_PROPERTY;
+				} else if (type == double.class) {
+					kind = DOUBLE_PROPERTY;
+				} else if (type == boolean.class) {
+					kind = BOOLEAN_PROPERTY;
+				}
+			}
+			this.parser = (kind == OBJECT_PROPERTY ? null : ScalarParsers.getParser(type));
+		}
+	}
+
+	/**
+	 * 属性路径，每一级包括所属的转换器、属性和索引（没有索引时为-1）
+	 */
+	private static class PropertyPath {
+		private final BeanConverter[] owners;
+		private final PropertyBinding[] bindings;
+		private final int[] indexes;
+
+		PropertyPath(BeanConverter[] owners, PropertyBinding[] bindings, int[] indexes) {
+			this.owners = owners;
+			this.bindings = bindings;
+			this.indexes = indexes;
+		}
 	}
 }
@@ -16,7 +16,9 @@ import net.meteor.multipart.MultipartFile;
 
 /**
  * 类型转换器，用于将request请求中的参数、uriTemplateVariables中的变量值转换为集合类型。
- * 当前仅支持TreeSet、LinkedHashSet、ArrayList类型
+ * 当前仅支持TreeSet、LinkedHashSet、ArrayList类型。
+ * <p>
+ * 第i个元素直接读取请求参数的第i个值，每个元素只构造一次，不需要为每个元素重建请求参数
  * 
  * @author wuqh
  * 
@@ -24,6 +26,7 @@ import net.meteor.multipart.MultipartFile;
 public class CollectionConverter implements Converter {
 	private final Converter internalConverter;
 	private final Class<?> genericType;
+	private final boolean indexAware;
 
 	/**
 	 * 构造函数
@@ -36,6 +39,7 @@ public class CollectionConverter implements Converter {
 	public CollectionConverter(Converter internalConverter, Class<?> genericType) {
 		this.internalConverter = internalConverter;
 		this.genericType = genericType;
+		this.indexAware = isIndexAware(internalConverter);
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
@@ -43,18 +47,95 @@ public class CollectionConverter implements Converter {
 	public Object convertValue(ContextProvider provider, String propertyName, Class<?> toType) {
 		Collection collection = createCollection(toType);
 
-		int index = 1;
-		ContextProvider tempProvider = createTempProvider(provider, 0);
-		while (tempProvider != null) {
-			collection.add(internalConverter.convertValue(tempProvider, propertyName, genericType));
-			tempProvider = createTempProvider(provider, index);
-			index++;
+		int size = getElementCount(provider, propertyName);
+		if (size == 0) {
+			return collection;
+		}
+
+		if (indexAware) {
+			// 所有元素共用一个上下文环境，只切换读取的位置
+			ContextProvider elementProvider = provider.clone();
+			for (int index = 0; index < size; index++) {
+				elementProvider.setParameterIndex(index);
+				collection.add(internalConverter.convertValue(elementProvider, propertyName, genericType));
+			}
+		} else {
+			for (int index = 0; index < size; index++) {
+				collection.add(internalConverter.convertValue(createTempProvider(provider, index), propertyName,
+						genericType));
+			}
 		}
 
 		return collection;
 
 	}
 
+	/**
+	 * 获取元素个数，即请求参数、上传文件中值最多的一个的值个数。元素是简单类型时只读取同名的参数，
+	 * 只计算同名参数的值个数，避免Bean中的集合属性受其他多值参数影响
+	 * 
+	 * @param provider
+	 * @param propertyName
+	 * @return
+	 */
+	int getElementCount(ContextProvider provider, String propertyName) {
+		int size = 0;
+
+		Map<String, String[]> requestParameters = provider.getRequestParameters();
+		Map<String, List<MultipartFile>> multipartFiles = provider.getMultipartFiles();
+		if (internalConverter.getClass() == SimpleTypeConverter.class) {
+			String[] values = (requestParameters == null ? null : requestParameters.get(propertyName));
+			if (values != null) {
+				size = values.length;
+			}
+			List<MultipartFile> multipartFileList = (multipartFiles == null ? null : multipartFiles.get(propertyName));
+			if (multipartFileList != null && multipartFileList.size() > size) {
+				size = multipartFileList.size();
+			}
+			return size;
+		}
+
+		if (requestParameters != null) {
+			for (String[] values : requestParameters.values()) {
+				if (values.length > size) {
+					size = values.length;
+				}
+			}
+		}
+
+		if (multipartFiles != null) {
+			for (List<MultipartFile> multipartFileList : multipartFiles.values()) {
+				if (multipartFileList != null && multipartFileList.size() > size) {
+					size = multipartFileList.size();
+				}
+			}
+		}
+
+		return size;
+	}
+
+	Converter getInternalConverter() {
+		return internalConverter;
+	}
+
+	/**
+	 * 判断转换器是否按照{@link ContextProvider#getParameterIndex()}读取请求参数，
+	 * 自定义的转换器可能直接读取请求参数的第一个值，需要为每个元素构造临时的上下文环境
+	 * 
+	 * @param converter
+	 * @return
+	 */
+	static boolean isIndexAware(Converter converter) {
+		Class<?> clazz = converter.getClass();
+		if (clazz == SimpleTypeConverter.class) {
+			return true;
+		}
+		if (clazz == BeanConverter.class) {
+			return ((BeanConverter) converter).isIndexAware();
+		}
+		return false;
+	}
+
 	/**
 	 * 根据传入索引值，构造用于单次调用的临时的请求参数的上下文环境
 	 * 
@@ -63,44 +144,35 @@ public class CollectionConverter implements Converter {
 	 * @return
 	 */
 	private ContextProvider createTempProvider(ContextProvider provider, int index) {
-		boolean allOutOfBounds = true;
-
 		Map<String, String[]> requestParameters = provider.getRequestParameters();
-		Map<String, String[]> tempParameters = new HashMap<String, String[]>(requestParameters.size());
+		Map<String, String[]> tempParameters = new HashMap<String, String[]>();
 		Map<String, List<MultipartFile>> multipartFiles = provider.getMultipartFiles();
 		Map<String, List<MultipartFile>> tempMultipartFiles = new HashMap<String, List<MultipartFile>>();
 
-		ContextProvider tempProvider = provider.clone();
-
-		for (Entry<String, String[]> entry : requestParameters.entrySet()) {
-			String key = entry.getKey();
-			String[] values = entry.getValue();
-
-			if (values.length > index) {
-				String value = values[index];
-				String[] array = new String[] { value };
-				tempParameters.put(key, array);
-				allOutOfBounds = false;
+		if (requestParameters != null) {
+			for (Entry<String, String[]> entry : requestParameters.entrySet()) {
+				String[] values = entry.getValue();
+				if (values.length > index) {
+					tempParameters.put(entry.getKey(), new String[] { values[index] });
+				}
 			}
+		}
 
-			if (multipartFiles != null) {
-				List<MultipartFile> multipartFileList = multipartFiles.get(key);
-				if (multipartFileList.size() > index) {
+		if (multipartFiles != null) {
+			for (Entry<String, List<MultipartFile>> entry : multipartFiles.entrySet()) {
+				List<MultipartFile> multipartFileList = entry.getValue();
+				if (multipartFileList != null && multipartFileList.size() > index) {
 					List<MultipartFile> tempMultipartFileList = new ArrayList<MultipartFile>(1);
 					tempMultipartFileList.add(multipartFileList.get(index));
-					tempMultipartFiles.put(key, tempMultipartFileList);
-					allOutOfBounds = false;
+					tempMultipartFiles.put(entry.getKey(), tempMultipartFileList);
 				}
 			}
 		}
 
-		if (allOutOfBounds) {
-			return null;
-		} else {
-			tempProvider.setRequestParameters(tempParameters);
-			tempProvider.setMultipartFiles(tempMultipartFiles);
-			return tempProvider;
-		}
+		ContextProvider tempProvider = provider.clone();
+		tempProvider.setRequestParameters(tempParameters);
+		tempProvider.setMultipartFiles(tempMultipartFiles);
+		return tempProvider;
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package net.meteor.converter;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -8,6 +9,13 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import net.meteor.multipart.MultipartFile;
+import net.meteor.multipart.MultipartHttpServletRequest;
+import net.meteor.utils.ScalarParser;
+import net.meteor.utils.ScalarParsers;
+import net.meteor.validation.Errors;
+import net.meteor.web.LazyHttpSession;
+
+import org.apache.commons.lang.StringUtils;
 
 /**
  * 请求上下文容器
@@ -16,24 +24,87 @@ import net.meteor.multipart.MultipartFile;
  * 
  */
 public class ContextProvider implements Cloneable {
+	/**
+	 * 参数格式不正确时记录的错误信息
+	 */
+	public static final String TYPE_MISMATCH_MESSAGE = "参数格式不正确";
+
 	private Map<String, String[]> requestParameters;
 
 	private HttpServletRequest request;
 
 	private HttpServletResponse response;
 
-	// private HttpSession session;
+	// 第一次获取时创建，不会直接创建容器的session
+	private LazyHttpSession session;
 
 	private Map<String, String> uriTemplateVariables;
 
+	private Map<String, Object> typedUriTemplateVariables;
+
 	private Map<String, List<MultipartFile>> multipartFiles;
 
+	// 绑定集合、数组的第几个元素，请求参数和上传文件都取该位置上的值
+	private int parameterIndex;
+
+	// 为false时在首次获取时从request中读取
+	private boolean requestParametersResolved;
+
+	private boolean multipartFilesResolved;
+
+	// 为true时转换失败记录到bindingErrors中，不抛出异常
+	private boolean collectBindingErrors;
+
+	// 第一次出现错误或者被获取时才创建
+	private Errors bindingErrors;
+
+	/**
+	 * 获取请求参数，延迟读取时首次调用才会调用request.getParameterMap()
+	 * 
+	 * @return
+	 */
 	public Map<String, String[]> getRequestParameters() {
+		if (!requestParametersResolved) {
+			requestParametersResolved = true;
+			if (request == null) {
+				requestParameters = null;
+			} else {
+				// Servlet 2.5的getParameterMap()返回原始类型的Map
+				@SuppressWarnings("unchecked")
+				Map<String, String[]> parameterMap = (Map<String, String[]>) request.getParameterMap();
+				requestParameters = parameterMap;
+			}
+		}
 		return requestParameters;
 	}
 
 	public void setRequestParameters(Map<String, String[]> requestParameters) {
 		this.requestParameters = requestParameters;
+		this.requestParametersResolved = true;
+	}
+
+	/**
+	 * 重新设置请求参数和上传文件的读取方式，需要时在首次获取时从request中读取，不需要时为空，
+	 * 这样不需要参数的处理方法不会触发请求体的解析
+	 * 
+	 * @param parametersRequired
+	 *            是否需要请求参数
+	 * @param multipartRequired
+	 *            是否需要上传文件
+	 */
+	public void resetRequestData(boolean parametersRequired, boolean multipartRequired) {
+		if (parametersRequired) {
+			this.requestParameters = null;
+			this.requestParametersResolved = false;
+		} else {
+			setRequestParameters(Collections.<String, String[]> emptyMap());
+		}
+		if (multipartRequired) {
+			this.multipartFiles = null;
+			this.multipartFilesResolved = false;
+		} else {
+			setMultipartFiles(null);
+		}
 	}
 
 	public HttpServletRequest getRequest() {
@@ -42,6 +113,7 @@ public class ContextProvider implements Cloneable {
 
 	public void setRequest(HttpServletRequest request) {
 		this.request = request;
+		this.session = null;
 	}
 
 	public HttpServletResponse getResponse() {
@@ -52,8 +124,16 @@ public class ContextProvider implements Cloneable {
 		this.response = response;
 	}
 
+	/**
+	 * 获取session，返回的是{@link LazyHttpSession}，读取属性时不会创建session，设置属性时才创建
+	 * 
+	 * @return
+	 */
 	public HttpSession getSession() {
-		return getRequest().getSession();
+		if (session == null) {
+			session = new LazyHttpSession(getRequest());
+		}
+		return session;
 	}
 
 	// public void setSession(HttpSession session) {
@@ -68,22 +148,180 @@ public class ContextProvider implements Cloneable {
 		this.uriTemplateVariables = uriTemplateVariables;
 	}
 
+	public Map<String, Object> getTypedUriTemplateVariables() {
+		return typedUriTemplateVariables;
+	}
+
+	public void setTypedUriTemplateVariables(Map<String, Object> typedUriTemplateVariables) {
+		this.typedUriTemplateVariables = typedUriTemplateVariables;
+	}
+
+	/**
+	 * 获取上传文件，延迟读取时首次调用才会从MultipartHttpServletRequest中获取
+	 * 
+	 * @return 不是文件上传请求时返回<code>null</code>
+	 */
 	public Map<String, List<MultipartFile>> getMultipartFiles() {
+		if (!multipartFilesResolved) {
+			multipartFilesResolved = true;
+			if (request instanceof MultipartHttpServletRequest) {
+				multipartFiles = ((MultipartHttpServletRequest) request).getMultiFileMap();
+			}
+		}
 		return multipartFiles;
 	}
 
 	public void setMultipartFiles(Map<String, List<MultipartFile>> multipartFiles) {
 		this.multipartFiles = multipartFiles;
+		this.multipartFilesResolved = true;
+	}
+
+	public int getParameterIndex() {
+		return parameterIndex;
+	}
+
+	public void setParameterIndex(int parameterIndex) {
+		this.parameterIndex = parameterIndex;
+	}
+
+	/**
+	 * 获取请求参数在当前位置（{@link #getParameterIndex()}）上的值
+	 * 
+	 * @param name
+	 * @return 参数不存在或者没有该位置上的值时返回<code>null</code>
+	 */
+	public String getRequestParameter(String name) {
+		Map<String, String[]> requestParameters = getRequestParameters();
+		if (requestParameters == null) {
+			return null;
+		}
+		String[] values = requestParameters.get(name);
+		return (values == null || values.length <= parameterIndex ? null : values[parameterIndex]);
+	}
+
+	/**
+	 * 判断请求参数在当前位置（{@link #getParameterIndex()}）上是否有值
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public boolean hasRequestParameter(String name) {
+		Map<String, String[]> requestParameters = getRequestParameters();
+		if (requestParameters == null) {
+			return false;
+		}
+		String[] values = requestParameters.get(name);
+		return (values != null && values.length > parameterIndex);
+	}
+
+	/**
+	 * 获取上传文件在当前位置（{@link #getParameterIndex()}）上的文件
+	 * 
+	 * @param name
+	 * @return 没有该位置上的文件时返回<code>null</code>
+	 */
+	public MultipartFile getMultipartFile(String name) {
+		Map<String, List<MultipartFile>> multipartFiles = getMultipartFiles();
+		if (multipartFiles == null) {
+			return null;
+		}
+		List<MultipartFile> files = multipartFiles.get(name);
+		return (files == null || files.size() <= parameterIndex ? null : files.get(parameterIndex));
+	}
+
+	/**
+	 * 设置是否收集绑定错误，同时清空已有的错误。收集时转换器将格式不正确的参数记录为字段错误，不抛出异常
+	 * 
+	 * @param collectBindingErrors
+	 */
+	public void setCollectBindingErrors(boolean collectBindingErrors) {
+		this.collectBindingErrors = collectBindingErrors;
+		this.bindingErrors = null;
+	}
+
+	public boolean isCollectBindingErrors() {
+		return collectBindingErrors;
+	}
+
+	/**
+	 * 获取绑定错误
+	 * 
+	 * @return 不收集绑定错误时返回<code>null</code>
+	 */
+	public Errors getBindingErrors() {
+		if (collectBindingErrors && bindingErrors == null) {
+			bindingErrors = new Errors();
+		}
+		return bindingErrors;
+	}
+
+	/**
+	 * 是否存在绑定错误
+	 * 
+	 * @return
+	 */
+	public boolean hasBindingErrors() {
+		return bindingErrors != null && bindingErrors.hasErrors();
+	}
+
+	/**
+	 * 记录参数格式不正确的错误
+	 * 
+	 * @param field
+	 * @return 不收集绑定错误时返回<code>false</code>，调用者应该抛出异常
+	 */
+	public boolean addBindingError(String field) {
+		if (!collectBindingErrors) {
+			return false;
+		}
+		getBindingErrors().addError(field, TYPE_MISMATCH_MESSAGE);
+		return true;
+	}
+
+	/**
+	 * 使用解析器解析参数值，收集绑定错误时先检查格式，格式不正确时记录错误并返回空字符串对应的值（基本类型为默认值）。
+	 * 非空字符串解析结果为<code>null</code>（如不存在的枚举名称、格式错误的UUID、URL）也作为格式不正确处理
+	 * 
+	 * @param parser
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public Object parseValue(ScalarParser<?> parser, String field, String value) {
+		if (!collectBindingErrors) {
+			return parser.parse(value);
+		}
+		if (ScalarParsers.isParsable(parser, value)) {
+			try {
+				Object result = parser.parse(value);
+				if (result != null || StringUtils.isBlank(value)) {
+					return result;
+				}
+			} catch (RuntimeException e) {
+				// 自定义解析器无法预先检查格式
+			}
+		}
+		addBindingError(field);
+		return ScalarParsers.getBlankValue(parser);
 	}
 
 	public ContextProvider clone() {
 		ContextProvider provider = new ContextProvider();
-		provider.setMultipartFiles(getMultipartFiles());
 		provider.setRequest(getRequest());
-		provider.setRequestParameters(getRequestParameters());
+		provider.session = session;
+		// 直接复制，不触发延迟读取
+		provider.requestParameters = requestParameters;
+		provider.requestParametersResolved = requestParametersResolved;
+		provider.multipartFiles = multipartFiles;
+		provider.multipartFilesResolved = multipartFilesResolved;
 		provider.setResponse(getResponse());
 		// provider.setSession(getSession());
 		provider.setUriTemplateVariables(getUriTemplateVariables());
+		provider.setTypedUriTemplateVariables(getTypedUriTemplateVariables());
+		provider.setParameterIndex(getParameterIndex());
+		// 共用同一个错误容器
+		provider.collectBindingErrors = collectBindingErrors;
+		provider.bindingErrors = getBindingErrors();
 		return provider;
 	}
 }
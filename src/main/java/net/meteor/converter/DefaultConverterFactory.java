@@ -1,28 +1,29 @@
 package net.meteor.converter;
 
 import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.Map.Entry;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
-import net.meteor.annotation.Pattern;
 import net.meteor.multipart.MultipartFile;
 import net.meteor.multipart.MultipartHttpServletRequest;
+import net.meteor.provider.jackson.JacksonMessageReader;
 import net.meteor.utils.Assert;
+import net.meteor.utils.BeanMetadata;
+import net.meteor.utils.BeanMetadata.PropertyMetadata;
 import net.meteor.utils.BeanUtils;
 import net.meteor.utils.ReflectionUtils;
 
@@ -34,11 +35,52 @@ import org.apache.commons.lang.StringUtils;
  * @author wuqh
  * 
  */
-public class DefaultConverterFactory implements ConverterFactory {
+public class DefaultConverterFactory implements ConverterFactory, RequestBodyConverterFactory {
+	/**
+	 * 默认的请求体最大字节数（2M）
+	 */
+	public static final long DEFAULT_MAX_BODY_SIZE = 2 * 1024 * 1024;
+
+	private final MessageReader messageReader;
+	private final ThreadLocal<Map<Class<?>, BeanConverter>> beansInCreation = new ThreadLocal<Map<Class<?>, BeanConverter>>() {
+		@Override
+		protected Map<Class<?>, BeanConverter> initialValue() {
+			return new HashMap<Class<?>, BeanConverter>();
+		}
+	};
+	private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+	public DefaultConverterFactory() {
+		this(new JacksonMessageReader());
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param messageReader
+	 *            @ReqBody参数使用的信息读取器
+	 */
+	public DefaultConverterFactory(MessageReader messageReader) {
+		this.messageReader = messageReader;
+	}
+
+	/**
+	 * 设置请求体的默认最大字节数，小于0时不限制
+	 * 
+	 * @param maxBodySize
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
 	public Converter getUriVariableConverter(String pattern) {
 		return new UriVariableConverter(pattern);
 	}
 
+	public Converter getRequestBodyConverter(Type genericType, long maxBodySize) {
+		return new RequestBodyConverter(messageReader, genericType, maxBodySize < 0 ? this.maxBodySize : maxBodySize);
+	}
+
 	public Converter getConverter(Method method, String[] paramNames, int paramIndex, Class<?> clazz, String pattern,
 			boolean isComponent) {
 		Assert.notNull(clazz, "Class必须存在");
@@ -66,7 +108,7 @@ public class DefaultConverterFactory implements ConverterFactory {
 		}
 
 		if (BeanUtils.isConvertableSimpleType(clazz)) {
-			return new SimpleTypeConverter("");
+			return new SimpleTypeConverter("", clazz);
 		}
 
 		if (Collection.class.isAssignableFrom(clazz)) {
@@ -139,54 +181,99 @@ public class DefaultConverterFactory implements ConverterFactory {
 		Assert.notNull(clazz, "Class必须存在");
 
 		String paramName = "";
-		if (paramIndex == -1) {
+		if (paramIndex != -1) {
 			paramName = paramNames[paramIndex];
 		}
 
-		Map<String, PropertyDescriptor> propertyDescriptors;
+		// 类型之间存在循环引用时使用正在创建的转换器
+		Map<Class<?>, BeanConverter> beansInCreation = this.beansInCreation.get();
+		BeanConverter creating = beansInCreation.get(clazz);
+		if (creating != null) {
+			return creating;
+		}
+
+		BeanMetadata metadata;
 		BeanConverter beanConverter;
 		try {
-			propertyDescriptors = BeanUtils.getPropertyDescriptors(clazz);
+			metadata = BeanMetadata.forClass(clazz);
 			beanConverter = new BeanConverter(clazz);
 		} catch (IntrospectionException e) {
 			throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName + "]类型不支持，解析失败：", e);
 		}
 
-		if (propertyDescriptors == null) {
-			throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName + "]类型不支持，解析失败");
-		}
+		beansInCreation.put(clazz, beanConverter);
+		try {
+			for (PropertyMetadata property : metadata.getWritableProperties()) {
+				Class<?> type = property.getType();
+				String writePattern = property.getPattern();
+				if (writePattern != null && !type.equals(Date.class)) {
+					throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName
+							+ "]类型不支持，@Pattern暂时只支持用于java.util.Date类型参数上");
+				}
 
-		for (Entry<String, PropertyDescriptor> entry : propertyDescriptors.entrySet()) {
-			String property = entry.getKey();
-			PropertyDescriptor descriptor = entry.getValue();
-			Method writeMethod = descriptor.getWriteMethod();
-			if (writeMethod == null) {
-				continue;
-			}
-			Class<?> type = descriptor.getPropertyType();
-			Annotation[] annotations = writeMethod.getParameterAnnotations()[0];
-			String writePattern = null;
-			for (Annotation annotation : annotations) {
-				if (annotation instanceof Pattern) {
-					Pattern pattern = (Pattern) annotation;
-					writePattern = pattern.value();
-					if (!type.equals(Date.class)) {
-						throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName
-								+ "]类型不支持，@Pattern暂时只支持用于java.util.Date类型参数上");
-					}
+				try {
+					addPropertyConverter(beanConverter, property, paramNames, beansInCreation);
+				} catch (IllegalStateException e) {
+					throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName
+							+ "]类型不支持，含有无法解析的getter/setter方法：", e);
 				}
+
 			}
+		} finally {
+			beansInCreation.remove(clazz);
+		}
 
-			try {
-				Converter converter = getConverter(writeMethod, paramNames, -1, type, writePattern, true);
-				beanConverter.addConverter(property, converter);
-			} catch (IllegalStateException e) {
-				throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName
-						+ "]类型不支持，含有无法解析的getter/setter方法：", e);
+		return beanConverter;
+	}
+
+	/**
+	 * 为Bean的属性设置转换器，集合、数组属性通过与属性同名的多值参数绑定，List、数组属性还支持<code>items[0]</code>形式的参数，
+	 * 无法确定元素类型或者不支持的集合类型忽略
+	 * 
+	 * @param beanConverter
+	 * @param property
+	 * @param paramNames
+	 * @param beansInCreation
+	 */
+	private void addPropertyConverter(BeanConverter beanConverter, PropertyMetadata property, String[] paramNames,
+			Map<Class<?>, BeanConverter> beansInCreation) {
+		Class<?> type = property.getType();
+		Method writeMethod = property.getWriteMethod();
+		String writePattern = property.getPattern();
+
+		if (type.isArray() || Collection.class.isAssignableFrom(type)) {
+			Class<?> elementType = property.getElementType();
+			if (elementType == null) {
+				return;
+			}
+			Converter elementConverter = getConverter(writeMethod, paramNames, -1, elementType, writePattern, true);
+			if (type.isArray()) {
+				beanConverter.addConverter(property.getName(), new ArrayConverter(elementConverter, elementType));
+			} else if (isSupportedCollectionType(type)) {
+				beanConverter.addConverter(property.getName(), new CollectionConverter(elementConverter, elementType));
 			}
+			beanConverter.addElementConverter(property.getName(), elementConverter, elementType);
+			return;
+		}
 
+		BeanConverter creating = beansInCreation.get(type);
+		if (creating != null) {
+			beanConverter.addPathConverter(property.getName(), creating);
+			return;
 		}
 
-		return beanConverter;
+		Converter converter = getConverter(writeMethod, paramNames, -1, type, writePattern, true);
+		beanConverter.addConverter(property.getName(), converter);
+	}
+
+	/**
+	 * 判断{@link CollectionConverter}创建的集合能否设置到该类型的属性
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static boolean isSupportedCollectionType(Class<?> type) {
+		return (type.equals(List.class) || type.equals(ArrayList.class) || type.equals(Set.class)
+				|| type.equals(LinkedHashSet.class) || type.equals(SortedSet.class) || type.equals(TreeSet.class));
 	}
 }
@@ -0,0 +1,29 @@
+package net.meteor.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 信息读取器（用于在@ReqBody时将请求体解析为参数对象）
+ * 
+ * @author wuqh
+ * 
+ */
+public interface MessageReader {
+	/**
+	 * 从输入流中解析请求体
+	 * 
+	 * @param request
+	 *            用于获取编码等信息
+	 * @param in
+	 *            请求体的输入流
+	 * @param type
+	 *            参数类型（可以是带泛型的类型）
+	 * @return
+	 * @throws IOException
+	 */
+	Object readRequestBody(HttpServletRequest request, InputStream in, Type type) throws IOException;
+}
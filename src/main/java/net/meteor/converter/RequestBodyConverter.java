@@ -0,0 +1,116 @@
+package net.meteor.converter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.meteor.exception.ConvertFailedException;
+
+/**
+ * 类型转换器，用于将请求体（@ReqBody）直接从输入流解析为参数对象，不需要先读取为字符串
+ * 
+ * @author wuqh
+ * 
+ */
+public class RequestBodyConverter implements Converter {
+	private final MessageReader messageReader;
+	private final Type genericType;
+	private final long maxBodySize;
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param messageReader
+	 * @param genericType
+	 *            参数类型（可以是带泛型的类型）
+	 * @param maxBodySize
+	 *            请求体的最大字节数，小于0时不限制
+	 */
+	public RequestBodyConverter(MessageReader messageReader, Type genericType, long maxBodySize) {
+		this.messageReader = messageReader;
+		this.genericType = genericType;
+		this.maxBodySize = maxBodySize;
+	}
+
+	@Override
+	public Object convertValue(ContextProvider provider, String propertyName, Class<?> toType) {
+		HttpServletRequest request = provider.getRequest();
+		int contentLength = request.getContentLength();
+		if (contentLength == 0) {
+			return null;
+		}
+		if (maxBodySize >= 0 && contentLength > maxBodySize) {
+			throw new ConvertFailedException("请求体长度[" + contentLength + "]超过最大长度[" + maxBodySize + "]");
+		}
+
+		try {
+			InputStream in = request.getInputStream();
+			if (maxBodySize >= 0) {
+				// 没有Content-Length（如chunked）时在读取过程中限制长度
+				in = new LimitedInputStream(in, maxBodySize);
+			}
+			return messageReader.readRequestBody(request, in, genericType);
+		} catch (ConvertFailedException e) {
+			throw e;
+		} catch (IOException e) {
+			// 请求体格式不正确
+			if (provider.addBindingError(propertyName)) {
+				return null;
+			}
+			throw new ConvertFailedException("解析参数[" + propertyName + "]的请求体失败：", e);
+		}
+	}
+
+	/**
+	 * 限制读取长度的输入流，超过时抛出异常
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private final long maxSize;
+		private long count;
+
+		LimitedInputStream(InputStream in, long maxSize) {
+			super(in);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void count(long n) {
+			count += n;
+			if (count > maxSize) {
+				throw new ConvertFailedException("请求体超过最大长度[" + maxSize + "]");
+			}
+		}
+	}
+}
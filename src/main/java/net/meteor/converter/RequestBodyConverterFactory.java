@@ -0,0 +1,24 @@
+package net.meteor.converter;
+
+import java.lang.reflect.Type;
+
+/**
+ * &#64;ReqBody参数的Converter生成器，ConverterFactory可以选择实现该接口来指定请求体的解析方式，
+ * 没有实现时使用默认的{@link MessageReader}解析
+ * 
+ * @author wuqh
+ * 
+ */
+public interface RequestBodyConverterFactory {
+	/**
+	 * 生成@ReqBody参数的Converter
+	 * 
+	 * @param genericType
+	 *            参数类型（可以是带泛型的类型）
+	 * @param maxBodySize
+	 *            请求体的最大字节数，小于0时使用默认值
+	 * @return
+	 * @see RequestBodyConverter
+	 */
+	public Converter getRequestBodyConverter(Type genericType, long maxBodySize);
+}
@@ -1,10 +1,6 @@
 package net.meteor.converter;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
-import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -13,7 +9,9 @@ import javax.servlet.http.HttpSession;
 import net.meteor.exception.ConvertFailedException;
 import net.meteor.multipart.MultipartFile;
 import net.meteor.multipart.MultipartHttpServletRequest;
-import net.meteor.utils.BeanUtils;
+import net.meteor.utils.DatePattern;
+import net.meteor.utils.ScalarParser;
+import net.meteor.utils.ScalarParsers;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -27,7 +25,9 @@ import org.apache.commons.lang.StringUtils;
  * 
  */
 public class SimpleTypeConverter implements Converter {
-	private final SimpleDateFormat dateFormat;
+	private final DatePattern datePattern;
+	private final Class<?> type;
+	private final ScalarParser<?> parser;
 
 	/**
 	 * 构造函数
@@ -36,15 +36,35 @@ public class SimpleTypeConverter implements Converter {
 	 *            解析的日期格式（如yyyy-MM-dd）
 	 */
 	public SimpleTypeConverter(String pattern) {
+		this(pattern, null);
+	}
+
+	/**
+	 * 构造函数，创建时获取目标类型的解析器，转换时不再判断类型
+	 * 
+	 * @param pattern
+	 *            解析的日期格式（如yyyy-MM-dd）
+	 * @param type
+	 *            转换的目标类型
+	 */
+	public SimpleTypeConverter(String pattern, Class<?> type) {
+		this.type = type;
+		this.parser = (type == null ? null : ScalarParsers.getParser(type));
 		if (StringUtils.isNotBlank(pattern)) {
-			dateFormat = new SimpleDateFormat(pattern);
+			datePattern = DatePattern.forPattern(pattern);
 		} else {
-			dateFormat = null;
+			datePattern = null;
 		}
 	}
 
 	@Override
 	public Object convertValue(ContextProvider provider, String propertyName, Class<?> toType) {
+		// 创建时已经确定类型的直接使用对应的解析器
+		if (toType == type) {
+			String value = provider.getRequestParameter(propertyName);
+			return (value == null ? null : provider.parseValue(parser, propertyName, value));
+		}
+
 		if (toType.equals(HttpServletRequest.class) || toType.equals(MultipartHttpServletRequest.class)) {
 			return provider.getRequest();
 		}
@@ -57,31 +77,32 @@ public class SimpleTypeConverter implements Converter {
 		}
 
 		if (toType.equals(MultipartFile.class)) {
-			Map<String, List<MultipartFile>> multipartFiles = provider.getMultipartFiles();
-			return (multipartFiles == null ? null : multipartFiles.get(propertyName).get(0));
+			return provider.getMultipartFile(propertyName);
 		}
 
-		Map<String, String[]> parameterValues = provider.getRequestParameters();
-
-		if (parameterValues == null) {
+		// 绑定集合、数组元素时取对应位置上的值
+		String value = provider.getRequestParameter(propertyName);
+		if (value == null) {
 			return null;
 		}
 
-		String[] values = parameterValues.get(propertyName);
-		if (values == null || values.length == 0) {
-			return null;
-		}
-		
-		if (toType.equals(Date.class) && dateFormat != null) {
-			try {
-				return dateFormat.parse(values[0]);
-			} catch (ParseException e) {
-				throw new ConvertFailedException("解析日期格式失败", e);
-			}
+		if (toType.equals(Date.class) && datePattern != null) {
+			return parseDate(provider, propertyName, value);
 		}
 
-		return BeanUtils.convertValue(values[0], toType);
+		return provider.parseValue(ScalarParsers.getParser(toType), propertyName, value);
+
+	}
 
+	private Date parseDate(ContextProvider provider, String propertyName, String value) {
+		long millis = datePattern.parseMillis(value, 0, value.length(), false);
+		if (millis != DatePattern.INVALID) {
+			return new Date(millis);
+		}
+		if (provider.addBindingError(propertyName)) {
+			return null;
+		}
+		throw new ConvertFailedException("解析日期格式失败：日期[" + value + "]与格式[" + datePattern.getPattern() + "]不匹配");
 	}
 
 }
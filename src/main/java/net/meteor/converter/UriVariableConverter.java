@@ -1,17 +1,17 @@
 package net.meteor.converter;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
 
 import net.meteor.exception.ConvertFailedException;
-import net.meteor.utils.BeanUtils;
+import net.meteor.utils.DatePattern;
+import net.meteor.utils.ScalarParsers;
 
+import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.StringUtils;
 
 public class UriVariableConverter implements Converter {
-	private final SimpleDateFormat dateFormat;
+	private final DatePattern datePattern;
 
 	/**
 	 * 构造函数
@@ -21,9 +21,9 @@ public class UriVariableConverter implements Converter {
 	 */
 	public UriVariableConverter(String pattern) {
 		if (StringUtils.isNotBlank(pattern)) {
-			dateFormat = new SimpleDateFormat(pattern);
+			datePattern = DatePattern.forPattern(pattern);
 		} else {
-			dateFormat = null;
+			datePattern = null;
 		}
 	}
 
@@ -35,17 +35,36 @@ public class UriVariableConverter implements Converter {
 			return null;
 		}
 
+		// 路径匹配时已经按类型解析过的变量直接使用
+		Map<String, Object> typedUriTemplateVariables = provider.getTypedUriTemplateVariables();
+		if (typedUriTemplateVariables != null) {
+			Object typedValue = typedUriTemplateVariables.get(propertyName);
+			if (typedValue != null && ClassUtils.isAssignable(typedValue.getClass(), toType, true)) {
+				return typedValue;
+			}
+		}
+
 		String value = uriTemplateVariables.get(propertyName);
 
-		if (toType.equals(Date.class) && dateFormat != null) {
-			try {
-				return dateFormat.parse(value);
-			} catch (ParseException e) {
-				throw new ConvertFailedException("解析日期格式失败", e);
-			}
+		if (toType.equals(Date.class) && datePattern != null) {
+			return parseDate(provider, propertyName, value);
 		}
 
-		return BeanUtils.convertValue(value, toType);
+		return provider.parseValue(ScalarParsers.getParser(toType), propertyName, value);
+	}
+
+	private Date parseDate(ContextProvider provider, String propertyName, String value) {
+		if (value == null) {
+			return null;
+		}
+		long millis = datePattern.parseMillis(value, 0, value.length(), false);
+		if (millis != DatePattern.INVALID) {
+			return new Date(millis);
+		}
+		if (provider.addBindingError(propertyName)) {
+			return null;
+		}
+		throw new ConvertFailedException("解析日期格式失败：日期[" + value + "]与格式[" + datePattern.getPattern() + "]不匹配");
 	}
 
 }
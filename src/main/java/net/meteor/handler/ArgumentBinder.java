@@ -0,0 +1,242 @@
+package net.meteor.handler;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import net.meteor.converter.ContextProvider;
+import net.meteor.converter.Converter;
+import net.meteor.converter.SimpleTypeConverter;
+import net.meteor.converter.UriVariableConverter;
+import net.meteor.multipart.MultipartFile;
+import net.meteor.multipart.MultipartHttpServletRequest;
+import net.meteor.utils.BeanUtils;
+import net.meteor.utils.ScalarParser;
+import net.meteor.utils.ScalarParsers;
+import net.meteor.validation.Errors;
+
+import org.apache.commons.lang.ClassUtils;
+
+/**
+ * 参数绑定器，处理方法的每个参数在启动时生成一个，已经确定了参数的来源（请求参数、URI模板变量、request、response、session、文件）
+ * 和目标类型，请求时直接获取参数值，不再查找Map和判断类型。
+ * <p>
+ * 只有默认的SimpleTypeConverter和UriVariableConverter会被替换为专门的绑定器，其他Converter（包括自定义ConverterFactory生成的）
+ * 仍然通过Converter转换
+ *
+ * @author wuqh
+ *
+ */
+abstract class ArgumentBinder {
+
+	/**
+	 * 从请求上下文容器中获取参数值
+	 *
+	 * @param provider
+	 * @return
+	 */
+	abstract Object bind(ContextProvider provider);
+
+	/**
+	 * 为普通参数生成绑定器
+	 *
+	 * @param converter
+	 * @param paramName
+	 * @param paramType
+	 * @param pattern
+	 *            参数上@Pattern的值
+	 * @return
+	 */
+	static ArgumentBinder forParameter(Converter converter, String paramName, Class<?> paramType, String pattern) {
+		if (converter.getClass() != SimpleTypeConverter.class) {
+			return new ConverterBinder(converter, paramName, paramType);
+		}
+		if (paramType == HttpServletRequest.class || paramType == MultipartHttpServletRequest.class) {
+			return new RequestBinder();
+		}
+		if (paramType == HttpServletResponse.class) {
+			return new ResponseBinder();
+		}
+		if (paramType == HttpSession.class) {
+			return new SessionBinder();
+		}
+		if (paramType == MultipartFile.class) {
+			return new MultipartFileBinder(paramName);
+		}
+		if (pattern != null || !BeanUtils.isConvertableSimpleType(paramType)) {
+			return new ConverterBinder(converter, paramName, paramType);
+		}
+		return new RequestParameterBinder(paramName, ScalarParsers.getParser(paramType));
+	}
+
+	/**
+	 * 为@PathVar参数生成绑定器
+	 *
+	 * @param converter
+	 * @param variableName
+	 * @param paramType
+	 * @param pattern
+	 *            参数上@Pattern的值
+	 * @return
+	 */
+	static ArgumentBinder forPathVariable(Converter converter, String variableName, Class<?> paramType,
+			String pattern) {
+		if (converter.getClass() != UriVariableConverter.class || pattern != null) {
+			return new PathVariableConverterBinder(converter, variableName, paramType);
+		}
+		return new PathVariableBinder(variableName, paramType, ScalarParsers.getParser(paramType));
+	}
+
+	/**
+	 * 为{@link Errors}参数生成绑定器，参数值为绑定过程中收集到的错误
+	 *
+	 * @return
+	 */
+	static ArgumentBinder forBindingErrors() {
+		return new BindingErrorsBinder();
+	}
+
+	/**
+	 * 通过Converter获取参数值
+	 */
+	private static class ConverterBinder extends ArgumentBinder {
+		private final Converter converter;
+		private final String paramName;
+		private final Class<?> paramType;
+
+		ConverterBinder(Converter converter, String paramName, Class<?> paramType) {
+			this.converter = converter;
+			this.paramName = paramName;
+			this.paramType = paramType;
+		}
+
+		@Override
+		Object bind(ContextProvider provider) {
+			return converter.convertValue(provider, paramName, paramType);
+		}
+	}
+
+	/**
+	 * 通过Converter获取URI模板变量，URI模板中没有该变量时返回<code>null</code>
+	 */
+	private static class PathVariableConverterBinder extends ConverterBinder {
+		private final String variableName;
+
+		PathVariableConverterBinder(Converter converter, String variableName, Class<?> paramType) {
+			super(converter, variableName, paramType);
+			this.variableName = variableName;
+		}
+
+		@Override
+		Object bind(ContextProvider provider) {
+			Map<String, String> uriTemplateVariables = provider.getUriTemplateVariables();
+			if (uriTemplateVariables == null || !uriTemplateVariables.containsKey(variableName)) {
+				return null;
+			}
+			return super.bind(provider);
+		}
+	}
+
+	/**
+	 * 获取URI模板变量，优先使用路径匹配时已经按类型解析好的值
+	 */
+	private static class PathVariableBinder extends ArgumentBinder {
+		private final String variableName;
+		private final Class<?> paramType;
+		private final ScalarParser<?> parser;
+
+		PathVariableBinder(String variableName, Class<?> paramType, ScalarParser<?> parser) {
+			this.variableName = variableName;
+			this.paramType = paramType;
+			this.parser = parser;
+		}
+
+		@Override
+		Object bind(ContextProvider provider) {
+			Map<String, String> uriTemplateVariables = provider.getUriTemplateVariables();
+			if (uriTemplateVariables == null) {
+				return null;
+			}
+			String value = uriTemplateVariables.get(variableName);
+			if (value == null) {
+				return null;
+			}
+			Map<String, Object> typedUriTemplateVariables = provider.getTypedUriTemplateVariables();
+			if (typedUriTemplateVariables != null) {
+				Object typedValue = typedUriTemplateVariables.get(variableName);
+				if (typedValue != null && ClassUtils.isAssignable(typedValue.getClass(), paramType, true)) {
+					return typedValue;
+				}
+			}
+			return provider.parseValue(parser, variableName, value);
+		}
+	}
+
+	/**
+	 * 获取请求参数的第一个值
+	 */
+	private static class RequestParameterBinder extends ArgumentBinder {
+		private final String paramName;
+		private final ScalarParser<?> parser;
+
+		RequestParameterBinder(String paramName, ScalarParser<?> parser) {
+			this.paramName = paramName;
+			this.parser = parser;
+		}
+
+		@Override
+		Object bind(ContextProvider provider) {
+			String value = provider.getRequestParameter(paramName);
+			return (value == null ? null : provider.parseValue(parser, paramName, value));
+		}
+	}
+
+	private static class RequestBinder extends ArgumentBinder {
+		@Override
+		Object bind(ContextProvider provider) {
+			return provider.getRequest();
+		}
+	}
+
+	private static class ResponseBinder extends ArgumentBinder {
+		@Override
+		Object bind(ContextProvider provider) {
+			return provider.getResponse();
+		}
+	}
+
+	private static class SessionBinder extends ArgumentBinder {
+		@Override
+		Object bind(ContextProvider provider) {
+			return provider.getSession();
+		}
+	}
+
+	/**
+	 * 获取绑定错误，其他参数绑定出错时记录到同一个对象中
+	 */
+	private static class BindingErrorsBinder extends ArgumentBinder {
+		@Override
+		Object bind(ContextProvider provider) {
+			return provider.getBindingErrors();
+		}
+	}
+
+	/**
+	 * 获取上传文件中的第一个文件，没有上传该文件时返回<code>null</code>
+	 */
+	private static class MultipartFileBinder extends ArgumentBinder {
+		private final String paramName;
+
+		MultipartFileBinder(String paramName) {
+			this.paramName = paramName;
+		}
+
+		@Override
+		Object bind(ContextProvider provider) {
+			return provider.getMultipartFile(paramName);
+		}
+	}
+}
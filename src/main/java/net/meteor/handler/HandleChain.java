@@ -16,10 +16,14 @@ import org.slf4j.LoggerFactory;
  */
 public class HandleChain {
 	private static final Logger LOGGER = LoggerFactory.getLogger(HandleChain.class);
-	private final HandlerInterceptor[] interceptors;
-	private final RequestHandleContext handleContext;
+	private HandlerInterceptor[] interceptors;
+	private RequestHandleContext handleContext;
 	private int currentInterceptorIndex = -1;
 	private Map<String, String> uriTemplateVariables;
+	private Map<String, Object> typedUriTemplateVariables;
+	private String allowHeader;
+	// 重用模式下处理链所属的线程内请求状态
+	private RequestState requestState;
 
 	/**
 	 * 构造函数，使用处理拦截器和请求上下文环境构造HandleChain
@@ -32,6 +36,38 @@ public class HandleChain {
 		this.handleContext = handleContext;
 	}
 
+	/**
+	 * 重用处理链时重新设置处理拦截器和请求上下文环境，并清空其他请求相关的状态
+	 * 
+	 * @param interceptors
+	 * @param handleContext
+	 */
+	void reset(HandlerInterceptor[] interceptors, RequestHandleContext handleContext) {
+		this.interceptors = interceptors;
+		this.handleContext = handleContext;
+		this.currentInterceptorIndex = -1;
+		this.uriTemplateVariables = null;
+		this.typedUriTemplateVariables = null;
+		this.allowHeader = null;
+	}
+
+	void setRequestState(RequestState requestState) {
+		this.requestState = requestState;
+	}
+
+	RequestState getRequestState() {
+		return requestState;
+	}
+
+	/**
+	 * 请求结束时调用，重用模式下归还线程内的请求状态，之后不能再使用该处理链
+	 */
+	public void release() {
+		if (requestState != null) {
+			requestState.release();
+		}
+	}
+
 	public RequestHandleContext getHandleContext() {
 		return handleContext;
 	}
@@ -44,6 +80,32 @@ public class HandleChain {
 		return uriTemplateVariables;
 	}
 
+	public void setTypedUriTemplateVariables(Map<String, Object> typedUriTemplateVariables) {
+		this.typedUriTemplateVariables = typedUriTemplateVariables;
+	}
+
+	/**
+	 * <code>{name:type}</code>形式的URI模板变量在路径匹配时解析后的值
+	 * 
+	 * @return
+	 */
+	public Map<String, Object> getTypedUriTemplateVariables() {
+		return typedUriTemplateVariables;
+	}
+
+	public void setAllowHeader(String allowHeader) {
+		this.allowHeader = allowHeader;
+	}
+
+	/**
+	 * 匹配路径支持的HTTP方法（Allow头信息的值）
+	 * 
+	 * @return
+	 */
+	public String getAllowHeader() {
+		return allowHeader;
+	}
+
 	/**
 	 * 请求前处理，按照顺序依次处理每个拦截器中的请求前处理方法。 如果任何一个拦截器返回需要拦截则终止处理， 并调用
 	 * {@link #doAfterCompletion(HttpServletRequest, HttpServletResponse, Exception)}
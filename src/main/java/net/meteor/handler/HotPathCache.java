@@ -0,0 +1,235 @@
+package net.meteor.handler;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 热点路径缓存，缓存请求路径与最匹配的pattern、RESTful请求上下文容器以及URI模板变量之间的关系，与HTTP方法无关。
+ * <p>
+ * 缓存容量固定，使用ConcurrentHashMap存放缓存项，另外用一个定长的槽位数组记录缓存项以便随机抽样。
+ * 缓存满了以后，新的缓存项会随机抽取若干个槽位，淘汰其中访问频率最低的一项（近似LFU），
+ * 替换槽位使用CAS操作，整个过程不需要加锁。访问频率会定期减半，以便让过去的热点路径逐渐被淘汰。
+ *
+ * @author wuqh
+ *
+ */
+class HotPathCache {
+	// 每次淘汰时抽样的槽位数
+	private static final int SAMPLE_SIZE = 8;
+	// 淘汰时CAS失败的重试次数
+	private static final int MAX_EVICT_ATTEMPTS = 2;
+	// 命中次数达到容量的多少倍时将访问频率减半
+	private static final int AGING_FACTOR = 8;
+
+	private final int capacity;
+	private final ConcurrentHashMap<String, CacheEntry> entries;
+	private final AtomicReferenceArray<CacheEntry> slots;
+	private final AtomicInteger usedSlots = new AtomicInteger();
+	private final AtomicInteger hitsSinceAging = new AtomicInteger();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * 使用缓存容量构造HotPathCache
+	 *
+	 * @param capacity
+	 */
+	HotPathCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new ConcurrentHashMap<String, CacheEntry>(capacity * 4 / 3 + 1);
+		this.slots = new AtomicReferenceArray<CacheEntry>(capacity);
+	}
+
+	/**
+	 * 获取缓存项
+	 *
+	 * @param key
+	 * @return 不存在时返回<code>null</code>
+	 */
+	CacheEntry get(String key) {
+		CacheEntry entry = entries.get(key);
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		hitCount.incrementAndGet();
+		entry.touch();
+		if (hitsSinceAging.incrementAndGet() >= capacity * AGING_FACTOR) {
+			age();
+		}
+		return entry;
+	}
+
+	/**
+	 * 放入缓存项，缓存已满时淘汰一个访问频率低的缓存项
+	 *
+	 * @param key
+	 * @param pattern
+	 * @param handleContext
+	 * @param uriTemplateVariables
+	 * @param typedUriTemplateVariables
+	 */
+	void put(String key, String pattern, RestfulHandleContext handleContext, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables) {
+		CacheEntry entry = new CacheEntry(key, pattern, handleContext, uriTemplateVariables,
+				typedUriTemplateVariables);
+		if (entries.putIfAbsent(key, entry) != null) {
+			return;
+		}
+
+		// 还有空闲槽位
+		int used = usedSlots.get();
+		while (used < capacity) {
+			if (usedSlots.compareAndSet(used, used + 1)) {
+				slots.set(used, entry);
+				return;
+			}
+			used = usedSlots.get();
+		}
+
+		for (int attempt = 0; attempt < MAX_EVICT_ATTEMPTS; attempt++) {
+			if (evict(entry)) {
+				return;
+			}
+		}
+
+		// 没有替换成功，放弃缓存
+		entries.remove(key, entry);
+	}
+
+	/**
+	 * 随机抽样，用新缓存项替换掉抽样中访问频率最低的缓存项
+	 *
+	 * @param entry
+	 * @return
+	 */
+	private boolean evict(CacheEntry entry) {
+		int seed = entry.key.hashCode() ^ (int) System.nanoTime();
+		int victimIndex = -1;
+		CacheEntry victim = null;
+		for (int i = 0; i < SAMPLE_SIZE; i++) {
+			// xorshift随机数
+			seed ^= (seed << 13);
+			seed ^= (seed >>> 17);
+			seed ^= (seed << 5);
+			int index = (seed & Integer.MAX_VALUE) % capacity;
+			CacheEntry candidate = slots.get(index);
+			if (candidate != null && (victim == null || candidate.frequency < victim.frequency)) {
+				victim = candidate;
+				victimIndex = index;
+			}
+		}
+
+		if (victim == null || !slots.compareAndSet(victimIndex, victim, entry)) {
+			return false;
+		}
+
+		entries.remove(victim.key, victim);
+		evictionCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * 将所有缓存项的访问频率减半
+	 */
+	private void age() {
+		int hits = hitsSinceAging.get();
+		if (hits < capacity * AGING_FACTOR || !hitsSinceAging.compareAndSet(hits, 0)) {
+			// 其他线程正在处理
+			return;
+		}
+		for (int i = 0; i < capacity; i++) {
+			CacheEntry entry = slots.get(i);
+			if (entry != null) {
+				entry.frequency >>>= 1;
+			}
+		}
+	}
+
+	long getHitCount() {
+		return hitCount.get();
+	}
+
+	long getMissCount() {
+		return missCount.get();
+	}
+
+	long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 缓存项
+	 */
+	static class CacheEntry {
+		private final String key;
+		private final String pattern;
+		private final RestfulHandleContext handleContext;
+		private final Map<String, String> uriTemplateVariables;
+		private final Map<String, Object> typedUriTemplateVariables;
+		// 访问频率，只用于淘汰时比较，允许并发自增时丢失少量计数
+		private volatile int frequency = 1;
+
+		CacheEntry(String key, String pattern, RestfulHandleContext handleContext,
+				Map<String, String> uriTemplateVariables, Map<String, Object> typedUriTemplateVariables) {
+			this.key = key;
+			this.pattern = pattern;
+			this.handleContext = handleContext;
+			this.uriTemplateVariables = (uriTemplateVariables.isEmpty() ? Collections.<String, String> emptyMap()
+					: Collections.unmodifiableMap(new LinkedHashMap<String, String>(uriTemplateVariables)));
+			this.typedUriTemplateVariables = (typedUriTemplateVariables.isEmpty() ? Collections
+					.<String, Object> emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<String, Object>(
+					typedUriTemplateVariables)));
+		}
+
+		private void touch() {
+			int current = frequency;
+			if (current < Integer.MAX_VALUE) {
+				frequency = current + 1;
+			}
+		}
+
+		String getPattern() {
+			return pattern;
+		}
+
+		RestfulHandleContext getHandleContext() {
+			return handleContext;
+		}
+
+		Map<String, String> getUriTemplateVariables() {
+			return uriTemplateVariables;
+		}
+
+		/**
+		 * 将解析后的带类型的URI模板变量放入typedUriTemplateVariables，Date是可变对象，每次复制一份
+		 *
+		 * @param typedUriTemplateVariables
+		 */
+		void copyTypedUriTemplateVariables(Map<String, Object> typedUriTemplateVariables) {
+			for (Map.Entry<String, Object> entry : this.typedUriTemplateVariables.entrySet()) {
+				Object value = entry.getValue();
+				if (value instanceof Date) {
+					value = ((Date) value).clone();
+				}
+				typedUriTemplateVariables.put(entry.getKey(), value);
+			}
+		}
+	}
+}
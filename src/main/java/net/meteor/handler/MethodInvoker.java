@@ -0,0 +1,24 @@
+package net.meteor.handler;
+
+/**
+ * 处理方法调用器，每个RequestHandleContext生成一个，用于代替每次请求都使用反射调用处理方法。
+ * <p>
+ * 该类只在框架内部使用，声明为public是因为生成的调用器类由单独的ClassLoader加载，需要能够继承该类
+ *
+ * @author wuqh
+ *
+ * @see MethodInvokerGenerator
+ */
+public abstract class MethodInvoker {
+	/**
+	 * 调用处理方法，处理方法抛出的异常会被包装为InvocationTargetException，与反射调用保持一致
+	 *
+	 * @param target
+	 *            处理器（Controller）
+	 * @param args
+	 *            处理方法的参数
+	 * @return 处理方法的返回值，基本类型返回包装类型，void返回<code>null</code>
+	 * @throws Exception
+	 */
+	public abstract Object invoke(Object target, Object[] args) throws Exception;
+}
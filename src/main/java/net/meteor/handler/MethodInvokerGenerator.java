@@ -0,0 +1,181 @@
+package net.meteor.handler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.meteor.utils.BytecodeUtils;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 处理方法调用器生成器，使用ASM为每个处理方法生成一个直接调用该方法的{@link MethodInvoker}子类，
+ * 基本类型的参数直接拆箱后传入，避免每次请求都通过反射调用。
+ * <p>
+ * 只有public类中的public方法，并且参数和返回值类型都是public的才能生成调用器；参数类型不匹配时与反射调用一样抛出IllegalArgumentException。
+ * 无法生成（如方法不可访问、安全策略不允许定义类等）时，
+ * 使用预先调用过setAccessible的反射调用器
+ *
+ * @author wuqh
+ *
+ */
+class MethodInvokerGenerator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodInvokerGenerator.class);
+
+	private static final String INVOKER_CLASS_PREFIX = "net.meteor.handler.GeneratedMethodInvoker$";
+	private static final String SUPER_NAME = Type.getInternalName(MethodInvoker.class);
+	private static final String INVOKE_DESCRIPTOR = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+	private static final String TARGET_EXCEPTION_NAME = Type.getInternalName(InvocationTargetException.class);
+	private static final String ARGUMENT_EXCEPTION_NAME = Type.getInternalName(IllegalArgumentException.class);
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private MethodInvokerGenerator() {
+	}
+
+	/**
+	 * 为处理方法创建调用器
+	 *
+	 * @param method
+	 * @return
+	 */
+	static MethodInvoker createInvoker(Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		if (isAccessible(method)) {
+			ClassLoader classLoader = BytecodeUtils.getParentClassLoader(declaringClass, MethodInvoker.class);
+			if (classLoader != null) {
+				try {
+					return generateInvoker(method, classLoader);
+				} catch (Throwable e) {
+					LOGGER.warn("生成方法[" + method + "]的调用器失败，使用反射调用", e);
+				}
+			}
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("方法[" + method + "]使用反射调用");
+		}
+		return new ReflectiveMethodInvoker(method);
+	}
+
+	private static boolean isAccessible(Method method) {
+		if (!Modifier.isPublic(method.getModifiers()) || !BytecodeUtils.isPublicType(method.getDeclaringClass())
+				|| !BytecodeUtils.isPublicType(method.getReturnType())) {
+			return false;
+		}
+		for (Class<?> paramType : method.getParameterTypes()) {
+			if (!BytecodeUtils.isPublicType(paramType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static MethodInvoker generateInvoker(Method method, ClassLoader parent) throws Exception {
+		String className = INVOKER_CLASS_PREFIX + COUNTER.incrementAndGet();
+		byte[] bytes = generateClass(className.replace('.', '/'), method);
+		Class<?> invokerClass = BytecodeUtils.defineClass(parent, className, bytes);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("生成方法[" + method + "]的调用器[" + className + "]成功");
+		}
+		return (MethodInvoker) invokerClass.newInstance();
+	}
+
+	private static byte[] generateClass(String internalName, Method method) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SYNTHETIC, internalName, null,
+				SUPER_NAME, null);
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, SUPER_NAME, "<init>", "()V");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, null,
+				new String[] { "java/lang/Exception" });
+		mv.visitCode();
+		Label tryStart = new Label();
+		Label tryEnd = new Label();
+		Label handler = new Label();
+		Label argumentStart = new Label();
+		Label argumentHandler = new Label();
+		mv.visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable");
+		// 参数类型不匹配或者基本类型参数为null时，与反射调用一样抛出IllegalArgumentException
+		mv.visitTryCatchBlock(argumentStart, tryStart, argumentHandler, "java/lang/ClassCastException");
+		mv.visitTryCatchBlock(argumentStart, tryStart, argumentHandler, "java/lang/NullPointerException");
+		mv.visitLabel(argumentStart);
+
+		Class<?> declaringClass = method.getDeclaringClass();
+		String owner = Type.getInternalName(declaringClass);
+		boolean isStatic = Modifier.isStatic(method.getModifiers());
+		if (!isStatic) {
+			mv.visitVarInsn(Opcodes.ALOAD, 1);
+			mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+		}
+		Class<?>[] paramTypes = method.getParameterTypes();
+		for (int i = 0; i < paramTypes.length; i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 2);
+			BytecodeUtils.pushInt(mv, i);
+			mv.visitInsn(Opcodes.AALOAD);
+			BytecodeUtils.unbox(mv, paramTypes[i]);
+		}
+
+		// 只有处理方法本身抛出的异常才包装为InvocationTargetException
+		mv.visitLabel(tryStart);
+		int opcode = (isStatic ? Opcodes.INVOKESTATIC : (declaringClass.isInterface() ? Opcodes.INVOKEINTERFACE
+				: Opcodes.INVOKEVIRTUAL));
+		mv.visitMethodInsn(opcode, owner, method.getName(), Type.getMethodDescriptor(method));
+		mv.visitLabel(tryEnd);
+		BytecodeUtils.box(mv, method.getReturnType());
+		mv.visitInsn(Opcodes.ARETURN);
+
+		mv.visitLabel(handler);
+		mv.visitVarInsn(Opcodes.ASTORE, 3);
+		mv.visitTypeInsn(Opcodes.NEW, TARGET_EXCEPTION_NAME);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitVarInsn(Opcodes.ALOAD, 3);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, TARGET_EXCEPTION_NAME, "<init>", "(Ljava/lang/Throwable;)V");
+		mv.visitInsn(Opcodes.ATHROW);
+
+		mv.visitLabel(argumentHandler);
+		mv.visitVarInsn(Opcodes.ASTORE, 3);
+		mv.visitTypeInsn(Opcodes.NEW, ARGUMENT_EXCEPTION_NAME);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitLdcInsn("argument type mismatch");
+		mv.visitVarInsn(Opcodes.ALOAD, 3);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, ARGUMENT_EXCEPTION_NAME, "<init>",
+				"(Ljava/lang/String;Ljava/lang/Throwable;)V");
+		mv.visitInsn(Opcodes.ATHROW);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * 反射调用器，只在创建时调用一次setAccessible
+	 */
+	private static class ReflectiveMethodInvoker extends MethodInvoker {
+		private final Method method;
+
+		ReflectiveMethodInvoker(Method method) {
+			this.method = method;
+			method.setAccessible(true);
+		}
+
+		@Override
+		public Object invoke(Object target, Object[] args) throws Exception {
+			return method.invoke(target, args);
+		}
+	}
+}
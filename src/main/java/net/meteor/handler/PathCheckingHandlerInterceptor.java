@@ -0,0 +1,94 @@
+package net.meteor.handler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.meteor.utils.PathMatcher;
+import net.meteor.utils.UrlPathHelper;
+
+/**
+ * 请求时按实际请求路径判断是否拦截的HandlerInterceptor。
+ * <p>
+ * 注册的路径包含变量或者通配符（如<code>/{section}/users</code>）时，无法在注册时确定限定路径的拦截器是否适用，
+ * 使用该类包装，每次请求都用实际的请求路径匹配
+ *
+ * @author wuqh
+ *
+ */
+class PathCheckingHandlerInterceptor implements HandlerInterceptor {
+	private final PathScopedHandlerInterceptor interceptor;
+	private final PathMatcher pathMatcher;
+	private final UrlPathHelper urlPathHelper;
+
+	PathCheckingHandlerInterceptor(PathScopedHandlerInterceptor interceptor, PathMatcher pathMatcher,
+			UrlPathHelper urlPathHelper) {
+		this.interceptor = interceptor;
+		this.pathMatcher = pathMatcher;
+		this.urlPathHelper = urlPathHelper;
+	}
+
+	/**
+	 * 判断拦截器是否拦截该路径
+	 *
+	 * @param interceptor
+	 * @param pathMatcher
+	 * @param path
+	 * @return
+	 */
+	static boolean isPathIncluded(PathScopedHandlerInterceptor interceptor, PathMatcher pathMatcher, String path) {
+		String[] excludePatterns = interceptor.getExcludePatterns();
+		if (excludePatterns != null) {
+			for (String excludePattern : excludePatterns) {
+				if (pathMatcher.match(excludePattern, path)) {
+					return false;
+				}
+			}
+		}
+		String[] includePatterns = interceptor.getIncludePatterns();
+		if (includePatterns == null || includePatterns.length == 0) {
+			return true;
+		}
+		for (String includePattern : includePatterns) {
+			if (pathMatcher.match(includePattern, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isApplicable(HttpServletRequest request) {
+		return isPathIncluded(interceptor, pathMatcher, urlPathHelper.getLookupPathForRequest(request));
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object controller)
+			throws Exception {
+		return (!isApplicable(request) || interceptor.preHandle(request, response, controller));
+	}
+
+	@Override
+	public void afterHandle(HttpServletRequest request, HttpServletResponse response, Object controller,
+			ModelAndView result) throws Exception {
+		if (isApplicable(request)) {
+			interceptor.afterHandle(request, response, controller, result);
+		}
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object controller,
+			Exception ex) throws Exception {
+		if (isApplicable(request)) {
+			interceptor.afterCompletion(request, response, controller, ex);
+		}
+	}
+
+	@Override
+	public int getOrder() {
+		return interceptor.getOrder();
+	}
+
+	@Override
+	public String toString() {
+		return interceptor + "(按请求路径匹配)";
+	}
+}
@@ -15,6 +15,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import net.meteor.annotation.Path;
 import net.meteor.converter.ConverterFactory;
+import net.meteor.utils.AntPathMatcher;
 import net.meteor.utils.ParameterNameDiscoverer;
 import net.meteor.utils.PathMatcher;
 import net.meteor.utils.ReflectionUtils;
@@ -34,6 +35,8 @@ import org.slf4j.LoggerFactory;
 public class PathDetector {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PathDetector.class);
 
+	private static final String ANT_PATH_SEPARATOR = "/";
+
 	private final PathMatcher pathMatcher;
 
 	private final UrlPathHelper urlPathHelper;
@@ -44,22 +47,23 @@ public class PathDetector {
 
 	private List<HandlerInterceptor> handlerInterceptors;
 
+	// 限定路径的拦截器对注册路径的适用范围
+	private static final int INTERCEPT_NEVER = 0;
+	private static final int INTERCEPT_ALWAYS = 1;
+	private static final int INTERCEPT_BY_PATH = 2;
+
 	private final Map<String, RestfulHandleContext> handleContextMap = new HashMap<String, RestfulHandleContext>();
 
-	// 热点路径缓存，
-	// private static final int DEFAULT_MAX_HOT_CACHE_SIZE = 1000;
-	// private static final int INIT_HOT_CACHE_SIZE = 1000;
-	//
-	// private Map<String, String> hotPathPatternCache = new
-	// LinkedHashMap<String, String>(INIT_HOT_CACHE_SIZE, 0.8f, true) {
-	// private static final long serialVersionUID = -6043286276814966151L;
-	//
-	// protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
-	// return size() > PathDetector.this.hotCacheSize;
-	// }
-	// };
-	//
-	// private int hotCacheSize = DEFAULT_MAX_HOT_CACHE_SIZE;
+	// 路由索引，在detectHandlers中构造，PathMatcher不是AntPathMatcher时为null（使用逐个匹配的方式）
+	private RouteTrie routeTrie;
+
+	// 热点路径缓存，缓存通过模板匹配到的路径，hotCacheSize不大于0时不使用缓存
+	private static final int DEFAULT_MAX_HOT_CACHE_SIZE = 1000;
+
+	private HotPathCache hotPathCache = new HotPathCache(DEFAULT_MAX_HOT_CACHE_SIZE);
+
+	// 是否重用线程内的请求状态（URI模板变量、处理链等）
+	private boolean reuseRequestState;
 
 	public PathDetector(PathMatcher pathMatcher, UrlPathHelper urlPathHelper,
 			ParameterNameDiscoverer parameterNameDiscoverer, ConverterFactory converterFactory) {
@@ -70,72 +74,151 @@ public class PathDetector {
 	}
 
 	/**
-	 * 根据HttpServletRequest获取URL请求处理链对象
+	 * 根据HttpServletRequest获取URL请求处理链对象。路径匹配但是不支持请求的HTTP方法时，
+	 * 返回的处理链中没有RequestHandleContext，只有该路径的Allow头信息
 	 * 
 	 * @param request
 	 * @return
 	 */
 	public HandleChain getHandleChain(HttpServletRequest request) {
-		Map<String, String> uriTemplateVariables = new HashMap<String, String>();
-		RequestHandleContext handleContext = lookupHandleContext(request, uriTemplateVariables);
+		RequestState state = (reuseRequestState ? RequestState.acquire() : null);
+		// 请求状态交给处理链之前出现任何异常或者没有找到处理方法时都要归还
+		boolean stateInUse = false;
+		try {
+			Map<String, String> uriTemplateVariables;
+			Map<String, Object> typedUriTemplateVariables;
+			if (state != null) {
+				uriTemplateVariables = state.getUriTemplateVariables();
+				typedUriTemplateVariables = state.getTypedUriTemplateVariables();
+			} else {
+				uriTemplateVariables = new HashMap<String, String>();
+				typedUriTemplateVariables = new HashMap<String, Object>();
+			}
+			String lookupPath = urlPathHelper.getLookupPathForRequest(request);
+			RestfulHandleContext restfulHandleContext = lookupHandleContext(lookupPath, uriTemplateVariables,
+					typedUriTemplateVariables);
 
-		if (handleContext == null) {
-			return null;
-		}
+			if (restfulHandleContext == null) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("没有找到URL[" + lookupPath + "]对应的处理路径");
+				}
+				return null;
+			}
 
-		HandlerInterceptor[] interceptors = (handlerInterceptors == null ? null : handlerInterceptors
-				.toArray(new HandlerInterceptor[0]));
+			String method = request.getMethod();
+			RequestHandleContext handleContext = restfulHandleContext.getHandleContext(RestfulHandleContext
+					.resolveMethod(method));
 
-		HandleChain chain = new HandleChain(interceptors, handleContext);
-		chain.setUriTemplateVariables(uriTemplateVariables);
+			if (handleContext == null) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("没有找到URL[" + lookupPath + "],Method[" + method + "]对应的处理方法，支持的方法有["
+							+ restfulHandleContext.getAllowHeader() + "]");
+				}
+				HandleChain chain = new HandleChain(null, null);
+				chain.setAllowHeader(restfulHandleContext.getAllowHeader());
+				return chain;
+			}
+
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("找到URL[" + lookupPath + "],Method[" + method + "]对应的Controller[" + handleContext + "]");
+			}
 
-		return chain;
+			HandleChain chain;
+			if (state != null) {
+				chain = state.getHandleChain();
+				chain.reset(restfulHandleContext.getInterceptors(), handleContext);
+			} else {
+				chain = new HandleChain(restfulHandleContext.getInterceptors(), handleContext);
+			}
+			chain.setUriTemplateVariables(uriTemplateVariables);
+			chain.setTypedUriTemplateVariables(typedUriTemplateVariables);
+			chain.setAllowHeader(restfulHandleContext.getAllowHeader());
+			stateInUse = true;
+
+			return chain;
+		} finally {
+			if (state != null && !stateInUse) {
+				state.release();
+			}
+		}
 	}
 
 	/**
-	 * 根据HttpServletRequest获取URL请求处理上下文环境对象
+	 * 根据请求路径获取最匹配的路径对应的RESTful请求上下文容器，与HTTP方法无关
 	 * 
-	 * @param request
+	 * @param lookupPath
+	 * @param uriTemplateVariables
+	 * @param typedUriTemplateVariables
 	 * @return
 	 */
-	private RequestHandleContext lookupHandleContext(HttpServletRequest request,
-			Map<String, String> uriTemplateVariables) {
-		String lookupPath = urlPathHelper.getLookupPathForRequest(request);
+	private RestfulHandleContext lookupHandleContext(String lookupPath, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables) {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("查询URL[" + lookupPath + "]对应的Handler");
 		}
 
-		String method = request.getMethod();
-		RequestHandleContext handleContext = getHandleContextOfUrl(lookupPath, method);
+		RestfulHandleContext handleContext = handleContextMap.get(lookupPath);
 
-		// 能找到直接匹配的处理方法
+		// 能找到直接匹配的路径
 		if (handleContext != null) {
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("找到URL[" + lookupPath + "],Method[" + method + "]对应的" + handleContext);
-			}
 			return handleContext;
 		}
 
-		// // 热点路径命中
-		// String hotMatchPattern = hotPathPatternCache.get(lookupPath);
-		// if (hotMatchPattern != null) {
-		// handleContext = getHandleContextOfUrl(lookupPath, method);
-		// if (handleContext != null) {
-		// uriTemplateVariables.putAll(pathMatcher.extractUriTemplateVariables(hotMatchPattern,
-		// lookupPath));
-		// if (LOGGER.isDebugEnabled()) {
-		// LOGGER.debug("找到URL[" + lookupPath + "],Method[" + method +
-		// "]对应的Controller[" + handleContext + "]");
-		// }
-		// } else {
-		// if (LOGGER.isDebugEnabled()) {
-		// LOGGER.debug("没有找到URL[" + lookupPath + "],Method[" + method +
-		// "]对应的处理方法");
-		// }
-		// }
-		// return handleContext;
-		// }
+		// 热点路径命中
+		if (hotPathCache != null) {
+			HotPathCache.CacheEntry entry = hotPathCache.get(lookupPath);
+			if (entry != null) {
+				uriTemplateVariables.putAll(entry.getUriTemplateVariables());
+				entry.copyTypedUriTemplateVariables(typedUriTemplateVariables);
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("热点路径缓存命中：URL[" + lookupPath + "]对应的Pattern[" + entry.getPattern() + "]");
+				}
+				return entry.getHandleContext();
+			}
+		}
+
+		// 存在路由索引时直接通过索引查找
+		String bestMatchPattern;
+		if (routeTrie != null) {
+			RouteTrie.Route route = routeTrie.lookup(lookupPath, uriTemplateVariables, typedUriTemplateVariables);
+			if (route == null) {
+				return null;
+			}
+			bestMatchPattern = route.getPattern();
+			handleContext = route.getHandleContext();
+		} else {
+			bestMatchPattern = lookupBestMatchPattern(lookupPath);
+			if (bestMatchPattern == null) {
+				return null;
+			}
+			handleContext = handleContextMap.get(bestMatchPattern);
+			if (pathMatcher instanceof AntPathMatcher) {
+				((AntPathMatcher) pathMatcher).extractUriTemplateVariables(bestMatchPattern, lookupPath,
+						uriTemplateVariables, typedUriTemplateVariables);
+			} else {
+				uriTemplateVariables.putAll(pathMatcher.extractUriTemplateVariables(bestMatchPattern, lookupPath));
+			}
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("URL[" + lookupPath + "]匹配的Pattern为[" + bestMatchPattern + "]");
+		}
+
+		if (hotPathCache != null) {
+			hotPathCache.put(lookupPath, bestMatchPattern, handleContext, uriTemplateVariables,
+					typedUriTemplateVariables);
+		}
+
+		return handleContext;
+	}
 
+	/**
+	 * 逐个匹配所有注册的路径再排序，获取最匹配的pattern
+	 * 
+	 * @param lookupPath
+	 * @return 没有匹配的pattern时返回<code>null</code>
+	 */
+	private String lookupBestMatchPattern(String lookupPath) {
 		List<String> matchingPatterns = new ArrayList<String>();
 		for (String registeredPattern : this.handleContextMap.keySet()) {
 			if (pathMatcher.match(registeredPattern, lookupPath)) {
@@ -144,63 +227,77 @@ public class PathDetector {
 		}
 
 		if (matchingPatterns.isEmpty()) {
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("没有找到URL[" + lookupPath + "],Method[" + method + "]对应的处理方法");
-			}
 			return null;
 		}
 
 		Comparator<String> pathComparator = pathMatcher.getPatternComparator(lookupPath);
 		Collections.sort(matchingPatterns, pathComparator);
 
-		String bestMatchPattern = matchingPatterns.get(0);
-		handleContext = getHandleContextOfUrl(bestMatchPattern, method);
+		return matchingPatterns.get(0);
+	}
 
-		if (handleContext != null) {
-			uriTemplateVariables.putAll(pathMatcher.extractUriTemplateVariables(bestMatchPattern, lookupPath));
+	public void setHandlerInterceptors(List<HandlerInterceptor> handlerInterceptors) {
+		this.handlerInterceptors = handlerInterceptors;
+	}
 
-			// hotPathPatternCache.put(lookupPath, bestMatchPattern);
+	/**
+	 * 设置是否重用线程内的请求状态。开启后URI模板变量、处理链、请求上下文容器以及方法参数数组在同一线程的请求之间重复使用，
+	 * 请求结束时必须调用{@link HandleChain#release()}，Controller和拦截器也不能在请求结束后继续持有这些对象
+	 * 
+	 * @param reuseRequestState
+	 */
+	public void setReuseRequestState(boolean reuseRequestState) {
+		this.reuseRequestState = reuseRequestState;
+	}
 
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("找到URL[" + lookupPath + "],Method[" + method + "]对应的Controller[" + handleContext + "]");
-			}
-		} else {
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("没有找到URL[" + lookupPath + "],Method[" + method + "]对应的处理方法");
-			}
-		}
+	/**
+	 * 设置热点路径缓存的容量，不大于0时表示不使用热点路径缓存
+	 * 
+	 * @param hotCacheSize
+	 */
+	public void setHotCacheSize(int hotCacheSize) {
+		this.hotPathCache = (hotCacheSize > 0 ? new HotPathCache(hotCacheSize) : null);
+	}
 
-		return handleContext;
+	/**
+	 * 热点路径缓存的命中次数
+	 * 
+	 * @return
+	 */
+	public long getHotCacheHitCount() {
+		HotPathCache cache = hotPathCache;
+		return (cache == null ? 0 : cache.getHitCount());
 	}
 
 	/**
-	 * 根据匹配的路径、请求的method获取处理上下文环境对象
+	 * 热点路径缓存的未命中次数
 	 * 
-	 * @param pathPattern
-	 * @param method
 	 * @return
 	 */
-	private RequestHandleContext getHandleContextOfUrl(String pathPattern, String method) {
-		RestfulHandleContext matchedHandler = this.handleContextMap.get(pathPattern);
-		if (matchedHandler != null) {
-			RequestHandleContext handleContext = matchedHandler.getHandleContext(method);
-			if (handleContext != null) {
-				return handleContext;
-			} else {
-				return null;
-			}
-		} else {
-			return null;
-		}
+	public long getHotCacheMissCount() {
+		HotPathCache cache = hotPathCache;
+		return (cache == null ? 0 : cache.getMissCount());
 	}
 
-	public void setHandlerInterceptors(List<HandlerInterceptor> handlerInterceptors) {
-		this.handlerInterceptors = handlerInterceptors;
+	/**
+	 * 热点路径缓存的淘汰次数
+	 * 
+	 * @return
+	 */
+	public long getHotCacheEvictionCount() {
+		HotPathCache cache = hotPathCache;
+		return (cache == null ? 0 : cache.getEvictionCount());
 	}
 
-	// public void setHotCacheSize(int hotCacheSize) {
-	// this.hotCacheSize = hotCacheSize;
-	// }
+	/**
+	 * 热点路径缓存中当前缓存的路径数量
+	 * 
+	 * @return
+	 */
+	public int getHotCacheSize() {
+		HotPathCache cache = hotPathCache;
+		return (cache == null ? 0 : cache.size());
+	}
 
 	/**
 	 * 检测controllers中的Handler
@@ -224,6 +321,30 @@ public class PathDetector {
 
 		// 排序HandlerInterceptor
 		sortHandlerInterceptor();
+
+		// 计算每个路径适用的HandlerInterceptor
+		resolveRouteInterceptors();
+
+		// 构造路由索引
+		buildRouteTrie();
+	}
+
+	/**
+	 * 构造路由索引，只有使用以"/"为分隔符的AntPathMatcher时才能使用路由索引
+	 */
+	private void buildRouteTrie() {
+		if (!(pathMatcher instanceof AntPathMatcher)) {
+			LOGGER.info("PathMatcher[" + pathMatcher.getClass().getName() + "]不是AntPathMatcher，不使用路由索引");
+			return;
+		}
+		if (!ANT_PATH_SEPARATOR.equals(((AntPathMatcher) pathMatcher).getPathSeparator())) {
+			LOGGER.info("AntPathMatcher的路径分隔符不是\"/\"，不使用路由索引");
+			return;
+		}
+		routeTrie = new RouteTrie((AntPathMatcher) pathMatcher, handleContextMap);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("构造路由索引成功，共" + routeTrie.size() + "个路径");
+		}
 	}
 
 	private void addHandlerInterceptor(HandlerInterceptor interceptor) {
@@ -233,6 +354,129 @@ public class PathDetector {
 		handlerInterceptors.add(interceptor);
 	}
 
+	/**
+	 * 为每个注册的路径计算适用的HandlerInterceptor，请求时直接使用，不再重新生成拦截器数组
+	 */
+	private void resolveRouteInterceptors() {
+		for (Map.Entry<String, RestfulHandleContext> entry : handleContextMap.entrySet()) {
+			String pattern = entry.getKey();
+			List<HandlerInterceptor> interceptors = new ArrayList<HandlerInterceptor>();
+			if (handlerInterceptors != null) {
+				for (HandlerInterceptor interceptor : handlerInterceptors) {
+					int scope = resolveInterceptorScope(interceptor, pattern);
+					if (scope == INTERCEPT_ALWAYS) {
+						interceptors.add(interceptor);
+					} else if (scope == INTERCEPT_BY_PATH) {
+						interceptors.add(new PathCheckingHandlerInterceptor((PathScopedHandlerInterceptor) interceptor,
+								pathMatcher, urlPathHelper));
+					}
+				}
+			}
+			entry.getValue().setInterceptors(interceptors.isEmpty() ? null : interceptors
+					.toArray(new HandlerInterceptor[interceptors.size()]));
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("处理路径[" + pattern + "]适用的HandlerInterceptor：" + interceptors);
+			}
+		}
+	}
+
+	/**
+	 * 判断拦截器对注册的路径pattern的适用范围。
+	 * <p>
+	 * 不含变量和通配符的路径只对应一个请求路径，直接匹配；其他路径只有能确定拦截器的pattern与路径不会重叠时才不拦截，
+	 * 能确定路径都在拦截范围内（如<code>/admin/**</code>与<code>/admin/{id}</code>）并且不会被排除时总是拦截，
+	 * 否则请求时按实际请求路径判断
+	 * 
+	 * @param interceptor
+	 * @param pattern
+	 * @return
+	 */
+	private int resolveInterceptorScope(HandlerInterceptor interceptor, String pattern) {
+		if (!(interceptor instanceof PathScopedHandlerInterceptor)) {
+			return INTERCEPT_ALWAYS;
+		}
+		PathScopedHandlerInterceptor scopedInterceptor = (PathScopedHandlerInterceptor) interceptor;
+		if (isLiteralPath(pattern)) {
+			return (PathCheckingHandlerInterceptor.isPathIncluded(scopedInterceptor, pathMatcher, pattern) ? INTERCEPT_ALWAYS
+					: INTERCEPT_NEVER);
+		}
+		if (!(pathMatcher instanceof AntPathMatcher)) {
+			return INTERCEPT_BY_PATH;
+		}
+
+		boolean excludeMayOverlap = false;
+		String[] excludePatterns = scopedInterceptor.getExcludePatterns();
+		if (excludePatterns != null) {
+			for (String excludePattern : excludePatterns) {
+				if (mayOverlap(excludePattern, pattern)) {
+					excludeMayOverlap = true;
+					break;
+				}
+			}
+		}
+		int includedScope = (excludeMayOverlap ? INTERCEPT_BY_PATH : INTERCEPT_ALWAYS);
+
+		String[] includePatterns = scopedInterceptor.getIncludePatterns();
+		if (includePatterns == null || includePatterns.length == 0) {
+			return includedScope;
+		}
+		boolean includeMayOverlap = false;
+		for (String includePattern : includePatterns) {
+			if (covers(includePattern, pattern)) {
+				return includedScope;
+			}
+			if (mayOverlap(includePattern, pattern)) {
+				includeMayOverlap = true;
+			}
+		}
+		return (includeMayOverlap ? INTERCEPT_BY_PATH : INTERCEPT_NEVER);
+	}
+
+	private boolean isLiteralPath(String pattern) {
+		return (!pathMatcher.isPattern(pattern) && pattern.indexOf('{') == -1);
+	}
+
+	/**
+	 * 获取pattern开头不含变量和通配符的路径段
+	 */
+	private static List<String> getLiteralSegments(String pattern) {
+		List<String> segments = new ArrayList<String>();
+		for (String segment : StringUtils.split(pattern, '/')) {
+			if (segment.indexOf('*') != -1 || segment.indexOf('?') != -1 || segment.indexOf('{') != -1) {
+				break;
+			}
+			segments.add(segment);
+		}
+		return segments;
+	}
+
+	/**
+	 * 两个pattern开头的固定路径段不同时，不可能匹配同一个路径；无法确定时返回<code>true</code>
+	 */
+	private static boolean mayOverlap(String pattern1, String pattern2) {
+		List<String> segments1 = getLiteralSegments(pattern1);
+		List<String> segments2 = getLiteralSegments(pattern2);
+		int length = Math.min(segments1.size(), segments2.size());
+		return segments1.subList(0, length).equals(segments2.subList(0, length));
+	}
+
+	/**
+	 * 判断形如<code>/admin/**</code>的拦截pattern是否包含注册路径能匹配的所有请求路径
+	 */
+	private boolean covers(String interceptorPattern, String pattern) {
+		if (!interceptorPattern.endsWith("/**")) {
+			return false;
+		}
+		String base = interceptorPattern.substring(0, interceptorPattern.length() - 3);
+		if (!isLiteralPath(base) || base.startsWith("/") != pattern.startsWith("/")) {
+			return false;
+		}
+		List<String> baseSegments = getLiteralSegments(base);
+		List<String> segments = getLiteralSegments(pattern);
+		return (segments.size() >= baseSegments.size() && segments.subList(0, baseSegments.size()).equals(
+				baseSegments));
+	}
+
 	private void sortHandlerInterceptor() {
 		if (handlerInterceptors == null) {
 			return;
@@ -0,0 +1,27 @@
+package net.meteor.handler;
+
+/**
+ * 限定路径的请求处理拦截器，只对匹配的路径进行拦截。
+ * <p>
+ * 拦截器适用的路径在注册Controller时按注册的路径pattern（如<code>/admin/{id}</code>）计算一次，并保存在每个路径上。
+ * 注册的路径包含变量或者通配符（如<code>/{section}/users</code>）、无法确定是否适用时，请求时按实际请求路径匹配。
+ * 没有实现该接口的HandlerInterceptor对所有路径都有效
+ *
+ * @author wuqh
+ *
+ */
+public interface PathScopedHandlerInterceptor extends HandlerInterceptor {
+	/**
+	 * 需要拦截的路径pattern（如<code>/admin/**</code>），为<code>null</code>或者空数组时表示拦截所有路径
+	 *
+	 * @return
+	 */
+	String[] getIncludePatterns();
+
+	/**
+	 * 不需要拦截的路径pattern，优先于{@link #getIncludePatterns()}，为<code>null</code>或者空数组时表示不排除任何路径
+	 *
+	 * @return
+	 */
+	String[] getExcludePatterns();
+}
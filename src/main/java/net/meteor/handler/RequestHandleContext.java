@@ -2,18 +2,36 @@ package net.meteor.handler;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import net.meteor.annotation.ETag;
 import net.meteor.annotation.PathVar;
 import net.meteor.annotation.Pattern;
+import net.meteor.annotation.ReqBody;
 import net.meteor.annotation.RespBody;
 import net.meteor.annotation.Validation;
+import net.meteor.converter.ArrayConverter;
+import net.meteor.converter.BeanConverter;
+import net.meteor.converter.CollectionConverter;
 import net.meteor.converter.Converter;
 import net.meteor.converter.ConverterFactory;
+import net.meteor.converter.DefaultConverterFactory;
+import net.meteor.converter.RequestBodyConverterFactory;
+import net.meteor.converter.SimpleTypeConverter;
+import net.meteor.multipart.MultipartFile;
+import net.meteor.multipart.MultipartHttpServletRequest;
+import net.meteor.render.CompressionStats;
 import net.meteor.utils.BeanUtils;
 import net.meteor.utils.ParameterNameDiscoverer;
+import net.meteor.validation.Errors;
 
 /**
  * Request处理的上下文环境，包映射到的方法的相关参数信息
@@ -22,18 +40,38 @@ import net.meteor.utils.ParameterNameDiscoverer;
  * 
  */
 public class RequestHandleContext {
+	/**
+	 * 处理方法需要请求参数
+	 */
+	public static final int FEATURE_PARAMETERS = 1;
+	/**
+	 * 处理方法需要上传文件
+	 */
+	public static final int FEATURE_MULTIPART = 2;
+	/**
+	 * 处理方法自己读取请求体（&#64;ReqBody），不能按文件上传解析请求
+	 */
+	public static final int FEATURE_RAW_BODY = 4;
 
 	private final ParameterNameDiscoverer parameterNameDiscoverer;
 	private final Object controller;
 	private final Method method;
+	private final MethodInvoker methodInvoker;
 	private final ConverterFactory converterFactory;
 	private final Map<String, Converter> pathVarConverters = new HashMap<String, Converter>();
 	private final Map<String, Integer> pathVarIndexes = new HashMap<String, Integer>();
 	private Converter[] parameterConverters;
+	private ArgumentBinder[] argumentBinders;
 	private String[] paramNames;
 	private Class<?>[] paramTypes;
 	private Validation validation;
 	private RespBody respBody;
+	private boolean etagEnabled;
+	private int requestFeatures;
+	private boolean bindingErrorsAccepted;
+	// 处理该路径的请求时新创建的session数量
+	private final AtomicLong createdSessionCount = new AtomicLong();
+	private final CompressionStats compressionStats = new CompressionStats();
 
 	public RequestHandleContext(Object controller, Method method, ParameterNameDiscoverer parameterNameDiscoverer,
 			ConverterFactory converterFactory) {
@@ -42,19 +80,27 @@ public class RequestHandleContext {
 		this.parameterNameDiscoverer = parameterNameDiscoverer;
 		this.converterFactory = converterFactory;
 		parseMethodInfo(method);
+		this.methodInvoker = MethodInvokerGenerator.createInvoker(method);
 	}
 
 	private void parseMethodInfo(Method method) {
 		RespBody respBody = method.getAnnotation(RespBody.class);
 		this.respBody = respBody;
+		etagEnabled = method.isAnnotationPresent(ETag.class);
 
 		validation = method.getAnnotation(Validation.class);
+		if (validation != null) {
+			// 表单校验需要所有请求参数
+			requestFeatures |= FEATURE_PARAMETERS;
+		}
 
 		paramTypes = method.getParameterTypes();
 		paramNames = parameterNameDiscoverer.getParameterNames(method);
 		Annotation[][] annotations = method.getParameterAnnotations();
+		Type[] genericParamTypes = method.getGenericParameterTypes();
 
 		parameterConverters = new Converter[paramTypes.length];
+		argumentBinders = new ArgumentBinder[paramTypes.length];
 
 		for (int index = 0; index < paramTypes.length; index++) {
 			Annotation[] paramAnnotations = annotations[index];
@@ -62,6 +108,7 @@ public class RequestHandleContext {
 			Class<?> clazz = paramTypes[index];
 			String pathVarValue = null;
 			String patternValue = null;
+			ReqBody reqBody = null;
 
 			for (Annotation annotation : paramAnnotations) {
 				if (annotation instanceof PathVar) {
@@ -73,6 +120,10 @@ public class RequestHandleContext {
 					}
 				}
 
+				if (annotation instanceof ReqBody) {
+					reqBody = (ReqBody) annotation;
+				}
+
 				if (annotation instanceof Pattern) {
 					Pattern pattern = (Pattern) annotation;
 					patternValue = pattern.value();
@@ -84,20 +135,143 @@ public class RequestHandleContext {
 
 			}
 
-			if (pathVarValue != null) {
+			if (clazz == Errors.class && reqBody == null && pathVarValue == null) {
+				// 处理方法自己处理绑定错误
+				parameterConverters[index] = null;
+				argumentBinders[index] = ArgumentBinder.forBindingErrors();
+				bindingErrorsAccepted = true;
+			} else if (reqBody != null) {
+				if (pathVarValue != null) {
+					throw new IllegalStateException("方法[" + method + "]中的参数[" + paramName + "]不能同时使用@ReqBody和@PathVar");
+				}
+				Converter converter = getRequestBodyConverter(genericParamTypes[index], reqBody.maxSize());
+				parameterConverters[index] = converter;
+				argumentBinders[index] = ArgumentBinder.forParameter(converter, paramName, clazz, patternValue);
+				// 直接读取请求体，不能再按表单解析
+				requestFeatures |= FEATURE_RAW_BODY;
+			} else if (pathVarValue != null) {
 				Converter converter = converterFactory.getUriVariableConverter(patternValue);
 				parameterConverters[index] = null;
 				pathVarConverters.put(pathVarValue, converter);
 				pathVarIndexes.put(pathVarValue, index);
+				argumentBinders[index] = ArgumentBinder.forPathVariable(converter, pathVarValue, clazz,
+						patternValue);
 			} else {
 				Converter converter = converterFactory.getConverter(method, paramNames, index, clazz, patternValue,
 						false);
 				parameterConverters[index] = converter;
+				argumentBinders[index] = ArgumentBinder.forParameter(converter, paramName, clazz, patternValue);
+				requestFeatures |= getRequestFeatures(converter, clazz);
 			}
 
 		}
 	}
 
+	/**
+	 * 生成@ReqBody参数的Converter，ConverterFactory没有实现{@link RequestBodyConverterFactory}时使用默认的MessageReader
+	 * 
+	 * @param genericType
+	 * @param maxBodySize
+	 * @return
+	 */
+	private Converter getRequestBodyConverter(Type genericType, long maxBodySize) {
+		if (converterFactory instanceof RequestBodyConverterFactory) {
+			return ((RequestBodyConverterFactory) converterFactory).getRequestBodyConverter(genericType, maxBodySize);
+		}
+		return DefaultRequestBodyConverterFactoryHolder.INSTANCE.getRequestBodyConverter(genericType, maxBodySize);
+	}
+
+	/**
+	 * 根据参数类型判断需要的请求内容，自定义的Converter可能读取任何内容
+	 * 
+	 * @param converter
+	 * @param paramType
+	 * @return
+	 */
+	private static int getRequestFeatures(Converter converter, Class<?> paramType) {
+		Class<?> converterClass = converter.getClass();
+		if (converterClass == SimpleTypeConverter.class) {
+			if (paramType == HttpServletRequest.class || paramType == MultipartHttpServletRequest.class) {
+				// 直接使用request时可能读取任何参数和上传文件
+				return FEATURE_PARAMETERS | FEATURE_MULTIPART;
+			}
+			if (paramType == HttpServletResponse.class || paramType == HttpSession.class) {
+				return 0;
+			}
+			if (paramType == MultipartFile.class) {
+				return FEATURE_MULTIPART;
+			}
+			return FEATURE_PARAMETERS;
+		}
+		if (converterClass == BeanConverter.class || converterClass == CollectionConverter.class
+				|| converterClass == ArrayConverter.class) {
+			return FEATURE_PARAMETERS | FEATURE_MULTIPART;
+		}
+		return FEATURE_PARAMETERS | FEATURE_MULTIPART;
+	}
+
+	/**
+	 * 获取处理方法需要的请求内容，为FEATURE_*的组合，启动时根据参数确定
+	 * 
+	 * @return
+	 */
+	public int getRequestFeatures() {
+		return requestFeatures;
+	}
+
+	/**
+	 * 判断处理方法是否需要某一项请求内容
+	 * 
+	 * @param feature
+	 * @return
+	 */
+	public boolean requires(int feature) {
+		return (requestFeatures & feature) != 0;
+	}
+
+	/**
+	 * 判断是否需要按文件上传解析请求：需要请求参数或者上传文件，并且没有自己读取请求体
+	 * 
+	 * @return
+	 */
+	public boolean isMultipartRequired() {
+		return requires(FEATURE_PARAMETERS | FEATURE_MULTIPART) && !requires(FEATURE_RAW_BODY);
+	}
+
+	/**
+	 * 处理方法是否有{@link Errors}类型的参数，有时转换失败的参数记录到该参数中，仍然调用处理方法
+	 * 
+	 * @return
+	 */
+	public boolean isBindingErrorsAccepted() {
+		return bindingErrorsAccepted;
+	}
+
+	/**
+	 * 记录处理请求时通过{@link net.meteor.web.LazyHttpSession}创建了新的session
+	 */
+	public void recordSessionCreated() {
+		createdSessionCount.incrementAndGet();
+	}
+
+	/**
+	 * 获取处理该路径的请求时创建的session数量，用于找出不必要地创建session的处理方法
+	 * 
+	 * @return
+	 */
+	public long getCreatedSessionCount() {
+		return createdSessionCount.get();
+	}
+
+	/**
+	 * 获取该路径的响应压缩统计（压缩率和CPU时间）
+	 * 
+	 * @return
+	 */
+	public CompressionStats getCompressionStats() {
+		return compressionStats;
+	}
+
 	public Object getController() {
 		return controller;
 	}
@@ -106,14 +280,41 @@ public class RequestHandleContext {
 		return method;
 	}
 
+	/**
+	 * 处理方法的调用器，用于代替反射调用
+	 * 
+	 * @return
+	 */
+	public MethodInvoker getMethodInvoker() {
+		return methodInvoker;
+	}
+
 	public RespBody getRespBody() {
 		return respBody;
 	}
 
+	/**
+	 * 处理方法是否标注了&#64;ETag
+	 * 
+	 * @return
+	 */
+	public boolean isETagEnabled() {
+		return etagEnabled;
+	}
+
 	public String[] getParamNames() {
 		return paramNames;
 	}
 
+	/**
+	 * 参数绑定器，与处理方法的参数一一对应
+	 * 
+	 * @return
+	 */
+	ArgumentBinder[] getArgumentBinders() {
+		return argumentBinders;
+	}
+
 	public Converter[] getParameterConverters() {
 		return parameterConverters;
 	}
@@ -143,4 +344,11 @@ public class RequestHandleContext {
 		return "处理方法[" + method + "]";
 	}
 
+	/**
+	 * 自定义的ConverterFactory不支持@ReqBody时使用，第一次用到时才创建
+	 */
+	private static class DefaultRequestBodyConverterFactoryHolder {
+		static final RequestBodyConverterFactory INSTANCE = new DefaultConverterFactory();
+	}
+
 }
@@ -2,9 +2,7 @@ package net.meteor.handler;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -12,20 +10,20 @@ import javax.servlet.http.HttpServletResponse;
 import net.meteor.annotation.RespBody;
 import net.meteor.annotation.Validation;
 import net.meteor.converter.ContextProvider;
-import net.meteor.converter.Converter;
-import net.meteor.multipart.MultipartFile;
-import net.meteor.multipart.MultipartHttpServletRequest;
 import net.meteor.render.MessageWriterFactory;
 import net.meteor.render.view.ForwardView;
 import net.meteor.render.view.RedirectView;
+import net.meteor.render.view.StatusView;
 import net.meteor.render.view.UrlBasedView;
 import net.meteor.render.view.View;
-import net.meteor.utils.ReflectionUtils;
 import net.meteor.utils.WebUtils;
 import net.meteor.validation.Errors;
 import net.meteor.validation.Validator;
 import net.meteor.validation.ValidatorFactory;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * 请求处理器
  * 
@@ -33,14 +31,33 @@ import net.meteor.validation.ValidatorFactory;
  * 
  */
 public class RequestHandler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestHandler.class);
+
+	// 参数绑定失败时的响应，内容固定，不需要每次生成
+	private static final View BAD_REQUEST_VIEW = new StatusView(HttpServletResponse.SC_BAD_REQUEST, "text/plain",
+			"Bad Request");
+	private static final View BAD_REQUEST_JSON_VIEW = new StatusView(HttpServletResponse.SC_BAD_REQUEST,
+			"application/json", "{\"" + WebUtils.METEOR_ERROR_PARAMETER + "\":\"Bad Request\"}");
+
 	private final ValidatorFactory validatorFactory;
 	private final MessageWriterFactory messageWriterFactory;
+	private boolean rejectBindingErrors;
 
 	public RequestHandler(ValidatorFactory validatorFactory, MessageWriterFactory messageWriterFactory) {
 		this.validatorFactory = validatorFactory;
 		this.messageWriterFactory = messageWriterFactory;
 	}
 
+	/**
+	 * 设置是否拒绝参数绑定失败的请求。开启后转换失败的参数不再抛出异常，而是记录为绑定错误，
+	 * 存在错误时直接返回400，不调用处理方法；有{@link Errors}参数的处理方法不受影响，由处理方法自己处理错误
+	 * 
+	 * @param rejectBindingErrors
+	 */
+	public void setRejectBindingErrors(boolean rejectBindingErrors) {
+		this.rejectBindingErrors = rejectBindingErrors;
+	}
+
 	/**
 	 * 处理request请求
 	 * 
@@ -53,14 +70,55 @@ public class RequestHandler {
 	 */
 	public ModelAndView handle(HttpServletRequest request, HttpServletResponse response,
 			RequestHandleContext handleContext, Map<String, String> uriTemplateVariables) throws Exception {
+		return handle(request, response, handleContext, uriTemplateVariables, null);
+	}
+
+	/**
+	 * 处理request请求
+	 * 
+	 * @param request
+	 * @param response
+	 * @param handleContext
+	 * @param uriTemplateVariables
+	 * @param typedUriTemplateVariables
+	 *            路径匹配时已经解析好的<code>{name:type}</code>形式的变量值
+	 * @return
+	 * @throws Exception
+	 */
+	public ModelAndView handle(HttpServletRequest request, HttpServletResponse response,
+			RequestHandleContext handleContext, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables) throws Exception {
+		return doHandle(request, response, handleContext, uriTemplateVariables, typedUriTemplateVariables, null);
+	}
+
+	/**
+	 * 使用请求处理链处理request请求，处理链是重用的时候同时重用线程内的请求上下文容器和参数数组
+	 * 
+	 * @param request
+	 * @param response
+	 * @param handleChain
+	 * @return
+	 * @throws Exception
+	 */
+	public ModelAndView handle(HttpServletRequest request, HttpServletResponse response, HandleChain handleChain)
+			throws Exception {
+		return doHandle(request, response, handleChain.getHandleContext(), handleChain.getUriTemplateVariables(),
+				handleChain.getTypedUriTemplateVariables(), handleChain.getRequestState());
+	}
+
+	private ModelAndView doHandle(HttpServletRequest request, HttpServletResponse response,
+			RequestHandleContext handleContext, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables, RequestState state) throws Exception {
 
 		Object controller = handleContext.getController();
 		Method method = handleContext.getMethod();
 
-		ContextProvider contextProvider = initContextProvider(request, response, uriTemplateVariables);
+		ContextProvider contextProvider = initContextProvider(state == null ? new ContextProvider() : state
+				.getContextProvider(), request, response, handleContext, uriTemplateVariables);
+		contextProvider.setTypedUriTemplateVariables(typedUriTemplateVariables);
 
 		// 表单校验
-		ModelAndView errorMv = validateRequest(handleContext, contextProvider);
+		ModelAndView errorMv = validateRequest(handleContext, contextProvider, state != null);
 		if (errorMv != null) {
 			return errorMv;
 		}
@@ -68,12 +126,21 @@ public class RequestHandler {
 		// 生成参数并执行方法
 		Object returnValue = null;
 		if (controller != null && method != null) {
-			Object[] args = getArguments(handleContext, contextProvider);
-			returnValue = ReflectionUtils.invokeMethod(controller, method, args);
+			Object[] args = getArguments(handleContext, contextProvider, state);
+			try {
+				if (contextProvider.hasBindingErrors() && !handleContext.isBindingErrorsAccepted()) {
+					return buildBindingFailedView(handleContext, contextProvider.getBindingErrors());
+				}
+				returnValue = handleContext.getMethodInvoker().invoke(controller, args);
+			} finally {
+				if (state != null) {
+					state.clearArgs(args);
+				}
+			}
 		}
 
 		// 处理调用结果
-		return processResult(returnValue, handleContext, uriTemplateVariables);
+		return processResult(returnValue, handleContext, uriTemplateVariables, state != null);
 	}
 
 	/**
@@ -81,9 +148,12 @@ public class RequestHandler {
 	 * 
 	 * @param handleContext
 	 * @param contextProvider
+	 * @param reused
+	 *            请求状态是否是重用的
 	 * @return
 	 */
-	private ModelAndView validateRequest(RequestHandleContext handleContext, ContextProvider contextProvider) {
+	private ModelAndView validateRequest(RequestHandleContext handleContext, ContextProvider contextProvider,
+			boolean reused) {
 		// 判断是否需要表单校验
 		Validation validation = handleContext.getValidation();
 		if (validatorFactory == null || validation == null) {
@@ -100,7 +170,7 @@ public class RequestHandler {
 		// 执行表单校验
 		Errors errors = doValidation(handleContext, contextProvider);
 		// 处理表单校验结果
-		return buildValidateFailedView(handleContext, contextProvider, errors);
+		return buildValidateFailedView(handleContext, contextProvider, errors, reused);
 	}
 
 	/**
@@ -137,10 +207,11 @@ public class RequestHandler {
 	 * @param handleContext
 	 * @param contextProvider
 	 * @param errors
+	 * @param reused
 	 * @return
 	 */
 	private ModelAndView buildValidateFailedView(RequestHandleContext handleContext, ContextProvider contextProvider,
-			Errors errors) {
+			Errors errors, boolean reused) {
 
 		if (errors == null) {
 			return null;
@@ -175,11 +246,26 @@ public class RequestHandler {
 			}
 		}
 
-		appendUriTemplateVariables(errMv, contextProvider.getUriTemplateVariables());
+		appendUriTemplateVariables(errMv, contextProvider.getUriTemplateVariables(), reused);
 		return errMv;
 
 	}
 
+	/**
+	 * 参数绑定失败时返回固定的400响应
+	 * 
+	 * @param handleContext
+	 * @param errors
+	 * @return
+	 */
+	private ModelAndView buildBindingFailedView(RequestHandleContext handleContext, Errors errors) {
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(handleContext + "参数绑定失败：" + errors.getErrors());
+		}
+		View view = (handleContext.getRespBody() != null ? BAD_REQUEST_JSON_VIEW : BAD_REQUEST_VIEW);
+		return new ModelAndView(view, null);
+	}
+
 	/**
 	 * 判断请求是否诶修改，动态请求都返回-1
 	 * 
@@ -191,45 +277,53 @@ public class RequestHandler {
 	}
 
 	/**
-	 * 根据request的parameter，以及uriTemplateVariables组装请求参数
+	 * 获取请求内容的最后修改时间，标注了&#64;ETag的处理方法由实现了{@link VersionProvider}的Controller提供
 	 * 
+	 * @param request
 	 * @param handleContext
-	 * @param contextProvider
 	 * @return
 	 */
-	private Object[] getArguments(RequestHandleContext handleContext, ContextProvider contextProvider) {
-
-		String[] paramNames = handleContext.getParamNames();
-		Class<?>[] paramTypes = handleContext.getParamTypes();
-
-		Object[] args = uriVariablesToArguments(handleContext, contextProvider, paramNames, paramTypes);
+	public long getLastModified(HttpServletRequest request, RequestHandleContext handleContext) {
+		VersionProvider versionProvider = getVersionProvider(handleContext);
+		return (versionProvider == null ? getLastModified(request) : versionProvider.getLastModified(request));
+	}
 
-		resolveArgumentsByContext(handleContext, args, paramNames, paramTypes, contextProvider);
+	/**
+	 * 获取请求内容的版本，标注了&#64;ETag的处理方法由实现了{@link VersionProvider}的Controller提供
+	 * 
+	 * @param request
+	 * @param handleContext
+	 * @return 没有提供时返回<code>null</code>
+	 */
+	public String getVersion(HttpServletRequest request, RequestHandleContext handleContext) {
+		VersionProvider versionProvider = getVersionProvider(handleContext);
+		return (versionProvider == null ? null : versionProvider.getVersion(request));
+	}
 
-		return args;
+	private static VersionProvider getVersionProvider(RequestHandleContext handleContext) {
+		if (handleContext.isETagEnabled() && handleContext.getController() instanceof VersionProvider) {
+			return (VersionProvider) handleContext.getController();
+		}
+		return null;
 	}
 
 	/**
-	 * 根据uriTemplateVariables组装请求参数
+	 * 根据request的parameter，以及uriTemplateVariables组装请求参数
 	 * 
 	 * @param handleContext
 	 * @param contextProvider
-	 * @param paramNames
-	 * @param paramTypes
+	 * @param state
+	 *            不为<code>null</code>时使用线程内的参数数组
 	 * @return
 	 */
-	private Object[] uriVariablesToArguments(RequestHandleContext handleContext, ContextProvider contextProvider,
-			String[] paramNames, Class<?>[] paramTypes) {
-		Object[] args = new Object[paramNames.length];
-		Map<String, Converter> pathVarConverters = handleContext.getPathVarConverters();
-		Map<String, Integer> pathVarIndexes = handleContext.getPathVarIndexes();
-
-		for (Entry<String, String> entry : contextProvider.getUriTemplateVariables().entrySet()) {
-			String name = entry.getKey();
-			Converter converter = pathVarConverters.get(name);
-			Integer index = pathVarIndexes.get(name);
-			Class<?> toType = paramTypes[index];
-			args[index] = converter.convertValue(contextProvider, name, toType);
+	private Object[] getArguments(RequestHandleContext handleContext, ContextProvider contextProvider,
+			RequestState state) {
+
+		ArgumentBinder[] binders = handleContext.getArgumentBinders();
+
+		Object[] args = (state == null ? new Object[binders.length] : state.getArgs(binders.length));
+		for (int index = 0; index < binders.length; index++) {
+			args[index] = binders[index].bind(contextProvider);
 		}
 
 		return args;
@@ -238,68 +332,40 @@ public class RequestHandler {
 	/**
 	 * 根据request的parameter组装请求参数做为请求的上下文环境
 	 * 
+	 * @param contextProvider
 	 * @param request
 	 * @param response
+	 * @param handleContext
 	 * @param uriTemplateVariables
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
-	private ContextProvider initContextProvider(HttpServletRequest request, HttpServletResponse response,
-			Map<String, String> uriTemplateVariables) {
-		ContextProvider contextProvider = new ContextProvider();
-
-		Map<String, String[]> parameterValues = request.getParameterMap();
-		contextProvider.setRequestParameters(parameterValues);
-
-		if (request instanceof MultipartHttpServletRequest) {
-			Map<String, List<MultipartFile>> multipartFiles = ((MultipartHttpServletRequest) request).getMultiFileMap();
-			contextProvider.setMultipartFiles(multipartFiles);
-
-		}
-
+	private ContextProvider initContextProvider(ContextProvider contextProvider, HttpServletRequest request,
+			HttpServletResponse response, RequestHandleContext handleContext, Map<String, String> uriTemplateVariables) {
 		contextProvider.setRequest(request);
 		contextProvider.setResponse(response);
+		// 请求参数和上传文件只在处理方法需要时才读取，而且是在首次使用时读取
+		contextProvider.resetRequestData(handleContext.requires(RequestHandleContext.FEATURE_PARAMETERS),
+				handleContext.requires(RequestHandleContext.FEATURE_MULTIPART));
 		// contextProvider.setSession(request.getSession());
 
 		contextProvider.setUriTemplateVariables(uriTemplateVariables);
+		// 有Errors参数或者拒绝绑定失败的请求时，转换失败不抛出异常
+		contextProvider.setCollectBindingErrors(rejectBindingErrors || handleContext.isBindingErrorsAccepted());
 
 		return contextProvider;
 	}
 
-	/**
-	 * 根据请求的上下文环境解析转换为请求对象数组
-	 * 
-	 * @param handleContext
-	 * @param args
-	 * @param paramNames
-	 * @param paramTypes
-	 * @param contextProvider
-	 */
-	private void resolveArgumentsByContext(RequestHandleContext handleContext, Object[] args, String[] paramNames,
-			Class<?>[] paramTypes, ContextProvider contextProvider) {
-		Converter[] converters = handleContext.getParameterConverters();
-
-		for (int index = 0; index < converters.length; index++) {
-			Converter converter = converters[index];
-			if (converter != null) {
-				String paramName = paramNames[index];
-				Class<?> toType = paramTypes[index];
-				args[index] = converter.convertValue(contextProvider, paramName, toType);
-			}
-		}
-
-	}
-
 	/**
 	 * 处理返回结果
 	 * 
 	 * @param returnValue
 	 * @param handleContext
 	 * @param uriTemplateVariables
+	 * @param reused
 	 * @return
 	 */
 	private ModelAndView processResult(Object returnValue, RequestHandleContext handleContext,
-			Map<String, String> uriTemplateVariables) {
+			Map<String, String> uriTemplateVariables, boolean reused) {
 		ModelAndView result = null;
 
 		RespBody respBody = handleContext.getRespBody();
@@ -314,7 +380,7 @@ public class RequestHandler {
 			result = new ModelAndView(viewName);
 		}
 
-		appendUriTemplateVariables(result, uriTemplateVariables);
+		appendUriTemplateVariables(result, uriTemplateVariables, reused);
 
 		return result;
 	}
@@ -324,8 +390,10 @@ public class RequestHandler {
 	 * 
 	 * @param mv
 	 * @param uriTemplateVariables
+	 * @param reused
+	 *            uriTemplateVariables是否是重用的，重用的需要复制一份，避免View在请求结束后引用到被清空的对象
 	 */
-	private void appendUriTemplateVariables(ModelAndView mv, Map<String, String> uriTemplateVariables) {
+	private void appendUriTemplateVariables(ModelAndView mv, Map<String, String> uriTemplateVariables, boolean reused) {
 		if (mv == null) {
 			return;
 		}
@@ -334,7 +402,12 @@ public class RequestHandler {
 		if (view instanceof UrlBasedView) {
 			UrlBasedView ubv = (UrlBasedView) view;
 			if (ubv.isResolveUriTemplate()) {
-				ubv.setUriTemplateVariables(uriTemplateVariables.isEmpty() ? null : uriTemplateVariables);
+				if (uriTemplateVariables.isEmpty()) {
+					ubv.setUriTemplateVariables(null);
+				} else {
+					ubv.setUriTemplateVariables(reused ? new HashMap<String, String>(uriTemplateVariables)
+							: uriTemplateVariables);
+				}
 			}
 		}
 	}
@@ -0,0 +1,109 @@
+package net.meteor.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.meteor.converter.ContextProvider;
+
+/**
+ * 线程内可重复使用的请求状态，包括URI模板变量、处理链、请求上下文容器以及方法参数数组，
+ * 用于在开启重用模式时避免每个请求都生成这些对象。
+ * <p>
+ * 每个线程只有一个实例，请求结束时通过{@link HandleChain#release()}归还并清空。
+ * 同一线程上嵌套的请求（如forward、include再次进入Meteor）无法获取到该实例，会使用普通的方式处理
+ *
+ * @author wuqh
+ *
+ */
+class RequestState {
+	// 参数数组缓存的最大参数个数，超过的按普通方式生成
+	private static final int MAX_CACHED_ARGS_LENGTH = 16;
+
+	private static final ThreadLocal<RequestState> STATE_HOLDER = new ThreadLocal<RequestState>() {
+		@Override
+		protected RequestState initialValue() {
+			return new RequestState();
+		}
+	};
+
+	private final Map<String, String> uriTemplateVariables = new HashMap<String, String>();
+	private final Map<String, Object> typedUriTemplateVariables = new HashMap<String, Object>();
+	private final HandleChain handleChain = new HandleChain(null, null);
+	private final ContextProvider contextProvider = new ContextProvider();
+	private final Object[][] argsBuffers = new Object[MAX_CACHED_ARGS_LENGTH + 1][];
+	private boolean inUse;
+
+	private RequestState() {
+		handleChain.setRequestState(this);
+	}
+
+	/**
+	 * 获取当前线程的请求状态
+	 *
+	 * @return 当前线程的请求状态正在被使用时返回<code>null</code>
+	 */
+	static RequestState acquire() {
+		RequestState state = STATE_HOLDER.get();
+		if (state.inUse) {
+			return null;
+		}
+		state.inUse = true;
+		return state;
+	}
+
+	/**
+	 * 清空请求状态并归还，不会保留任何请求相关的对象引用
+	 */
+	void release() {
+		uriTemplateVariables.clear();
+		typedUriTemplateVariables.clear();
+		handleChain.reset(null, null);
+		contextProvider.setRequestParameters(null);
+		contextProvider.setRequest(null);
+		contextProvider.setResponse(null);
+		contextProvider.setUriTemplateVariables(null);
+		contextProvider.setTypedUriTemplateVariables(null);
+		contextProvider.setMultipartFiles(null);
+		inUse = false;
+	}
+
+	Map<String, String> getUriTemplateVariables() {
+		return uriTemplateVariables;
+	}
+
+	Map<String, Object> getTypedUriTemplateVariables() {
+		return typedUriTemplateVariables;
+	}
+
+	HandleChain getHandleChain() {
+		return handleChain;
+	}
+
+	ContextProvider getContextProvider() {
+		return contextProvider;
+	}
+
+	/**
+	 * 获取指定长度的参数数组，使用后需要调用{@link #clearArgs(Object[])}清空
+	 *
+	 * @param length
+	 * @return
+	 */
+	Object[] getArgs(int length) {
+		if (length > MAX_CACHED_ARGS_LENGTH) {
+			return new Object[length];
+		}
+		Object[] args = argsBuffers[length];
+		if (args == null) {
+			args = new Object[length];
+			argsBuffers[length] = args;
+		}
+		return args;
+	}
+
+	void clearArgs(Object[] args) {
+		for (int i = 0; i < args.length; i++) {
+			args[i] = null;
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package net.meteor.handler;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import net.meteor.annotation.restful.DELETE;
 import net.meteor.annotation.restful.GET;
@@ -15,26 +17,42 @@ import net.meteor.annotation.restful.TRACE;
 import net.meteor.converter.ConverterFactory;
 import net.meteor.utils.ParameterNameDiscoverer;
 
-import org.apache.commons.lang.StringUtils;
-
 /**
  * RESTful的请求上下文容器，一个路径会有一个RestfulHandleContext。
- * 一个RestfulHandleContext中针对不同的HTTP方法（如POST、GET等）会有一个RequestHandleContext对象
+ * 一个RestfulHandleContext中针对不同的HTTP方法（如POST、GET等）会有一个RequestHandleContext对象。
+ * <p>
+ * HTTP方法会先解析为序号（见{@link #resolveMethod(String)}），再直接通过数组下标获取RequestHandleContext，
+ * 同时预先生成该路径的Allow头信息，用于返回405以及自动响应OPTIONS请求
  * 
  * @author wuqh
  * 
  */
 class RestfulHandleContext {
-	private static final String POST = "POST";
-	private static final String GET = "GET";
-	private static final String PUT = "PUT";
-	private static final String DELETE = "DELETE";
-	private static final String HEAD = "HEAD";
-	private static final String OPTIONS = "OPTIONS";
-	private static final String TRACE = "TRACE";
-	private static final String PATCH = "PATCH";
+	static final int METHOD_GET = 0;
+	static final int METHOD_POST = 1;
+	static final int METHOD_PUT = 2;
+	static final int METHOD_DELETE = 3;
+	static final int METHOD_HEAD = 4;
+	static final int METHOD_OPTIONS = 5;
+	static final int METHOD_TRACE = 6;
+	static final int METHOD_PATCH = 7;
+	static final int METHOD_UNKNOWN = -1;
+
+	private static final String[] METHOD_NAMES = { "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "TRACE",
+			"PATCH" };
+
+	// 与METHOD_NAMES的顺序一致
+	private static final List<Class<? extends Annotation>> METHOD_ANNOTATIONS = Collections
+			.unmodifiableList(Arrays.<Class<? extends Annotation>> asList(GET.class, POST.class, PUT.class,
+					DELETE.class, HEAD.class, OPTIONS.class, TRACE.class, PATCH.class));
+
+	private final RequestHandleContext[] handleContexts = new RequestHandleContext[METHOD_NAMES.length];
+
+	// Allow头信息，OPTIONS总是允许的（没有定义时自动响应）
+	private String allowHeader;
 
-	private final Map<String, RequestHandleContext> handleContext = new HashMap<String, RequestHandleContext>(8, 1f);
+	// 适用于该路径的拦截器，在注册完所有路径后计算一次
+	private HandlerInterceptor[] interceptors;
 
 	/**
 	 * 使用处理器（Controller）、对应的处理方法构造RestfulHandleContext对象
@@ -62,57 +80,109 @@ class RestfulHandleContext {
 		RequestHandleContext context = new RequestHandleContext(controller, method, parameterNameDiscoverer,
 				converterFactory);
 
-		GET get = method.getAnnotation(GET.class);
-		if (get != null) {
-			setHandleContext(GET, context);
+		// 只遍历一次方法上的注解
+		for (Annotation annotation : method.getAnnotations()) {
+			Class<? extends Annotation> annotationType = annotation.annotationType();
+			int methodIndex = METHOD_ANNOTATIONS.indexOf(annotationType);
+			if (methodIndex >= 0) {
+				setHandleContext(methodIndex, context);
+			}
 		}
+	}
 
-		POST post = method.getAnnotation(POST.class);
-		if (post != null) {
-			setHandleContext(POST, context);
+	private void setHandleContext(int methodIndex, RequestHandleContext handleContext) {
+		if (this.handleContexts[methodIndex] != null) {
+			throw new IllegalStateException("重复定义：该路径下已经存在" + METHOD_NAMES[methodIndex] + "方法");
 		}
+		this.handleContexts[methodIndex] = handleContext;
+		this.allowHeader = buildAllowHeader();
+	}
 
-		PUT put = method.getAnnotation(PUT.class);
-		if (put != null) {
-			setHandleContext(PUT, context);
+	private String buildAllowHeader() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < METHOD_NAMES.length; i++) {
+			if (handleContexts[i] != null || i == METHOD_OPTIONS) {
+				if (sb.length() > 0) {
+					sb.append(", ");
+				}
+				sb.append(METHOD_NAMES[i]);
+			}
 		}
+		return sb.toString();
+	}
 
-		DELETE delete = method.getAnnotation(DELETE.class);
-		if (delete != null) {
-			setHandleContext(DELETE, context);
+	/**
+	 * 将HTTP方法名解析为序号（忽略大小写），解析过程不生成新的对象
+	 * 
+	 * @param method
+	 * @return 不支持的方法返回{@link #METHOD_UNKNOWN}
+	 */
+	static int resolveMethod(String method) {
+		if (method == null) {
+			return METHOD_UNKNOWN;
 		}
-
-		HEAD head = method.getAnnotation(HEAD.class);
-		if (head != null) {
-			setHandleContext(HEAD, context);
+		int index;
+		switch (method.length()) {
+		case 3:
+			index = (isChar(method, 'G') ? METHOD_GET : METHOD_PUT);
+			break;
+		case 4:
+			index = (isChar(method, 'P') ? METHOD_POST : METHOD_HEAD);
+			break;
+		case 5:
+			index = (isChar(method, 'P') ? METHOD_PATCH : METHOD_TRACE);
+			break;
+		case 6:
+			index = METHOD_DELETE;
+			break;
+		case 7:
+			index = METHOD_OPTIONS;
+			break;
+		default:
+			return METHOD_UNKNOWN;
 		}
+		return (METHOD_NAMES[index].regionMatches(true, 0, method, 0, method.length()) ? index : METHOD_UNKNOWN);
+	}
 
-		OPTIONS options = method.getAnnotation(OPTIONS.class);
-		if (options != null) {
-			setHandleContext(OPTIONS, context);
-		}
+	private static boolean isChar(String method, char upperCase) {
+		char c = method.charAt(0);
+		return (c == upperCase || c == Character.toLowerCase(upperCase));
+	}
 
-		TRACE trace = method.getAnnotation(TRACE.class);
-		if (trace != null) {
-			setHandleContext(TRACE, context);
-		}
+	public RequestHandleContext getHandleContext(String method) {
+		return getHandleContext(resolveMethod(method));
+	}
 
-		PATCH patch = method.getAnnotation(PATCH.class);
-		if (patch != null) {
-			setHandleContext(PATCH, context);
-		}
+	/**
+	 * 根据HTTP方法的序号获取RequestHandleContext
+	 * 
+	 * @param methodIndex
+	 * @return
+	 */
+	RequestHandleContext getHandleContext(int methodIndex) {
+		return (methodIndex == METHOD_UNKNOWN ? null : this.handleContexts[methodIndex]);
 	}
 
-	private void setHandleContext(String method, RequestHandleContext handleContext) {
-		if (this.handleContext.get(method) != null) {
-			throw new IllegalStateException("重复定义：该路径下已经存在" + method + "方法");
-		}
-		this.handleContext.put(method, handleContext);
+	/**
+	 * 该路径支持的HTTP方法，即Allow头信息的值
+	 * 
+	 * @return
+	 */
+	String getAllowHeader() {
+		return allowHeader;
 	}
 
-	public RequestHandleContext getHandleContext(String method) {
-		method = StringUtils.upperCase(method);
-		return this.handleContext.get(method);
+	void setInterceptors(HandlerInterceptor[] interceptors) {
+		this.interceptors = interceptors;
+	}
+
+	/**
+	 * 适用于该路径的拦截器，多个请求共用同一个数组，不能修改
+	 * 
+	 * @return
+	 */
+	HandlerInterceptor[] getInterceptors() {
+		return interceptors;
 	}
 
 }
@@ -0,0 +1,406 @@
+package net.meteor.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import net.meteor.utils.AntPathMatcher;
+import net.meteor.utils.PathSegments;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 路由索引，将所有注册的路径按"/"分段构造成一棵前缀树（Trie）。
+ * <p>
+ * 每个节点下包含三类子节点：字面量分段（按名称Hash查找）、单独的URI模板变量分段（如<code>{id}</code>
+ * ）以及其他通配分段（如<code>*.html</code>、<code>{id:\d+}</code>）。包含"**"
+ * 的路径挂在"**"之前的那个节点上，查找到该节点时再使用{@link AntPathMatcher}做完整匹配。
+ * <p>
+ * 所有路径在构造时就按照{@link AntPathMatcher#getPatternComparator(String)}
+ * 的规则排好序，查找时只需要比较预先计算好的优先级，不再需要对匹配结果进行排序。查找的代价与路径深度相关，与注册路径的数量无关。
+ * <p>
+ * 查找时请求路径只记录每段的起止位置，字面量分段按字符比较，不会生成子字符串；URI模板变量只在确定最匹配的路由后才提取。
+ * <p>
+ * 该类只适用于以"/"为分隔符的{@link AntPathMatcher}，构造完成后只读，可以在多线程中使用。
+ * 其他PathMatcher仍然由{@link PathDetector}逐个匹配所有注册的路径，查找结果与该类一致，可以作为性能对比的基准
+ *
+ * @author wuqh
+ *
+ */
+class RouteTrie {
+	private static final String PATH_SEPARATOR = "/";
+	private static final String DEEP_WILDCARD = "**";
+	private static final String WILDCARD = "*";
+
+	private static final int LITERAL_SEGMENT = 0;
+	private static final int VARIABLE_SEGMENT = 1;
+	private static final int PATTERN_SEGMENT = 2;
+
+	private final AntPathMatcher pathMatcher;
+	private final Node root = new Node(null);
+	private final int size;
+	private final ThreadLocal<PathSegments> pathSegmentsHolder = new ThreadLocal<PathSegments>() {
+		@Override
+		protected PathSegments initialValue() {
+			return new PathSegments();
+		}
+	};
+
+	/**
+	 * 使用路径匹配器以及所有注册的路径构造路由索引
+	 *
+	 * @param pathMatcher
+	 * @param handleContextMap
+	 */
+	RouteTrie(AntPathMatcher pathMatcher, Map<String, RestfulHandleContext> handleContextMap) {
+		this.pathMatcher = pathMatcher;
+
+		List<String> patterns = new ArrayList<String>(handleContextMap.keySet());
+		// 预先按照匹配优先级排序，排在越前面优先级越高
+		Comparator<String> comparator = pathMatcher.getPatternComparator(null);
+		Collections.sort(patterns, comparator);
+
+		for (int rank = 0; rank < patterns.size(); rank++) {
+			String pattern = patterns.get(rank);
+			addRoute(new Route(pattern, handleContextMap.get(pattern), rank));
+		}
+		root.computeMinRank();
+		this.size = patterns.size();
+	}
+
+	/**
+	 * 根据请求路径查找最匹配的路由，并将URI模板变量的值放入uriTemplateVariables，
+	 * <code>{name:type}</code>形式的变量解析后的值放入typedUriTemplateVariables
+	 *
+	 * @param lookupPath
+	 * @param uriTemplateVariables
+	 * @param typedUriTemplateVariables
+	 * @return 最匹配的路由，如果没有匹配的则返回<code>null</code>
+	 */
+	Route lookup(String lookupPath, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables) {
+		PathSegments pathDirs = pathSegmentsHolder.get().tokenize(lookupPath, PATH_SEPARATOR);
+		boolean absolute = lookupPath.startsWith(PATH_SEPARATOR);
+		boolean trailingSeparator = lookupPath.endsWith(PATH_SEPARATOR);
+
+		Route best = collect(root, pathDirs, 0, absolute, trailingSeparator, null);
+		if (best != null && uriTemplateVariables != null) {
+			best.extractUriTemplateVariables(pathMatcher, pathDirs, uriTemplateVariables, typedUriTemplateVariables);
+		}
+		return best;
+	}
+
+	/**
+	 * 注册的路径数量
+	 *
+	 * @return
+	 */
+	int size() {
+		return size;
+	}
+
+	private void addRoute(Route route) {
+		Node node = root;
+		String[] segments = route.segments;
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (DEEP_WILDCARD.equals(segment)) {
+				node.deepRoutes.add(route);
+				return;
+			}
+			node = node.getOrCreateChild(segment, route.segmentTypes[i]);
+		}
+		node.routes.add(route);
+	}
+
+	/**
+	 * 深度优先查找匹配的路由，优先级不可能比当前最优结果更高的子树会被直接跳过
+	 */
+	private Route collect(Node node, PathSegments pathDirs, int index, boolean absolute, boolean trailingSeparator,
+			Route best) {
+		if (best != null && node.minRank >= best.rank) {
+			return best;
+		}
+
+		for (Route route : node.deepRoutes) {
+			if (isBetter(route, best) && pathMatcher.match(route.pattern, pathDirs.getPath())) {
+				best = route;
+			}
+		}
+
+		if (index == pathDirs.size()) {
+			for (Route route : node.routes) {
+				if (isBetter(route, best) && route.absolute == absolute
+						&& route.trailingSeparator == trailingSeparator) {
+					best = route;
+				}
+			}
+			// 与AntPathMatcher一致："/a/*"可以匹配"/a/"
+			Node wildcardChild = (trailingSeparator ? node.getPatternChild(WILDCARD) : null);
+			if (wildcardChild != null) {
+				for (Route route : wildcardChild.routes) {
+					if (isBetter(route, best) && route.absolute == absolute) {
+						best = route;
+					}
+				}
+			}
+			return best;
+		}
+
+		String path = pathDirs.getPath();
+		int start = pathDirs.start(index);
+		int end = pathDirs.end(index);
+		if (node.literalChildren != null) {
+			Node child = node.literalChildren.get(path, start, end);
+			if (child != null) {
+				best = collect(child, pathDirs, index + 1, absolute, trailingSeparator, best);
+			}
+		}
+		Node variableChild = node.variableChild;
+		if (variableChild != null && (best == null || variableChild.minRank < best.rank)
+				&& pathMatcher.matchSegment(variableChild.segment, path, start, end, null, null)) {
+			best = collect(variableChild, pathDirs, index + 1, absolute, trailingSeparator, best);
+		}
+		if (node.patternChildren != null) {
+			for (Node child : node.patternChildren) {
+				if ((best == null || child.minRank < best.rank)
+						&& pathMatcher.matchSegment(child.segment, path, start, end, null, null)) {
+					best = collect(child, pathDirs, index + 1, absolute, trailingSeparator, best);
+				}
+			}
+		}
+		return best;
+	}
+
+	private boolean isBetter(Route route, Route best) {
+		return best == null || route.rank < best.rank;
+	}
+
+	private static int getSegmentType(String segment) {
+		if (segment.indexOf('*') == -1 && segment.indexOf('?') == -1 && segment.indexOf('{') == -1) {
+			return LITERAL_SEGMENT;
+		}
+		if (segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}'
+				&& segment.indexOf(':') == -1 && segment.indexOf('{', 1) == -1
+				&& segment.indexOf('}') == segment.length() - 1) {
+			return VARIABLE_SEGMENT;
+		}
+		return PATTERN_SEGMENT;
+	}
+
+	/**
+	 * 路由，包含注册的路径、对应的RestfulHandleContext以及预先计算好的优先级
+	 */
+	static class Route {
+		private final String pattern;
+		private final RestfulHandleContext handleContext;
+		private final int rank;
+		private final String[] segments;
+		private final int[] segmentTypes;
+		private final boolean absolute;
+		private final boolean trailingSeparator;
+		private final boolean deep;
+
+		Route(String pattern, RestfulHandleContext handleContext, int rank) {
+			this.pattern = pattern;
+			this.handleContext = handleContext;
+			this.rank = rank;
+			this.segments = StringUtils.split(pattern, PATH_SEPARATOR);
+			this.segmentTypes = new int[segments.length];
+			boolean deep = false;
+			for (int i = 0; i < segments.length; i++) {
+				segmentTypes[i] = getSegmentType(segments[i]);
+				if (DEEP_WILDCARD.equals(segments[i])) {
+					deep = true;
+				}
+			}
+			this.deep = deep;
+			this.absolute = pattern.startsWith(PATH_SEPARATOR);
+			this.trailingSeparator = pattern.endsWith(PATH_SEPARATOR);
+		}
+
+		String getPattern() {
+			return pattern;
+		}
+
+		RestfulHandleContext getHandleContext() {
+			return handleContext;
+		}
+
+		/**
+		 * 只对最终胜出的路由提取URI模板变量
+		 */
+		private void extractUriTemplateVariables(AntPathMatcher pathMatcher, PathSegments pathDirs,
+				Map<String, String> uriTemplateVariables, Map<String, Object> typedUriTemplateVariables) {
+			String path = pathDirs.getPath();
+			if (deep) {
+				pathMatcher.extractUriTemplateVariables(pattern, path, uriTemplateVariables, typedUriTemplateVariables);
+				return;
+			}
+			int length = Math.min(segments.length, pathDirs.size());
+			for (int i = 0; i < length; i++) {
+				if (segmentTypes[i] != LITERAL_SEGMENT && segments[i].indexOf('{') != -1) {
+					pathMatcher.matchSegment(segments[i], path, pathDirs.start(i), pathDirs.end(i),
+							uriTemplateVariables, typedUriTemplateVariables);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return pattern;
+		}
+	}
+
+	/**
+	 * Trie的节点
+	 */
+	private static class Node {
+		private final String segment;
+		private LiteralTable literalChildren;
+		private Node variableChild;
+		private List<Node> patternChildren;
+		private final List<Route> routes = new ArrayList<Route>(1);
+		private final List<Route> deepRoutes = new ArrayList<Route>(0);
+		// 子树中最高的优先级（值越小优先级越高）
+		private int minRank = Integer.MAX_VALUE;
+
+		Node(String segment) {
+			this.segment = segment;
+		}
+
+		Node getOrCreateChild(String segment, int type) {
+			if (type == LITERAL_SEGMENT) {
+				if (literalChildren == null) {
+					literalChildren = new LiteralTable();
+				}
+				Node child = literalChildren.get(segment, 0, segment.length());
+				if (child == null) {
+					child = new Node(segment);
+					literalChildren.put(segment, child);
+				}
+				return child;
+			}
+
+			if (type == VARIABLE_SEGMENT) {
+				if (variableChild == null) {
+					variableChild = new Node(segment);
+				}
+				return variableChild;
+			}
+
+			Node child = getPatternChild(segment);
+			if (child == null) {
+				if (patternChildren == null) {
+					patternChildren = new ArrayList<Node>(2);
+				}
+				child = new Node(segment);
+				patternChildren.add(child);
+			}
+			return child;
+		}
+
+		Node getPatternChild(String segment) {
+			if (patternChildren == null) {
+				return null;
+			}
+			for (Node child : patternChildren) {
+				if (child.segment.equals(segment)) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		int computeMinRank() {
+			int min = Integer.MAX_VALUE;
+			for (Route route : routes) {
+				min = Math.min(min, route.rank);
+			}
+			for (Route route : deepRoutes) {
+				min = Math.min(min, route.rank);
+			}
+			if (literalChildren != null) {
+				for (Node child : literalChildren.values) {
+					if (child != null) {
+						min = Math.min(min, child.computeMinRank());
+					}
+				}
+			}
+			if (variableChild != null) {
+				min = Math.min(min, variableChild.computeMinRank());
+			}
+			if (patternChildren != null) {
+				for (Node child : patternChildren) {
+					min = Math.min(min, child.computeMinRank());
+				}
+			}
+			this.minRank = min;
+			return min;
+		}
+	}
+
+	/**
+	 * 字面量子节点表，使用开放地址法存放，可以直接用路径中的一段（起止位置）查找，不需要生成子字符串
+	 */
+	private static class LiteralTable {
+		private String[] keys = new String[4];
+		private Node[] values = new Node[4];
+		private int size;
+
+		Node get(String path, int start, int end) {
+			int mask = keys.length - 1;
+			int length = end - start;
+			for (int index = hash(path, start, end) & mask;; index = (index + 1) & mask) {
+				String key = keys[index];
+				if (key == null) {
+					return null;
+				}
+				if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+					return values[index];
+				}
+			}
+		}
+
+		void put(String key, Node node) {
+			// 装载因子不超过0.5
+			if ((size + 1) * 2 > keys.length) {
+				resize();
+			}
+			insert(keys, values, key, node);
+			size++;
+		}
+
+		private void resize() {
+			String[] newKeys = new String[keys.length * 2];
+			Node[] newValues = new Node[values.length * 2];
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != null) {
+					insert(newKeys, newValues, keys[i], values[i]);
+				}
+			}
+			keys = newKeys;
+			values = newValues;
+		}
+
+		private static void insert(String[] keys, Node[] values, String key, Node node) {
+			int mask = keys.length - 1;
+			int index = hash(key, 0, key.length()) & mask;
+			while (keys[index] != null) {
+				index = (index + 1) & mask;
+			}
+			keys[index] = key;
+			values[index] = node;
+		}
+
+		private static int hash(String path, int start, int end) {
+			int h = 0;
+			for (int i = start; i < end; i++) {
+				h = 31 * h + path.charAt(i);
+			}
+			return h ^ (h >>> 16);
+		}
+	}
+}
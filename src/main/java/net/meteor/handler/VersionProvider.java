@@ -0,0 +1,28 @@
+package net.meteor.handler;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 由Controller实现，为标注了{@link net.meteor.annotation.ETag}的处理方法提供内容的版本和最后修改时间，
+ * 在执行处理方法之前判断内容是否修改过，没有修改时直接返回304
+ * 
+ * @author wuqh
+ * 
+ */
+public interface VersionProvider {
+	/**
+	 * 获取请求内容的版本（如数据的版本号），用于生成ETag
+	 * 
+	 * @param request
+	 * @return 不能确定时返回<code>null</code>，此时根据输出内容生成ETag
+	 */
+	String getVersion(HttpServletRequest request);
+
+	/**
+	 * 获取请求内容的最后修改时间
+	 * 
+	 * @param request
+	 * @return 不能确定时返回-1
+	 */
+	long getLastModified(HttpServletRequest request);
+}
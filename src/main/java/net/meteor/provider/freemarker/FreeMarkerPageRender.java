@@ -5,7 +5,6 @@ import java.util.Map;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
 import net.meteor.exception.PageRenderException;
 import net.meteor.render.AbstractPageRender;
@@ -87,13 +86,15 @@ public class FreeMarkerPageRender extends AbstractPageRender implements PageRend
 		return fmModel;
 	}
 
+	/**
+	 * 创建延迟获取session的模型，模板第一次读取Session中的属性时才调用request.getSession(false)，不会创建session
+	 * 
+	 * @param request
+	 * @param response
+	 * @return
+	 */
 	private HttpSessionHashModel buildSessionModel(HttpServletRequest request, HttpServletResponse response) {
-		HttpSession session = request.getSession(false);
-		if (session != null) {
-			return new HttpSessionHashModel(session, getObjectWrapper());
-		} else {
-			return new HttpSessionHashModel(null, request, response, getObjectWrapper());
-		}
+		return new HttpSessionHashModel(null, request, response, getObjectWrapper());
 	}
 
 	private ObjectWrapper getObjectWrapper() {
@@ -12,6 +12,7 @@ import net.meteor.handler.PathDetector;
 import net.meteor.handler.RequestHandler;
 import net.meteor.multipart.MultipartParser;
 import net.meteor.provider.commons.CommonsMultipartParser;
+import net.meteor.provider.jackson.JacksonMessageReader;
 import net.meteor.render.JsperPageRender;
 import net.meteor.render.MessageWriterFactory;
 import net.meteor.render.PageRender;
@@ -23,6 +24,8 @@ import net.meteor.utils.UrlPathHelper;
 import net.meteor.validation.ValidatorFactory;
 import net.meteor.web.MeteorConfig;
 
+import org.codehaus.jackson.map.ObjectMapper;
+
 /**
  * 
  * 默认配置接口实现基类
@@ -34,7 +37,9 @@ public abstract class AbstractMeteorConfig implements MeteorConfig {
 	private final PathMatcher matcher = new AntPathMatcher();
 	private final ParameterNameDiscoverer discoverer = new LocalVariableTableParameterNameDiscoverer();
 	private final UrlPathHelper pathHelper = new UrlPathHelper();
-	private final MessageWriterFactory messageWriterFactory = new InternalMessageWriterFactory();
+	// 输出@RespBody和解析@ReqBody共用
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final MessageWriterFactory messageWriterFactory = new InternalMessageWriterFactory(objectMapper);
 
 	public abstract List<?> getControllers(ServletContext context);
 
@@ -81,6 +86,6 @@ public abstract class AbstractMeteorConfig implements MeteorConfig {
 
 	@Override
 	public ConverterFactory getConverterFactory() {
-		return new DefaultConverterFactory();
+		return new DefaultConverterFactory(new JacksonMessageReader(objectMapper));
 	}
 }
@@ -1,26 +1,238 @@
 package net.meteor.provider.internal;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import net.meteor.provider.jackson.JacksonMessageWriter;
 import net.meteor.render.MessageWriter;
 import net.meteor.render.MessageWriterFactory;
+import net.meteor.utils.Assert;
 import net.meteor.utils.WebUtils;
 
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
- * MessageWriterFactory的默认实现（使用JacksonMessageWriter）
- * 
+ * MessageWriterFactory的默认实现，按媒体类型（不含参数）注册MessageWriter。
+ * <p>
+ * 默认注册了text/html（原有的默认输出）、application/json、{@link JacksonMessageWriter#NDJSON_MIME}，classpath中有jackson-smile时
+ * 还会注册{@link JacksonMessageWriter#SMILE_MIME}。
+ * <p>
+ * &#64;RespBody指定了mime时使用对应的MessageWriter，没有注册时使用默认输出；没有指定mime时根据请求的Accept头选择，
+ * Accept头的解析结果会缓存
+ *
  * @author wuqh
- * 
+ *
  */
 public class InternalMessageWriterFactory implements MessageWriterFactory {
-	private final JacksonMessageWriter messageWriter = new JacksonMessageWriter();
+	private static final Logger LOGGER = LoggerFactory.getLogger(InternalMessageWriterFactory.class);
+
+	private static final String SMILE_FACTORY_CLASS = "org.codehaus.jackson.smile.SmileFactory";
+	private static final String HEADER_ACCEPT = "Accept";
+	private static final String HEADER_VARY = "Vary";
+	// 缓存的Accept头数量上限，避免客户端发送的任意Accept头占用过多内存
+	private static final int MAX_CACHED_ACCEPTS = 256;
+
+	private final MessageWriter defaultWriter;
+	private volatile Map<String, MessageWriter> messageWriters = Collections.emptyMap();
+	private final Map<String, MessageWriter> acceptCache = new ConcurrentHashMap<String, MessageWriter>();
+	private final MessageWriter negotiatingWriter = new NegotiatingMessageWriter();
 
 	public InternalMessageWriterFactory() {
-		messageWriter.setMime(WebUtils.DEFAULT_MIME);
+		this(new ObjectMapper());
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param objectMapper
+	 *            与@ReqBody解析共用的ObjectMapper，Smile输出复制它当前的序列化配置
+	 */
+	public InternalMessageWriterFactory(ObjectMapper objectMapper) {
+		defaultWriter = createWriter(objectMapper, WebUtils.DEFAULT_MIME);
+		register(defaultWriter);
+		register(createWriter(objectMapper, JacksonMessageWriter.JSON_MIME + ";charset=utf-8"));
+		register(createWriter(objectMapper, JacksonMessageWriter.NDJSON_MIME + ";charset=utf-8"));
+
+		JsonFactory smileFactory = createSmileFactory();
+		if (smileFactory != null) {
+			ObjectMapper smileMapper = new ObjectMapper(smileFactory);
+			smileMapper.setSerializationConfig(objectMapper.copySerializationConfig());
+			register(createWriter(smileMapper, JacksonMessageWriter.SMILE_MIME));
+		}
+	}
+
+	private static JacksonMessageWriter createWriter(ObjectMapper objectMapper, String mime) {
+		JacksonMessageWriter messageWriter = new JacksonMessageWriter(objectMapper);
+		messageWriter.setMime(mime);
+		return messageWriter;
+	}
+
+	private static JsonFactory createSmileFactory() {
+		try {
+			Class<?> factoryClass = Class.forName(SMILE_FACTORY_CLASS, true,
+					InternalMessageWriterFactory.class.getClassLoader());
+			return (JsonFactory) factoryClass.newInstance();
+		} catch (Throwable e) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("没有找到jackson-smile，不注册[" + JacksonMessageWriter.SMILE_MIME + "]的输出");
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 注册MessageWriter，按{@link MessageWriter#getMime()}的媒体类型（不含参数）替换已经注册的MessageWriter。
+	 * <p>
+	 * 根据Accept头选择时，通配类型（如application/*）按注册顺序选择第一个匹配的MessageWriter
+	 *
+	 * @param messageWriter
+	 */
+	public synchronized void register(MessageWriter messageWriter) {
+		Assert.notNull(messageWriter, "MessageWriter不能为空");
+		Map<String, MessageWriter> writers = new LinkedHashMap<String, MessageWriter>(messageWriters);
+		writers.put(getMediaType(messageWriter.getMime()), messageWriter);
+		messageWriters = Collections.unmodifiableMap(writers);
+		acceptCache.clear();
+	}
+
+	/**
+	 * 获取媒体类型对应的MessageWriter
+	 *
+	 * @param mediaType
+	 * @return 没有注册时返回<code>null</code>
+	 */
+	public MessageWriter getMessageWriter(String mediaType) {
+		return messageWriters.get(getMediaType(mediaType));
+	}
+
+	/**
+	 * 获取所有注册的MessageWriter（如用于统计每个MessageWriter的输出字节数）
+	 *
+	 * @return 媒体类型为key，按注册顺序排列
+	 */
+	public Map<String, MessageWriter> getMessageWriters() {
+		return messageWriters;
 	}
 
 	@Override
 	public MessageWriter getMessageWriterByMime(String mime) {
+		if (StringUtils.isBlank(mime)) {
+			return negotiatingWriter;
+		}
+		MessageWriter messageWriter = getMessageWriter(mime);
+		return (messageWriter == null ? defaultWriter : messageWriter);
+	}
+
+	/**
+	 * 根据Accept头选择MessageWriter
+	 *
+	 * @param accept
+	 * @return 没有匹配的MessageWriter时返回默认输出
+	 */
+	MessageWriter resolve(String accept) {
+		if (StringUtils.isBlank(accept)) {
+			return defaultWriter;
+		}
+		MessageWriter messageWriter = acceptCache.get(accept);
+		if (messageWriter == null) {
+			messageWriter = negotiate(accept);
+			if (acceptCache.size() < MAX_CACHED_ACCEPTS) {
+				acceptCache.put(accept, messageWriter);
+			}
+		}
 		return messageWriter;
 	}
 
+	/**
+	 * 选择q值最大的可以输出的类型，q值相同时选择靠前的类型
+	 */
+	private MessageWriter negotiate(String accept) {
+		Map<String, MessageWriter> writers = messageWriters;
+		MessageWriter selected = null;
+		float selectedQuality = 0;
+		for (String range : StringUtils.split(accept, ',')) {
+			String[] parts = StringUtils.split(range, ';');
+			if (parts.length == 0) {
+				continue;
+			}
+			float quality = getQuality(parts);
+			if (quality <= selectedQuality) {
+				continue;
+			}
+			MessageWriter messageWriter = match(writers, getMediaType(parts[0]));
+			if (messageWriter != null) {
+				selected = messageWriter;
+				selectedQuality = quality;
+			}
+		}
+		return (selected == null ? defaultWriter : selected);
+	}
+
+	private MessageWriter match(Map<String, MessageWriter> writers, String mediaType) {
+		if ("*/*".equals(mediaType) || "*".equals(mediaType)) {
+			return defaultWriter;
+		}
+		if (mediaType.endsWith("/*")) {
+			String prefix = mediaType.substring(0, mediaType.length() - 1);
+			for (Map.Entry<String, MessageWriter> entry : writers.entrySet()) {
+				if (entry.getKey().startsWith(prefix)) {
+					return entry.getValue();
+				}
+			}
+			return null;
+		}
+		return writers.get(mediaType);
+	}
+
+	private static float getQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q=")) {
+				try {
+					return Float.parseFloat(parameter.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	private static String getMediaType(String mime) {
+		int index = mime.indexOf(';');
+		String mediaType = (index == -1 ? mime : mime.substring(0, index));
+		return mediaType.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * &#64;RespBody没有指定mime时使用，输出时根据Accept头选择实际的MessageWriter
+	 */
+	private class NegotiatingMessageWriter implements MessageWriter {
+
+		@Override
+		public void writeResponseBody(HttpServletRequest request, HttpServletResponse response, Object returnValue) {
+			MessageWriter messageWriter = resolve(request.getHeader(HEADER_ACCEPT));
+			response.addHeader(HEADER_VARY, HEADER_ACCEPT);
+			if (messageWriter != defaultWriter) {
+				response.setContentType(messageWriter.getMime());
+			}
+			messageWriter.writeResponseBody(request, response, returnValue);
+		}
+
+		@Override
+		public String getMime() {
+			return defaultWriter.getMime();
+		}
+	}
+
 }
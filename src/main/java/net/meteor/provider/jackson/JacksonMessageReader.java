@@ -0,0 +1,65 @@
+package net.meteor.provider.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.meteor.converter.MessageReader;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+
+/**
+ * MessageReader的jackson实现，每种类型的ObjectReader只创建一次。
+ * <p>
+ * 请求体直接从输入流中解析，UTF-8、UTF-16、UTF-32由jackson自动识别，其他编码按照request中的编码读取
+ * 
+ * @author wuqh
+ * 
+ */
+public class JacksonMessageReader implements MessageReader {
+	private final ObjectMapper objectMapper;
+	private final Map<Type, ObjectReader> objectReaderCache = new ConcurrentHashMap<Type, ObjectReader>();
+
+	public JacksonMessageReader() {
+		this(new ObjectMapper());
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param objectMapper
+	 *            可以与JacksonMessageWriter共用
+	 */
+	public JacksonMessageReader(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public Object readRequestBody(HttpServletRequest request, InputStream in, Type type) throws IOException {
+		ObjectReader objectReader = getObjectReader(type);
+		String encoding = request.getCharacterEncoding();
+		if (encoding == null || encoding.regionMatches(true, 0, "UTF", 0, 3)) {
+			return objectReader.readValue(in);
+		}
+		return objectReader.readValue(new InputStreamReader(in, encoding));
+	}
+
+	private ObjectReader getObjectReader(Type type) {
+		ObjectReader objectReader = objectReaderCache.get(type);
+		if (objectReader == null) {
+			objectReader = objectMapper.reader(objectMapper.getTypeFactory().constructType(type));
+			objectReaderCache.put(type, objectReader);
+		}
+		return objectReader;
+	}
+
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+}
@@ -1,87 +1,298 @@
 package net.meteor.provider.jackson;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import net.meteor.exception.MessageWriteException;
 import net.meteor.render.MessageWriter;
+import net.meteor.render.ResponseBuffer;
+import net.meteor.render.RowCallback;
+import net.meteor.render.RowSource;
+import net.meteor.utils.BeanUtils;
 import net.meteor.utils.WebUtils;
 
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * MessageWriter的jackson实现
+ * MessageWriter的jackson实现，每种返回值类型的ObjectWriter只创建一次。
+ * <p>
+ * ObjectWriter创建时会复制ObjectMapper的配置，因此ObjectMapper应该在第一次输出之前配置好。
+ * <p>
+ * 输出内容先写到线程内重用的缓冲区中，完成后设置Content-Length一次写出；超过缓冲阈值的大响应直接写到response中
+ * <p>
+ * 返回值为Iterator、Iterable（集合除外）或者{@link RowSource}时逐个元素输出为JSON数组，每输出一定行数写出一次，
+ * 不需要把所有数据放在内存中；mime为{@link #NDJSON_MIME}时每个元素输出为一行（NDJSON），集合和数组也逐行输出。
+ * 返回值实现了Closeable（如数据库游标）时输出后关闭
+ * <p>
+ * 使用Smile等二进制格式的ObjectMapper创建时按字节输出，mime中不需要指定charset
  * 
  * @author wuqh
  * 
  */
 public class JacksonMessageWriter implements MessageWriter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(JacksonMessageWriter.class);
+
+	/**
+	 * JSON格式
+	 */
+	public static final String JSON_MIME = "application/json";
+
+	/**
+	 * 每行一个JSON的格式（Newline Delimited JSON）
+	 */
+	public static final String NDJSON_MIME = "application/x-ndjson";
+
+	/**
+	 * jackson的二进制JSON格式，需要使用SmileFactory创建的ObjectMapper
+	 */
+	public static final String SMILE_MIME = "application/x-jackson-smile";
+
+	/**
+	 * 逐行输出时默认每输出多少行写出一次
+	 */
+	public static final int DEFAULT_FLUSH_INTERVAL = 1000;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	private String mime;
-	private final ObjectMapper objectMapper = new ObjectMapper();
-	private final Map<String, JsonEncoding> jsonEncodingCache = new HashMap<String, JsonEncoding>(2, 1);
+	private Charset charset;
+	private final ObjectMapper objectMapper;
+	private volatile ObjectWriter defaultWriter;
+	private final Map<Class<?>, ObjectWriter> objectWriterCache = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+	private int bufferThreshold = ResponseBuffer.DEFAULT_THRESHOLD;
+	private int flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private boolean ndjson;
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	public JacksonMessageWriter() {
+		this(new ObjectMapper());
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param objectMapper
+	 *            可以与JacksonMessageReader共用
+	 */
+	public JacksonMessageWriter(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		setMime(null);
+	}
+
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
 
 	@Override
 	public void writeResponseBody(HttpServletRequest request, HttpServletResponse response, Object returnValue) {
+		if (ndjson || isStreaming(returnValue)) {
+			writeRows(response, returnValue);
+			return;
+		}
 
+		ObjectWriter objectWriter = getObjectWriter(returnValue);
+		ResponseBuffer buffer = ResponseBuffer.acquire(response, bufferThreshold);
 		try {
-			String mime = getMime();
-			JsonEncoding encoding = getJsonEncoding(mime);
-			OutputStream out = response.getOutputStream();
-			JsonGenerator jsonGenerator = this.objectMapper.getJsonFactory().createJsonGenerator(out, encoding);
-
-			// A workaround for JsonGenerators not applying serialization
-			// features
-			// https://github.com/FasterXML/jackson-databind/issues/12
-			if (this.objectMapper.getSerializationConfig().isEnabled(SerializationConfig.Feature.INDENT_OUTPUT)) {
-				jsonGenerator.useDefaultPrettyPrinter();
+			// ObjectWriter根据配置处理INDENT_OUTPUT
+			if (charset.equals(UTF_8)) {
+				objectWriter.writeValue(buffer, returnValue);
+			} else {
+				Writer writer = new OutputStreamWriter(buffer, charset);
+				objectWriter.writeValue(writer, returnValue);
+				// 没有开启AUTO_CLOSE_TARGET时也要写出编码器中的内容，关闭缓冲区不会关闭response的输出流
+				writer.close();
 			}
-
-			this.objectMapper.writeValue(jsonGenerator, returnValue);
+			buffer.commit();
+			bytesWritten.addAndGet(buffer.getTotalSize());
 		} catch (IOException ex) {
 			throw new MessageWriteException("输出JSON对象失败: " + ex.getMessage(), ex);
+		} finally {
+			buffer.release();
 		}
 	}
 
 	/**
-	 * 根据ContentType信息获取json的编码格式
+	 * 判断返回值是否需要逐个元素输出，集合已经在内存中，按普通对象输出
 	 * 
-	 * @param contentType
+	 * @param returnValue
 	 * @return
 	 */
-	private JsonEncoding getJsonEncoding(String contentType) {
-		JsonEncoding cachedEncoding = jsonEncodingCache.get(contentType);
-		if (cachedEncoding != null) {
-			return cachedEncoding;
+	private static boolean isStreaming(Object returnValue) {
+		return returnValue instanceof Iterator || returnValue instanceof RowSource
+				|| (returnValue instanceof Iterable && !(returnValue instanceof Collection));
+	}
+
+	/**
+	 * 逐个元素输出返回值
+	 * 
+	 * @param response
+	 * @param returnValue
+	 */
+	private void writeRows(HttpServletResponse response, Object returnValue) {
+		ResponseBuffer buffer = ResponseBuffer.acquire(response, bufferThreshold);
+		try {
+			JsonGenerator generator = createGenerator(buffer);
+			JsonRowCallback callback = new JsonRowCallback(generator, buffer);
+			if (!ndjson) {
+				generator.writeStartArray();
+			}
+			forEachRow(returnValue, callback);
+			if (ndjson) {
+				if (callback.count > 0) {
+					generator.writeRaw('\n');
+				}
+			} else {
+				generator.writeEndArray();
+			}
+			generator.close();
+			buffer.commit();
+			bytesWritten.addAndGet(buffer.getTotalSize());
+		} catch (MessageWriteException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new MessageWriteException("输出JSON对象失败: " + ex.getMessage(), ex);
+		} finally {
+			buffer.release();
+			closeQuietly(returnValue);
+		}
+	}
+
+	private JsonGenerator createGenerator(ResponseBuffer buffer) throws IOException {
+		JsonGenerator generator;
+		if (charset.equals(UTF_8)) {
+			generator = objectMapper.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+		} else {
+			generator = objectMapper.getJsonFactory().createJsonGenerator(new OutputStreamWriter(buffer, charset));
+		}
+		// 关闭时写出编码器中的内容，关闭缓冲区不会关闭response的输出流
+		generator.enable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		if (ndjson) {
+			// 每个元素之间用换行分隔，元素内部不能换行
+			generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+		} else if (objectMapper.getSerializationConfig().isEnabled(SerializationConfig.Feature.INDENT_OUTPUT)) {
+			generator.useDefaultPrettyPrinter();
+		}
+		return generator;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static void forEachRow(Object returnValue, RowCallback callback) throws Exception {
+		if (returnValue instanceof RowSource) {
+			((RowSource) returnValue).forEachRow(callback);
+			return;
+		}
+
+		Iterator iterator;
+		if (returnValue instanceof Iterator) {
+			iterator = (Iterator) returnValue;
+		} else if (returnValue instanceof Iterable) {
+			iterator = ((Iterable) returnValue).iterator();
+		} else if (returnValue != null && returnValue.getClass().isArray()) {
+			for (Object row : BeanUtils.toObjectArray(returnValue)) {
+				callback.onRow(row);
+			}
+			return;
+		} else {
+			// NDJSON时普通对象作为一行输出
+			callback.onRow(returnValue);
+			return;
+		}
+
+		while (iterator.hasNext()) {
+			callback.onRow(iterator.next());
+		}
+	}
+
+	private static void closeQuietly(Object returnValue) {
+		if (returnValue instanceof Closeable) {
+			try {
+				((Closeable) returnValue).close();
+			} catch (IOException e) {
+				LOGGER.warn("关闭返回值[" + returnValue + "]失败", e);
+			}
 		}
+	}
 
-		Charset charset = WebUtils.getCharsetFromMediaType(contentType);
-		for (JsonEncoding encoding : JsonEncoding.values()) {
-			if (charset.name().equals(encoding.getJavaName())) {
-				jsonEncodingCache.put(contentType, encoding);
-				return encoding;
+	/**
+	 * 获取返回值类型对应的ObjectWriter
+	 * 
+	 * @param returnValue
+	 * @return
+	 */
+	private ObjectWriter getObjectWriter(Object returnValue) {
+		if (returnValue == null) {
+			if (defaultWriter == null) {
+				defaultWriter = objectMapper.writer();
 			}
+			return defaultWriter;
 		}
+		Class<?> type = returnValue.getClass();
+		ObjectWriter objectWriter = objectWriterCache.get(type);
+		if (objectWriter == null) {
+			objectWriter = objectMapper.writerWithType(type);
+			objectWriterCache.put(type, objectWriter);
+		}
+		return objectWriter;
+	}
+
+	/**
+	 * 设置缓冲阈值，超过时不再缓冲，直接写到response中（使用chunked编码）
+	 * 
+	 * @param bufferThreshold
+	 *            小于等于0时总是缓冲整个响应
+	 */
+	public void setBufferThreshold(int bufferThreshold) {
+		this.bufferThreshold = bufferThreshold;
+	}
+
+	/**
+	 * 设置逐行输出时每输出多少行写出一次（超过缓冲阈值之后才会真正写到客户端）
+	 * 
+	 * @param flushInterval
+	 */
+	public void setFlushInterval(int flushInterval) {
+		this.flushInterval = flushInterval;
+	}
 
-		return JsonEncoding.UTF8;
+	/**
+	 * 获取已经输出的总字节数
+	 * 
+	 * @return
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
 	}
 
 	/**
 	 * 设置ContentType信息
 	 * 
 	 * @param mime
+	 *            没有指定charset时使用UTF-8
 	 */
 	public void setMime(String mime) {
 		this.mime = mime;
+		Charset charset = WebUtils.getCharsetFromMediaType(getMime());
+		this.charset = (charset == null ? UTF_8 : charset);
+		this.ndjson = getMime().regionMatches(true, 0, NDJSON_MIME, 0, NDJSON_MIME.length());
 	}
 
 	@Override
@@ -94,4 +305,28 @@ public class JacksonMessageWriter implements MessageWriter {
 		return defaultMime;
 	}
 
+	/**
+	 * 将每一行输出到JsonGenerator中，定期写出
+	 */
+	private class JsonRowCallback implements RowCallback {
+		private final JsonGenerator generator;
+		private final ResponseBuffer buffer;
+		private int count;
+
+		JsonRowCallback(JsonGenerator generator, ResponseBuffer buffer) {
+			this.generator = generator;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void onRow(Object row) throws IOException {
+			getObjectWriter(row).writeValue(generator, row);
+			count++;
+			if (flushInterval > 0 && count % flushInterval == 0) {
+				generator.flush();
+				buffer.flushResponse();
+			}
+		}
+	}
+
 }
@@ -1,5 +1,6 @@
 package net.meteor.render;
 
+import java.io.IOException;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -8,12 +9,17 @@ import javax.servlet.http.HttpServletResponse;
 import net.meteor.exception.PageRenderException;
 import net.meteor.handler.ModelAndView;
 import net.meteor.render.view.RenderableView;
+import net.meteor.render.view.UrlBasedView;
 import net.meteor.render.view.View;
+import net.meteor.utils.WebUtils;
 
 import org.apache.commons.lang.StringUtils;
 
 /**
  * 页面渲染的基类
+ * <p>
+ * 设置了{@link ResponseCompressor}时渲染的内容（包括&#64;RespBody的输出）按照客户端支持的方式压缩；
+ * 处理方法标注了&#64;ETag时根据压缩前的内容生成ETag。转发和重定向不做处理
  * 
  * @author wuqh
  * 
@@ -21,11 +27,52 @@ import org.apache.commons.lang.StringUtils;
 public abstract class AbstractPageRender implements PageRender {
 	private static final String DEFAULT_VIEW_PREFIX = "/views/";
 	private String pagePrefix;
+	private ResponseCompressor responseCompressor;
 
 	@Override
 	public void render(HttpServletRequest request, HttpServletResponse response, ModelAndView mv) {
 		View view = mv.getView();
 		Map<String, ?> model = mv.getModel();
+		CompressingResponse compressingResponse = null;
+		ETagResponse etagResponse = null;
+		if (isWrappable(view)) {
+			if (responseCompressor != null) {
+				compressingResponse = responseCompressor.wrap(request, response);
+			}
+			// ETag根据压缩前的内容生成，返回304时不需要压缩
+			if (request.getAttribute(WebUtils.METEOR_ETAG_ATTRIBUTE) != null) {
+				etagResponse = new ETagResponse(request, compressingResponse == null ? response
+						: compressingResponse);
+			}
+		}
+		if (compressingResponse == null && etagResponse == null) {
+			render(request, response, view, model);
+			return;
+		}
+
+		try {
+			if (etagResponse != null) {
+				render(request, etagResponse, view, model);
+				etagResponse.finish();
+			} else {
+				render(request, compressingResponse, view, model);
+			}
+			if (compressingResponse != null) {
+				compressingResponse.finish();
+			}
+		} catch (IOException e) {
+			throw new PageRenderException("页面渲染失败：" + e.getMessage(), e);
+		} finally {
+			if (etagResponse != null) {
+				etagResponse.release();
+			}
+			if (compressingResponse != null) {
+				compressingResponse.release();
+			}
+		}
+	}
+
+	private void render(HttpServletRequest request, HttpServletResponse response, View view, Map<String, ?> model) {
 		if (view instanceof RenderableView) {
 			try {
 				((RenderableView) view).render(request, response, model);
@@ -38,6 +85,23 @@ public abstract class AbstractPageRender implements PageRender {
 
 	}
 
+	private boolean isWrappable(View view) {
+		if (view instanceof RenderableView) {
+			return !(view instanceof UrlBasedView);
+		}
+		return isOutputWrappable();
+	}
+
+	/**
+	 * 页面渲染的内容是否都经过传入的response输出（可以压缩和生成ETag），渲染时将response交给容器（如forward）的实现应该返回
+	 * <code>false</code>
+	 * 
+	 * @return
+	 */
+	protected boolean isOutputWrappable() {
+		return true;
+	}
+
 	/**
 	 * 执行渲染操作
 	 * 
@@ -58,6 +122,19 @@ public abstract class AbstractPageRender implements PageRender {
 		this.pagePrefix = pagePrefix;
 	}
 
+	/**
+	 * 设置响应压缩，为<code>null</code>时不压缩
+	 * 
+	 * @param responseCompressor
+	 */
+	public void setResponseCompressor(ResponseCompressor responseCompressor) {
+		this.responseCompressor = responseCompressor;
+	}
+
+	public ResponseCompressor getResponseCompressor() {
+		return responseCompressor;
+	}
+
 	/**
 	 * 获取View的根目录
 	 * 
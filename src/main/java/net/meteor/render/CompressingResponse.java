@@ -0,0 +1,341 @@
+package net.meteor.render;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import net.meteor.utils.WebUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 压缩输出内容的response。
+ * <p>
+ * 内容先缓冲到最小压缩字节数，达到后根据ContentType决定压缩或者直接写出；渲染结束时还没有达到的内容设置Content-Length后直接写出。
+ * 渲染前设置了小于最小压缩字节数的Content-Length时不压缩
+ *
+ * @author wuqh
+ *
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompressingResponse.class);
+
+	private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+	private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+	private static final byte[] GZIP_HEADER = { (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+	private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+	private static final int BUFFERING = 0;
+	private static final int COMPRESSING = 1;
+	private static final int PASSTHROUGH = 2;
+
+	private final ResponseCompressor compressor;
+	private final String encoding;
+	private final CompressionStats routeStats;
+	private final CompressingOutputStream outputStream = new CompressingOutputStream();
+	private PrintWriter writer;
+
+	private int state = BUFFERING;
+	// 渲染时设置的Content-Length，压缩时不设置
+	private int contentLength = -1;
+	private boolean encoded;
+
+	private byte[] buffer;
+	private int count;
+
+	private Deflater deflater;
+	private CRC32 crc;
+	private byte[] outputBuffer;
+	private OutputStream target;
+	private long inputBytes;
+	private long outputBytes;
+	private long cpuTime;
+
+	CompressingResponse(ResponseCompressor compressor, HttpServletResponse response, String encoding,
+			CompressionStats routeStats) {
+		super(response);
+		this.compressor = compressor;
+		this.encoding = encoding;
+		this.routeStats = routeStats;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			String characterEncoding = getCharacterEncoding();
+			if (characterEncoding == null) {
+				characterEncoding = WebUtils.DEFAULT_CHARACTER_ENCODING;
+			}
+			writer = new PrintWriter(new OutputStreamWriter(outputStream, characterEncoding));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		if (state == BUFFERING && count == 0 && len < compressor.getMinSize()) {
+			// 已知内容很小，不需要缓冲
+			state = PASSTHROUGH;
+		}
+		if (state == PASSTHROUGH) {
+			super.setContentLength(len);
+		} else {
+			contentLength = len;
+		}
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		if (HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLength(Integer.parseInt(value));
+			return;
+		}
+		checkEncodingHeader(name);
+		super.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		if (HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLength(Integer.parseInt(value));
+			return;
+		}
+		checkEncodingHeader(name);
+		super.addHeader(name, value);
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		if (HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLength(value);
+			return;
+		}
+		super.setIntHeader(name, value);
+	}
+
+	private void checkEncodingHeader(String name) {
+		// 渲染时已经自行编码的内容不再压缩
+		if (HEADER_CONTENT_ENCODING.equalsIgnoreCase(name)) {
+			encoded = true;
+		}
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		outputStream.flush();
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		if (state == BUFFERING) {
+			count = 0;
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		if (state == BUFFERING) {
+			count = 0;
+			contentLength = -1;
+			encoded = false;
+		}
+	}
+
+	private void write(byte[] b, int off, int len) throws IOException {
+		if (state == BUFFERING) {
+			if (count + len < compressor.getMinSize()) {
+				if (buffer == null) {
+					buffer = new byte[compressor.getMinSize()];
+				}
+				System.arraycopy(b, off, buffer, count, len);
+				count += len;
+				return;
+			}
+			start();
+		}
+		if (state == COMPRESSING) {
+			deflate(b, off, len);
+		} else {
+			getTarget().write(b, off, len);
+		}
+	}
+
+	private OutputStream getTarget() throws IOException {
+		if (target == null) {
+			target = getResponse().getOutputStream();
+		}
+		return target;
+	}
+
+	/**
+	 * 达到最小压缩字节数，决定是否压缩并写出缓冲的内容
+	 */
+	private void start() throws IOException {
+		HttpServletResponse response = (HttpServletResponse) getResponse();
+		if (!encoded && compressor.isCompressible(getContentType())) {
+			state = COMPRESSING;
+			response.setHeader(HEADER_CONTENT_ENCODING, encoding);
+			getTarget();
+			deflater = compressor.acquireDeflater(encoding);
+			outputBuffer = new byte[OUTPUT_BUFFER_SIZE];
+			if (ResponseCompressor.GZIP.equals(encoding)) {
+				crc = new CRC32();
+				target.write(GZIP_HEADER);
+				outputBytes += GZIP_HEADER.length;
+			}
+			if (count > 0) {
+				deflate(buffer, 0, count);
+			}
+		} else {
+			state = PASSTHROUGH;
+			if (contentLength >= 0) {
+				response.setContentLength(contentLength);
+			}
+			if (count > 0) {
+				getTarget().write(buffer, 0, count);
+			}
+		}
+		count = 0;
+	}
+
+	private void deflate(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return;
+		}
+		long startTime = ResponseCompressor.currentCpuTime();
+		if (crc != null) {
+			crc.update(b, off, len);
+		}
+		inputBytes += len;
+		deflater.setInput(b, off, len);
+		while (!deflater.needsInput()) {
+			writeDeflated();
+		}
+		cpuTime += ResponseCompressor.currentCpuTime() - startTime;
+	}
+
+	private void writeDeflated() throws IOException {
+		int length = deflater.deflate(outputBuffer, 0, outputBuffer.length);
+		if (length > 0) {
+			target.write(outputBuffer, 0, length);
+			outputBytes += length;
+		}
+	}
+
+	/**
+	 * 渲染结束，写出剩余的内容
+	 *
+	 * @throws IOException
+	 */
+	void finish() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		if (state == BUFFERING) {
+			if (count == 0) {
+				// 没有输出内容（如重定向）
+				return;
+			}
+			state = PASSTHROUGH;
+			getResponse().setContentLength(count);
+			getTarget().write(buffer, 0, count);
+			count = 0;
+		} else if (state == COMPRESSING) {
+			long startTime = ResponseCompressor.currentCpuTime();
+			deflater.finish();
+			while (!deflater.finished()) {
+				writeDeflated();
+			}
+			cpuTime += ResponseCompressor.currentCpuTime() - startTime;
+			if (crc != null) {
+				writeTrailer();
+			}
+			compressor.record(routeStats, inputBytes, outputBytes, cpuTime);
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(encoding + "压缩" + inputBytes + "字节为" + outputBytes + "字节");
+			}
+			releaseDeflater();
+		}
+		if (target != null) {
+			target.flush();
+		}
+	}
+
+	private void writeTrailer() throws IOException {
+		byte[] trailer = new byte[8];
+		writeInt(trailer, 0, (int) crc.getValue());
+		writeInt(trailer, 4, (int) inputBytes);
+		target.write(trailer);
+		outputBytes += trailer.length;
+	}
+
+	private static void writeInt(byte[] b, int off, int value) {
+		b[off] = (byte) value;
+		b[off + 1] = (byte) (value >> 8);
+		b[off + 2] = (byte) (value >> 16);
+		b[off + 3] = (byte) (value >> 24);
+	}
+
+	/**
+	 * 将Deflater放回池中，渲染失败时也要调用
+	 */
+	void release() {
+		releaseDeflater();
+	}
+
+	private void releaseDeflater() {
+		if (deflater != null) {
+			compressor.releaseDeflater(encoding, deflater);
+			deflater = null;
+		}
+	}
+
+	/**
+	 * 写到response的输出流，压缩时flush只写出已经压缩好的内容
+	 */
+	private class CompressingOutputStream extends ServletOutputStream {
+		private final byte[] single = new byte[1];
+
+		@Override
+		public void write(int b) throws IOException {
+			single[0] = (byte) b;
+			write(single, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			CompressingResponse.this.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// 缓冲时等待达到最小压缩字节数或者渲染结束
+			if (target != null) {
+				target.flush();
+			}
+		}
+
+		/**
+		 * 由{@link CompressingResponse#finish()}结束输出
+		 */
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package net.meteor.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 响应压缩的统计信息，包括压缩的响应数、压缩前后的字节数和压缩占用的CPU时间
+ *
+ * @author wuqh
+ *
+ */
+public final class CompressionStats {
+	/**
+	 * 保存当前路径统计信息的request属性，渲染时压缩的结果同时计入该统计
+	 */
+	public static final String STATS_ATTRIBUTE = "net.meteor.compressionStats";
+
+	private final AtomicLong compressedCount = new AtomicLong();
+	private final AtomicLong inputBytes = new AtomicLong();
+	private final AtomicLong outputBytes = new AtomicLong();
+	private final AtomicLong cpuTime = new AtomicLong();
+
+	/**
+	 * 记录一次压缩
+	 *
+	 * @param input
+	 *            压缩前的字节数
+	 * @param output
+	 *            压缩后的字节数
+	 * @param cpuNanos
+	 *            压缩占用的CPU时间（纳秒）
+	 */
+	public void record(long input, long output, long cpuNanos) {
+		compressedCount.incrementAndGet();
+		inputBytes.addAndGet(input);
+		outputBytes.addAndGet(output);
+		cpuTime.addAndGet(cpuNanos);
+	}
+
+	public long getCompressedCount() {
+		return compressedCount.get();
+	}
+
+	public long getInputBytes() {
+		return inputBytes.get();
+	}
+
+	public long getOutputBytes() {
+		return outputBytes.get();
+	}
+
+	/**
+	 * 获取压缩占用的CPU时间，JVM不支持线程CPU时间时为经过的时间
+	 *
+	 * @return 纳秒
+	 */
+	public long getCpuTime() {
+		return cpuTime.get();
+	}
+
+	/**
+	 * 获取压缩率（压缩后的字节数/压缩前的字节数）
+	 *
+	 * @return 没有压缩过时返回1
+	 */
+	public double getCompressionRatio() {
+		long input = inputBytes.get();
+		return (input == 0 ? 1 : (double) outputBytes.get() / input);
+	}
+
+	@Override
+	public String toString() {
+		return "压缩[" + getCompressedCount() + "]次，" + getInputBytes() + "字节压缩为" + getOutputBytes() + "字节，CPU时间"
+				+ (getCpuTime() / 1000000) + "ms";
+	}
+}
@@ -0,0 +1,68 @@
+package net.meteor.render;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Deflater池，Deflater创建时会分配较大的本地内存，每个响应创建一个的代价很高，使用后重置放回池中。
+ * <p>
+ * 空闲的Deflater超过上限时直接释放
+ *
+ * @author wuqh
+ *
+ */
+final class DeflaterPool {
+	private final int level;
+	private final boolean nowrap;
+	private final int maxIdle;
+	private final Queue<Deflater> idleDeflaters = new ConcurrentLinkedQueue<Deflater>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * 构造函数
+	 *
+	 * @param level
+	 *            压缩级别
+	 * @param nowrap
+	 *            为<code>true</code>时不输出zlib的头和校验（用于gzip）
+	 * @param maxIdle
+	 *            最多保留的空闲Deflater数量
+	 */
+	DeflaterPool(int level, boolean nowrap, int maxIdle) {
+		this.level = level;
+		this.nowrap = nowrap;
+		this.maxIdle = maxIdle;
+	}
+
+	Deflater acquire() {
+		Deflater deflater = idleDeflaters.poll();
+		if (deflater == null) {
+			return new Deflater(level, nowrap);
+		}
+		idleCount.decrementAndGet();
+		return deflater;
+	}
+
+	void release(Deflater deflater) {
+		deflater.reset();
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idleDeflaters.offer(deflater);
+		} else {
+			idleCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * 释放所有空闲的Deflater
+	 */
+	void clear() {
+		Deflater deflater;
+		while ((deflater = idleDeflaters.poll()) != null) {
+			idleCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package net.meteor.render;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import net.meteor.utils.WebUtils;
+
+/**
+ * 缓冲全部输出内容的response，渲染结束后根据内容生成ETag，If-None-Match匹配时返回304，不写出任何内容。
+ * <p>
+ * 设置了非200状态、重定向或者发送错误时不生成ETag
+ *
+ * @author wuqh
+ *
+ */
+class ETagResponse extends HttpServletResponseWrapper {
+	private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+
+	private final HttpServletRequest request;
+	private final ResponseBuffer buffer;
+	private final BufferOutputStream outputStream = new BufferOutputStream();
+	private PrintWriter writer;
+	// 不生成ETag，直接写出缓冲的内容
+	private boolean bypass;
+	// 已经发送了错误或者重定向，不再写出内容
+	private boolean sent;
+
+	ETagResponse(HttpServletRequest request, HttpServletResponse response) {
+		super(response);
+		this.request = request;
+		// 不限制缓冲大小，必须在生成ETag之后才能写出。内层的MessageWriter会使用线程中的另一个缓冲区
+		this.buffer = ResponseBuffer.acquire(response, 0);
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			String characterEncoding = getCharacterEncoding();
+			if (characterEncoding == null) {
+				characterEncoding = WebUtils.DEFAULT_CHARACTER_ENCODING;
+			}
+			writer = new PrintWriter(new OutputStreamWriter(outputStream, characterEncoding));
+		}
+		return writer;
+	}
+
+	/**
+	 * 写出时根据缓冲的内容设置
+	 */
+	@Override
+	public void setContentLength(int len) {
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		if (!HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		if (!HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.addHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		if (!HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.setIntHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		super.setStatus(sc);
+		bypass = (sc != SC_OK);
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+		sent = true;
+		super.sendError(sc);
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+		sent = true;
+		super.sendError(sc, msg);
+	}
+
+	@Override
+	public void sendRedirect(String location) throws IOException {
+		sent = true;
+		super.sendRedirect(location);
+	}
+
+	/**
+	 * 内容全部缓冲，不写出
+	 */
+	@Override
+	public void flushBuffer() {
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		buffer.reset();
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		buffer.reset();
+		bypass = false;
+	}
+
+	/**
+	 * 渲染结束，生成ETag并写出内容
+	 *
+	 * @throws IOException
+	 */
+	void finish() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		if (sent) {
+			return;
+		}
+		if (!bypass) {
+			String etag = WebUtils.createETag(buffer.getBuffer(), 0, buffer.size());
+			if (WebUtils.checkNotModified(etag, request, (HttpServletResponse) getResponse())
+					&& WebUtils.isNotModifiedApplicable(request)) {
+				return;
+			}
+		}
+		buffer.commit();
+	}
+
+	/**
+	 * 释放缓冲区，渲染失败时也要调用
+	 */
+	void release() {
+		buffer.release();
+	}
+
+	/**
+	 * 写到缓冲区的输出流
+	 */
+	private class BufferOutputStream extends ServletOutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			buffer.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			buffer.write(b, off, len);
+		}
+	}
+}
@@ -49,6 +49,14 @@ public class JsperPageRender extends AbstractPageRender implements PageRender {
 		}
 	}
 
+	/**
+	 * forward结束时容器会关闭response，只有include时可以压缩和生成ETag
+	 */
+	@Override
+	protected boolean isOutputWrappable() {
+		return useInclude;
+	}
+
 	public void setUseInclude(boolean useInclude) {
 		this.useInclude = useInclude;
 	}
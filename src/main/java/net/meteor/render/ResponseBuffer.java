@@ -0,0 +1,230 @@
+package net.meteor.render;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 响应内容的缓冲区，输出完成后设置Content-Length并一次写出，避免小的响应使用chunked编码。
+ * <p>
+ * 每个线程重用{@value #POOL_SIZE}个缓冲区（ETagResponse和其中的MessageWriter嵌套使用），通过{@link #acquire(HttpServletResponse, int)}获取，
+ * 使用后必须调用{@link #release()}。
+ * 内容超过阈值时先写出已缓冲的内容，之后每次缓冲区满时写到response中（不再设置Content-Length），避免大的响应占用过多内存
+ *
+ * @author wuqh
+ *
+ */
+public final class ResponseBuffer extends OutputStream {
+	/**
+	 * 默认的缓冲阈值
+	 */
+	public static final int DEFAULT_THRESHOLD = 64 * 1024;
+
+	private static final int INITIAL_SIZE = 4096;
+
+	// 每个线程重用的缓冲区数量，可以满足一层嵌套输出
+	private static final int POOL_SIZE = 2;
+
+	private static final ThreadLocal<ResponseBuffer[]> POOL = new ThreadLocal<ResponseBuffer[]>() {
+		@Override
+		protected ResponseBuffer[] initialValue() {
+			return new ResponseBuffer[POOL_SIZE];
+		}
+	};
+
+	private byte[] buffer = new byte[INITIAL_SIZE];
+	private int count;
+	private boolean inUse;
+
+	private HttpServletResponse response;
+	private int threshold;
+	// 超过阈值后写出的输出流
+	private OutputStream target;
+	// 已经写到response中的字节数
+	private long written;
+
+	private ResponseBuffer() {
+	}
+
+	/**
+	 * 获取当前线程空闲的缓冲区，当前线程的缓冲区都在使用时（嵌套超过{@value #POOL_SIZE}层）创建新的缓冲区
+	 *
+	 * @param response
+	 * @param threshold
+	 *            缓冲的最大字节数，超过后直接写到response中，小于等于0时不限制
+	 * @return
+	 */
+	public static ResponseBuffer acquire(HttpServletResponse response, int threshold) {
+		ResponseBuffer[] pool = POOL.get();
+		ResponseBuffer buffer = null;
+		for (int i = 0; i < pool.length && buffer == null; i++) {
+			if (pool[i] == null) {
+				pool[i] = new ResponseBuffer();
+			}
+			if (!pool[i].inUse) {
+				buffer = pool[i];
+			}
+		}
+		if (buffer == null) {
+			buffer = new ResponseBuffer();
+		}
+		buffer.inUse = true;
+		buffer.response = response;
+		buffer.threshold = threshold;
+		return buffer;
+	}
+
+	/**
+	 * 释放缓冲区，超过阈值而扩大的数组不保留
+	 */
+	public void release() {
+		if (buffer.length > Math.max(threshold, INITIAL_SIZE)) {
+			buffer = new byte[INITIAL_SIZE];
+		}
+		count = 0;
+		written = 0;
+		response = null;
+		target = null;
+		inUse = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == buffer.length) {
+			if (target != null || (threshold > 0 && count >= threshold)) {
+				drain();
+			} else {
+				ensureCapacity(count + 1);
+			}
+		}
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (target == null && threshold > 0 && count + len > threshold) {
+			drain();
+		}
+		if (target != null) {
+			// 超过阈值后按照缓冲区的大小分批写出
+			if (count + len > buffer.length) {
+				drain();
+				if (len >= buffer.length) {
+					target.write(b, off, len);
+					written += len;
+					return;
+				}
+			}
+		} else {
+			ensureCapacity(count + len);
+		}
+		System.arraycopy(b, off, buffer, count, len);
+		count += len;
+	}
+
+	/**
+	 * 将缓冲的内容写到response中
+	 */
+	private void drain() throws IOException {
+		if (target == null) {
+			target = response.getOutputStream();
+		}
+		target.write(buffer, 0, count);
+		written += count;
+		count = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(buffer.length << 1, capacity)];
+			System.arraycopy(buffer, 0, newBuffer, 0, count);
+			buffer = newBuffer;
+		}
+	}
+
+	/**
+	 * 不写出内容，序列化工具每次输出后的flush不会导致response逐次写出，需要写出时调用{@link #flushResponse()}
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * 已经超过阈值时将response中的内容写出到客户端，否则不做处理（仍然等待{@link #commit()}一次写出）
+	 *
+	 * @throws IOException
+	 */
+	public void flushResponse() throws IOException {
+		if (target != null) {
+			drain();
+			target.flush();
+		}
+	}
+
+	/**
+	 * 关闭时不关闭response的输出流，由{@link #commit()}写出内容
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * 是否已经超过阈值直接写到response中
+	 *
+	 * @return
+	 */
+	public boolean isSpilled() {
+		return target != null;
+	}
+
+	/**
+	 * 缓冲的字节数，超过阈值之后为还没有写出的字节数
+	 *
+	 * @return
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * 输出的总字节数，包括已经写出和还在缓冲区中的字节
+	 *
+	 * @return
+	 */
+	public long getTotalSize() {
+		return written + count;
+	}
+
+	/**
+	 * 获取内部数组，有效内容为前{@link #size()}个字节
+	 *
+	 * @return
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * 清空已缓冲的内容
+	 */
+	public void reset() {
+		count = 0;
+	}
+
+	/**
+	 * 写出缓冲的内容，没有超过阈值时设置Content-Length并一次写出
+	 *
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+		if (target != null) {
+			flushResponse();
+			return;
+		}
+		response.setContentLength(count);
+		OutputStream out = response.getOutputStream();
+		out.write(buffer, 0, count);
+		out.flush();
+	}
+}
@@ -0,0 +1,252 @@
+package net.meteor.render;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.meteor.utils.Assert;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 响应压缩，根据请求的Accept-Encoding使用gzip或者deflate压缩渲染的内容。
+ * <p>
+ * 内容小于最小压缩字节数或者ContentType是已经压缩过的类型（如图片、压缩包）时不压缩；Deflater从池中获取，使用后放回。
+ * 压缩结果计入全局统计和request中{@link CompressionStats#STATS_ATTRIBUTE}属性的统计（每个路径一个）
+ *
+ * @author wuqh
+ *
+ */
+public class ResponseCompressor {
+	/**
+	 * 默认的最小压缩字节数
+	 */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	static final String GZIP = "gzip";
+	static final String DEFLATE = "deflate";
+
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String HEADER_VARY = "Vary";
+	private static final String[] DEFAULT_EXCLUDED_TYPES = { "image/", "video/", "audio/", "application/zip",
+			"application/gzip", "application/x-gzip", "application/x-compress", "application/x-bzip2",
+			"application/x-7z-compressed", "application/x-rar-compressed" };
+	// svg是文本格式，可以压缩
+	private static final String SVG_TYPE = "image/svg+xml";
+
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported();
+
+	private final int minSize;
+	private final DeflaterPool gzipPool;
+	private final DeflaterPool deflatePool;
+	private final List<String> excludedTypes = new ArrayList<String>();
+	private final CompressionStats stats = new CompressionStats();
+
+	public ResponseCompressor() {
+		this(DEFAULT_MIN_SIZE);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param minSize
+	 *            最小压缩字节数，小于该大小的内容不压缩
+	 */
+	public ResponseCompressor(int minSize) {
+		this(minSize, Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param minSize
+	 *            最小压缩字节数，小于该大小的内容不压缩
+	 * @param level
+	 *            压缩级别
+	 * @param maxIdle
+	 *            gzip和deflate各自最多保留的空闲Deflater数量
+	 */
+	public ResponseCompressor(int minSize, int level, int maxIdle) {
+		Assert.isTrue(minSize > 0, "最小压缩字节数必须大于0");
+		this.minSize = minSize;
+		this.gzipPool = new DeflaterPool(level, true, maxIdle);
+		this.deflatePool = new DeflaterPool(level, false, maxIdle);
+		for (String type : DEFAULT_EXCLUDED_TYPES) {
+			excludedTypes.add(type);
+		}
+	}
+
+	private static boolean isCpuTimeSupported() {
+		try {
+			return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 获取当前线程的CPU时间，不支持时返回经过的时间
+	 *
+	 * @return 纳秒
+	 */
+	static long currentCpuTime() {
+		return (CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime());
+	}
+
+	/**
+	 * 增加不压缩的ContentType，以'/'结尾时匹配该类型下的所有子类型
+	 *
+	 * @param contentType
+	 */
+	public void addExcludedType(String contentType) {
+		Assert.notNull(contentType, "contentType不能为空");
+		excludedTypes.add(contentType.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * 包装response，客户端支持压缩时内容写到返回的response中，渲染完成后必须调用{@link CompressingResponse#finish()}和
+	 * {@link CompressingResponse#release()}
+	 *
+	 * @param request
+	 * @param response
+	 * @return 客户端不支持压缩或者response已经提交时返回<code>null</code>
+	 */
+	CompressingResponse wrap(HttpServletRequest request, HttpServletResponse response) {
+		if (response.isCommitted()) {
+			return null;
+		}
+		response.addHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+		String encoding = getContentEncoding(request.getHeader(HEADER_ACCEPT_ENCODING));
+		if (encoding == null) {
+			return null;
+		}
+		CompressionStats routeStats = (CompressionStats) request.getAttribute(CompressionStats.STATS_ATTRIBUTE);
+		return new CompressingResponse(this, response, encoding, routeStats);
+	}
+
+	/**
+	 * 根据Accept-Encoding选择压缩方式，优先使用gzip。"*"只匹配没有被q=0拒绝的压缩方式（如<code>gzip;q=0, *</code>使用deflate）
+	 *
+	 * @param acceptEncoding
+	 * @return 不支持压缩时返回<code>null</code>
+	 */
+	static String getContentEncoding(String acceptEncoding) {
+		if (StringUtils.isBlank(acceptEncoding)) {
+			return null;
+		}
+		boolean gzip = false;
+		boolean deflate = false;
+		boolean wildcard = false;
+		boolean gzipRejected = false;
+		boolean deflateRejected = false;
+		for (String coding : StringUtils.split(acceptEncoding, ',')) {
+			String[] parts = StringUtils.split(coding, ';');
+			if (parts.length == 0) {
+				continue;
+			}
+			String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+			boolean rejected = isRejected(parts);
+			if (GZIP.equals(name) || "x-gzip".equals(name)) {
+				if (rejected) {
+					gzipRejected = true;
+				} else {
+					gzip = true;
+				}
+			} else if (DEFLATE.equals(name)) {
+				if (rejected) {
+					deflateRejected = true;
+				} else {
+					deflate = true;
+				}
+			} else if ("*".equals(name) && !rejected) {
+				wildcard = true;
+			}
+		}
+		if (gzip || (wildcard && !gzipRejected)) {
+			return GZIP;
+		}
+		if (deflate || (wildcard && !deflateRejected)) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	private static boolean isRejected(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q=")) {
+				try {
+					return Float.parseFloat(parameter.substring(2).trim()) <= 0;
+				} catch (NumberFormatException e) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 判断ContentType是否需要压缩
+	 *
+	 * @param contentType
+	 * @return
+	 */
+	boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return true;
+		}
+		String type = contentType.trim().toLowerCase(Locale.ENGLISH);
+		if (type.startsWith(SVG_TYPE)) {
+			return true;
+		}
+		for (String excludedType : excludedTypes) {
+			if (type.startsWith(excludedType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	Deflater acquireDeflater(String encoding) {
+		return (GZIP.equals(encoding) ? gzipPool : deflatePool).acquire();
+	}
+
+	void releaseDeflater(String encoding, Deflater deflater) {
+		(GZIP.equals(encoding) ? gzipPool : deflatePool).release(deflater);
+	}
+
+	void record(CompressionStats routeStats, long input, long output, long cpuNanos) {
+		stats.record(input, output, cpuNanos);
+		if (routeStats != null) {
+			routeStats.record(input, output, cpuNanos);
+		}
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * 获取所有路径的压缩统计
+	 *
+	 * @return
+	 */
+	public CompressionStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 释放池中空闲的Deflater
+	 */
+	public void destroy() {
+		gzipPool.clear();
+		deflatePool.clear();
+	}
+}
@@ -0,0 +1,19 @@
+package net.meteor.render;
+
+import java.io.IOException;
+
+/**
+ * 输出一行数据的回调，由MessageWriter提供给{@link RowSource}
+ *
+ * @author wuqh
+ *
+ */
+public interface RowCallback {
+	/**
+	 * 输出一行数据
+	 *
+	 * @param row
+	 * @throws IOException
+	 */
+	void onRow(Object row) throws IOException;
+}
@@ -0,0 +1,19 @@
+package net.meteor.render;
+
+/**
+ * 逐行提供数据的返回值，用于@RespBody方法返回大量数据（如导出报表）。
+ * <p>
+ * MessageWriter在输出时才调用{@link #forEachRow(RowCallback)}，每一行数据生成后立即输出，不需要先把所有数据放到List中
+ *
+ * @author wuqh
+ *
+ */
+public interface RowSource {
+	/**
+	 * 依次将每一行数据交给回调输出
+	 *
+	 * @param callback
+	 * @throws Exception
+	 */
+	void forEachRow(RowCallback callback) throws Exception;
+}
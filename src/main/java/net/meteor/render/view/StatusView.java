@@ -0,0 +1,61 @@
+package net.meteor.render.view;
+
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.meteor.utils.WebUtils;
+
+/**
+ * 输出固定状态码和内容的View，内容在创建时编码好，渲染时直接写出，可以在多个请求间共享
+ *
+ * @author wuqh
+ *
+ */
+public class StatusView implements RenderableView {
+	private final int status;
+	private final String contentType;
+	private final byte[] body;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param status
+	 *            HTTP状态码
+	 * @param contentType
+	 *            内容类型（不含charset，使用UTF-8编码）
+	 * @param body
+	 */
+	public StatusView(int status, String contentType, String body) {
+		this.status = status;
+		this.contentType = contentType + ";charset=" + WebUtils.DEFAULT_CHARACTER_ENCODING;
+		try {
+			this.body = body.getBytes(WebUtils.DEFAULT_CHARACTER_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void render(HttpServletRequest request, HttpServletResponse response, Map<String, ?> model) throws Exception {
+		response.setStatus(status);
+		response.setContentType(contentType);
+		response.setContentLength(body.length);
+		OutputStream out = response.getOutputStream();
+		out.write(body);
+		out.flush();
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public String getViewName() {
+		return "Status View";
+	}
+
+}
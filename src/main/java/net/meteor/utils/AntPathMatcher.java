@@ -1,10 +1,11 @@
 package net.meteor.utils;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,13 +49,56 @@ public class AntPathMatcher implements PathMatcher {
 	/** 默认路径分隔符： "/" */
 	private static final String DEFAULT_PATH_SEPARATOR = "/";
 
+	/** 默认预编译pattern缓存的上限 */
+	private static final int DEFAULT_CACHE_LIMIT = 65536;
+
 	private String pathSeparator = DEFAULT_PATH_SEPARATOR;
 
+	private final ConcurrentHashMap<String, CompiledPattern> compiledPatternCache = new ConcurrentHashMap<String, CompiledPattern>(
+			256);
+
+	private int cacheLimit = DEFAULT_CACHE_LIMIT;
+
+	private final ThreadLocal<PathSegments> pathSegmentsHolder = new ThreadLocal<PathSegments>() {
+		@Override
+		protected PathSegments initialValue() {
+			return new PathSegments();
+		}
+	};
+
 	/**
 	 * 设置路径分隔符。 默认 "/"，Ant中是以 "/"为分隔符的。
 	 */
 	public void setPathSeparator(String pathSeparator) {
 		this.pathSeparator = (pathSeparator != null ? pathSeparator : DEFAULT_PATH_SEPARATOR);
+		this.compiledPatternCache.clear();
+	}
+
+	/**
+	 * 设置预编译pattern缓存的上限，缓存数量达到上限后新的pattern不再缓存，每次使用时重新编译。默认65536
+	 * 
+	 * @param cacheLimit
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		this.cacheLimit = cacheLimit;
+	}
+
+	/**
+	 * 当前缓存的预编译pattern数量
+	 * 
+	 * @return
+	 */
+	public int getCachedPatternCount() {
+		return compiledPatternCache.size();
+	}
+
+	/**
+	 * 获取路径分隔符
+	 * 
+	 * @return
+	 */
+	public String getPathSeparator() {
+		return pathSeparator;
 	}
 
 	public boolean isPattern(String path) {
@@ -62,11 +106,11 @@ public class AntPathMatcher implements PathMatcher {
 	}
 
 	public boolean match(String pattern, String path) {
-		return doMatch(pattern, path, true, null);
+		return doMatch(pattern, path, true, null, null);
 	}
 
 	public boolean matchStart(String pattern, String path) {
-		return doMatch(pattern, path, false, null);
+		return doMatch(pattern, path, false, null, null);
 	}
 
 	/**
@@ -76,25 +120,32 @@ public class AntPathMatcher implements PathMatcher {
 	 * @param path
 	 * @param fullMatch
 	 *            <code>path</code>是否需要完全匹配<code>pattern</code>
+	 * @param uriTemplateVariables
+	 * @param typedUriTemplateVariables
+	 *            用于存放<code>{name:type}</code>形式的变量解析后的值
 	 * @return <code>true</code> 如果给定<code>path</code>可以匹配给定<code>pattern</code>
 	 *         ， <code>false</code> 如果不匹配
 	 */
-	private boolean doMatch(String pattern, String path, boolean fullMatch, Map<String, String> uriTemplateVariables) {
+	private boolean doMatch(String pattern, String path, boolean fullMatch, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables) {
+		CompiledPattern compiledPattern = getCompiledPattern(pattern);
+
 		// 检查pattern和path是否都以“/”开头或者都不是以“/”开头，否则，返回false。
-		if (path.startsWith(this.pathSeparator) != pattern.startsWith(this.pathSeparator)) {
+		if (path.startsWith(this.pathSeparator) != compiledPattern.absolute) {
 			return false;
 		}
 
 		// 将pattern和path都以“/”为分隔符，分割成两个字符串数组patternDirs和pathDirs。
-		String[] patternDirs = StringUtils.split(pattern, this.pathSeparator);
-		// StringUtils.tokenizeToStringArray(pattern, this.pathSeparator);
-		String[] pathDirs = StringUtils.split(path, this.pathSeparator);
+		String[] patternDirs = compiledPattern.dirs;
+		AntPathStringMatcher[] dirMatchers = compiledPattern.dirMatchers;
+		// pathDirs只记录每段路径的起止位置，不生成子字符串
+		PathSegments pathDirs = pathSegmentsHolder.get().tokenize(path, this.pathSeparator);
 		// StringUtils.tokenizeToStringArray(path, this.pathSeparator);
 
 		int patternIdxStart = 0;
 		int patternIdxEnd = patternDirs.length - 1;
 		int pathIdxStart = 0;
-		int pathIdxEnd = pathDirs.length - 1;
+		int pathIdxEnd = pathDirs.size() - 1;
 
 		// 从头遍历两个字符串数组，如果遇到两给字符串不匹配，返回false。否则，直到遇到patternDirs中的“**”字符串，或patternDirs和pathDirs中有一个遍历完。
 		while (patternIdxStart <= patternIdxEnd && pathIdxStart <= pathIdxEnd) {
@@ -102,7 +153,8 @@ public class AntPathMatcher implements PathMatcher {
 			if ("**".equals(patDir)) {
 				break;
 			}
-			if (!matchStrings(patDir, pathDirs[pathIdxStart], uriTemplateVariables)) {
+			if (!dirMatchers[patternIdxStart].matchStrings(path, pathDirs.start(pathIdxStart),
+					pathDirs.end(pathIdxStart), uriTemplateVariables, typedUriTemplateVariables)) {
 				return false;
 			}
 			patternIdxStart++;
@@ -113,7 +165,7 @@ public class AntPathMatcher implements PathMatcher {
 		if (pathIdxStart > pathIdxEnd) {
 			// 如果patternDirs也遍历完了，并且pattern和path都以“/”结尾或都不以“/”，返回true，否则返回false。
 			if (patternIdxStart > patternIdxEnd) {
-				return (pattern.endsWith(this.pathSeparator) ? path.endsWith(this.pathSeparator) : !path
+				return (compiledPattern.trailingSeparator ? path.endsWith(this.pathSeparator) : !path
 						.endsWith(this.pathSeparator));
 			}
 			// 如果不需要fullMatch，就返回true。
@@ -146,7 +198,8 @@ public class AntPathMatcher implements PathMatcher {
 			if (patDir.equals("**")) {
 				break;
 			}
-			if (!matchStrings(patDir, pathDirs[pathIdxEnd], uriTemplateVariables)) {
+			if (!dirMatchers[patternIdxEnd].matchStrings(path, pathDirs.start(pathIdxEnd),
+					pathDirs.end(pathIdxEnd), uriTemplateVariables, typedUriTemplateVariables)) {
 				return false;
 			}
 			patternIdxEnd--;
@@ -188,9 +241,10 @@ public class AntPathMatcher implements PathMatcher {
 			// 从path的开通循环查找和pattern两个“**”间的所有元素都匹配的部分
 			strLoop: for (int i = 0; i <= strLength - patLength; i++) {
 				for (int j = 0; j < patLength; j++) {
-					String subPat = patternDirs[patternIdxStart + j + 1];
-					String subStr = pathDirs[pathIdxStart + i + j];
-					if (!matchStrings(subPat, subStr, uriTemplateVariables)) {
+					AntPathStringMatcher subMatcher = dirMatchers[patternIdxStart + j + 1];
+					int subIdx = pathIdxStart + i + j;
+					if (!subMatcher.matchStrings(path, pathDirs.start(subIdx), pathDirs.end(subIdx),
+							uriTemplateVariables, typedUriTemplateVariables)) {
 						continue strLoop;
 					}
 				}
@@ -220,19 +274,47 @@ public class AntPathMatcher implements PathMatcher {
 	}
 
 	/**
-	 * 测试给定的<code>str</code>是否匹配给定的<code>pattern</code>。<code>pattern</code>
-	 * 可能包含两个特殊字符：<br>
-	 * '*' 表示零个或多个字符<br>
-	 * '?' 表示一个字符
+	 * 判断<code>path</code>中从<code>start</code>到<code>end</code>
+	 * 的这一段是否匹配给定的单段pattern（pattern中不能包含路径分隔符），匹配时不会生成子字符串。
+	 * 字面量以及<code>{name}</code>形式的分段直接按字符比较，<code>{name:type}</code>
+	 * 形式的分段直接解析字符，只有<code>{name:regex}</code>等分段才会使用正则表达式
+	 * 
+	 * @param segmentPattern
+	 * @param path
+	 * @param start
+	 * @param end
+	 * @param uriTemplateVariables
+	 *            用于存放URI模板变量，为<code>null</code>时不提取变量
+	 * @param typedUriTemplateVariables
+	 *            用于存放<code>{name:type}</code>形式的变量解析后的值，为<code>null</code>时不提取
+	 * @return <code>true</code> 如果匹配
+	 * @see PathVariableType
+	 */
+	public boolean matchSegment(String segmentPattern, String path, int start, int end,
+			Map<String, String> uriTemplateVariables, Map<String, Object> typedUriTemplateVariables) {
+		AntPathStringMatcher[] dirMatchers = getCompiledPattern(segmentPattern).dirMatchers;
+		Assert.isTrue(dirMatchers.length == 1, "Pattern \"" + segmentPattern + "\"必须是单段路径");
+		return dirMatchers[0].matchStrings(path, start, end, uriTemplateVariables, typedUriTemplateVariables);
+	}
+
+	/**
+	 * 获取预编译的pattern，优先从缓存中获取
 	 * 
 	 * @param pattern
-	 * @param str
-	 *            不能为 <code>null</code>.
-	 * @return <code>true</code> 如果匹配<code>pattern</code>，或者<code>false</code>。
+	 * @return
 	 */
-	private boolean matchStrings(String pattern, String str, Map<String, String> uriTemplateVariables) {
-		AntPathStringMatcher matcher = new AntPathStringMatcher(pattern, str, uriTemplateVariables);
-		return matcher.matchStrings();
+	private CompiledPattern getCompiledPattern(String pattern) {
+		CompiledPattern compiledPattern = compiledPatternCache.get(pattern);
+		if (compiledPattern == null) {
+			compiledPattern = new CompiledPattern(pattern, this.pathSeparator);
+			if (compiledPatternCache.size() < cacheLimit) {
+				CompiledPattern existing = compiledPatternCache.putIfAbsent(pattern, compiledPattern);
+				if (existing != null) {
+					compiledPattern = existing;
+				}
+			}
+		}
+		return compiledPattern;
 	}
 
 	/**
@@ -268,8 +350,7 @@ public class AntPathMatcher implements PathMatcher {
 	 */
 	public String extractPathWithinPattern(String pattern, String path) {
 		// 以‘/’分割pattern和path为两个字符串数组patternParts和pathParts，
-		String[] patternParts = StringUtils.split(pattern, this.pathSeparator);
-		// StringUtils.tokenizeToStringArray(pattern, this.pathSeparator);
+		String[] patternParts = getCompiledPattern(pattern).dirs;
 		String[] pathParts = StringUtils.split(path, this.pathSeparator);
 		// StringUtils.tokenizeToStringArray(path, this.pathSeparator);
 
@@ -301,11 +382,28 @@ public class AntPathMatcher implements PathMatcher {
 
 	public Map<String, String> extractUriTemplateVariables(String pattern, String path) {
 		Map<String, String> variables = new LinkedHashMap<String, String>();
-		boolean result = doMatch(pattern, path, true, variables);
-		Assert.isTrue(result, "path \"" + path + "\"无法匹配Pattern \"" + pattern + "\"");
+		extractUriTemplateVariables(pattern, path, variables, null);
 		return variables;
 	}
 
+	/**
+	 * 根据给定的<code>path</code>和<code>pattern</code>获取URI模板变量，同时获取
+	 * <code>{name:type}</code>形式的变量解析后的值
+	 * 
+	 * @param pattern
+	 * @param path
+	 * @param uriTemplateVariables
+	 *            用于存放URI模板变量
+	 * @param typedUriTemplateVariables
+	 *            用于存放<code>{name:type}</code>形式的变量解析后的值，为<code>null</code>时不提取
+	 * @see PathVariableType
+	 */
+	public void extractUriTemplateVariables(String pattern, String path, Map<String, String> uriTemplateVariables,
+			Map<String, Object> typedUriTemplateVariables) {
+		boolean result = doMatch(pattern, path, true, uriTemplateVariables, typedUriTemplateVariables);
+		Assert.isTrue(result, "path \"" + path + "\"无法匹配Pattern \"" + pattern + "\"");
+	}
+
 	/**
 	 * 将两个pattern合并为一个新的pattern
 	 * <p>
@@ -471,7 +569,7 @@ public class AntPathMatcher implements PathMatcher {
 		return new AntPatternComparator(path);
 	}
 
-	private static class AntPatternComparator implements Comparator<String> {
+	private class AntPatternComparator implements Comparator<String> {
 
 		private final String path;
 
@@ -496,13 +594,14 @@ public class AntPathMatcher implements PathMatcher {
 			} else if (pattern2EqualsPath) {
 				return 1;
 			}
-			int wildCardCount1 = getWildCardCount(pattern1);
-			int wildCardCount2 = getWildCardCount(pattern2);
+			CompiledPattern compiledPattern1 = getCompiledPattern(pattern1);
+			CompiledPattern compiledPattern2 = getCompiledPattern(pattern2);
+
+			int wildCardCount1 = compiledPattern1.wildCardCount;
+			int wildCardCount2 = compiledPattern2.wildCardCount;
 
-			int bracketCount1 = StringUtils.countMatches(pattern1, "{");
-			// StringUtils.countOccurrencesOf(pattern1, "{");
-			int bracketCount2 = StringUtils.countMatches(pattern2, "{");
-			// StringUtils.countOccurrencesOf(pattern2, "{");
+			int bracketCount1 = compiledPattern1.bracketCount;
+			int bracketCount2 = compiledPattern2.bracketCount;
 
 			int totalCount1 = wildCardCount1 + bracketCount1;
 			int totalCount2 = wildCardCount2 + bracketCount2;
@@ -511,8 +610,8 @@ public class AntPathMatcher implements PathMatcher {
 				return totalCount1 - totalCount2;
 			}
 
-			int pattern1Length = getPatternLength(pattern1);
-			int pattern2Length = getPatternLength(pattern2);
+			int pattern1Length = compiledPattern1.length;
+			int pattern2Length = compiledPattern2.length;
 
 			if (pattern1Length != pattern2Length) {
 				return pattern2Length - pattern1Length;
@@ -532,29 +631,49 @@ public class AntPathMatcher implements PathMatcher {
 
 			return 0;
 		}
+	}
 
-		private int getWildCardCount(String pattern) {
-			if (pattern.endsWith(".*")) {
-				pattern = pattern.substring(0, pattern.length() - 2);
+	/**
+	 * 预编译的pattern，包含分割后的路径、每段路径的匹配器以及排序时需要用到的统计信息。创建后不可修改，可以在多线程中共享
+	 * 
+	 * @author wuqh
+	 */
+	private static class CompiledPattern {
+		private final String[] dirs;
+		private final AntPathStringMatcher[] dirMatchers;
+		private final boolean absolute;
+		private final boolean trailingSeparator;
+		private final int wildCardCount;
+		private final int bracketCount;
+		private final int length;
+
+		CompiledPattern(String pattern, String pathSeparator) {
+			this.dirs = StringUtils.split(pattern, pathSeparator);
+			this.dirMatchers = new AntPathStringMatcher[dirs.length];
+			for (int i = 0; i < dirs.length; i++) {
+				dirMatchers[i] = new AntPathStringMatcher(dirs[i]);
 			}
-			return StringUtils.countMatches(pattern, "*");
-			// return StringUtils.countOccurrencesOf(pattern, "*");
-		}
+			this.absolute = pattern.startsWith(pathSeparator);
+			this.trailingSeparator = pattern.endsWith(pathSeparator);
 
-		/**
-		 * 返回给定pattern的长度，其中URI模板变量的长度按照1计算。
-		 */
-		private int getPatternLength(String pattern) {
-			Matcher m = VARIABLE_PATTERN.matcher(pattern);
-			return m.replaceAll("#").length();
+			String wildCardPattern = pattern;
+			if (wildCardPattern.endsWith(".*")) {
+				wildCardPattern = wildCardPattern.substring(0, wildCardPattern.length() - 2);
+			}
+			this.wildCardCount = StringUtils.countMatches(wildCardPattern, "*");
+			this.bracketCount = StringUtils.countMatches(pattern, "{");
+			// URI模板变量的长度按照1计算
+			this.length = VARIABLE_PATTERN.matcher(pattern).replaceAll("#").length();
 		}
 	}
 
 	/**
-	 * 使用正则表达式判断给的字符串是否匹配给定的pattern
+	 * 判断给的字符串是否匹配给定的pattern
 	 * 
 	 * <p>
-	 * 给的pattern可能包含一些特殊字符：'*'表示零个或多个字符；'?'表示一个字符；'{'和'}'代表一个URI模板
+	 * 给的pattern可能包含一些特殊字符：'*'表示零个或多个字符；'?'表示一个字符；'{'和'}'代表一个URI模板。
+	 * 不包含特殊字符的pattern、只有一个'*'的pattern以及只有一个<code>{name}</code>
+	 * 的pattern直接按字符判断，只有一个<code>{name:type}</code>的pattern直接解析字符，其他情况使用正则表达式
 	 * 
 	 * @author wuqh
 	 */
@@ -564,19 +683,64 @@ public class AntPathMatcher implements PathMatcher {
 
 		private static final String DEFAULT_VARIABLE_PATTERN = "(.*)";
 
-		private final Pattern pattern;
+		private static final int LITERAL = 0;
+		private static final int ANY = 1;
+		private static final int VARIABLE = 2;
+		private static final int TYPED = 3;
+		private static final int REGEX = 4;
+
+		private final int type;
 
-		private final String str;
+		private final String literal;
 
-		private final List<String> variableNames = new LinkedList<String>();
+		private final String variableName;
 
-		private final Map<String, String> uriTemplateVariables;
+		private final PathVariableType variableType;
+
+		private final Pattern pattern;
+
+		private final List<String> variableNames = new ArrayList<String>();
 
 		/** Construct a new instance of the <code>AntPatchStringMatcher</code>. */
-		AntPathStringMatcher(String pattern, String str, Map<String, String> uriTemplateVariables) {
-			this.str = str;
-			this.uriTemplateVariables = uriTemplateVariables;
-			this.pattern = createPattern(pattern);
+		AntPathStringMatcher(String pattern) {
+			Matcher m = GLOB_PATTERN.matcher(pattern);
+			boolean found = m.find();
+			boolean wholeSegment = found && m.start() == 0 && m.end() == pattern.length();
+			String group = (found ? m.group(1) : null);
+			int colonIdx = (group == null ? -1 : group.indexOf(':'));
+			PathVariableType pathVariableType = (colonIdx == -1 || !wholeSegment ? null : PathVariableType
+					.forName(group.substring(colonIdx + 1)));
+			if (!found) {
+				this.type = LITERAL;
+				this.literal = pattern;
+				this.variableName = null;
+				this.variableType = null;
+				this.pattern = null;
+			} else if (wholeSegment && "*".equals(m.group())) {
+				this.type = ANY;
+				this.literal = null;
+				this.variableName = null;
+				this.variableType = null;
+				this.pattern = null;
+			} else if (wholeSegment && group != null && colonIdx == -1) {
+				this.type = VARIABLE;
+				this.literal = null;
+				this.variableName = group;
+				this.variableType = null;
+				this.pattern = null;
+			} else if (pathVariableType != null) {
+				this.type = TYPED;
+				this.literal = null;
+				this.variableName = group.substring(0, colonIdx);
+				this.variableType = pathVariableType;
+				this.pattern = null;
+			} else {
+				this.type = REGEX;
+				this.literal = null;
+				this.variableName = null;
+				this.variableType = null;
+				this.pattern = createPattern(pattern);
+			}
 		}
 
 		private Pattern createPattern(String pattern) {
@@ -621,10 +785,59 @@ public class AntPathMatcher implements PathMatcher {
 		/**
 		 * 主入口
 		 * 
+		 * @param str
+		 * @param start
+		 *            需要匹配的部分在str中的起始位置（包含）
+		 * @param end
+		 *            需要匹配的部分在str中的结束位置（不包含）
+		 * @param uriTemplateVariables
+		 * @param typedUriTemplateVariables
 		 * @return <code>true</code>如果字符串匹配pattern，否则返回<code>false</code>
 		 */
-		public boolean matchStrings() {
+		public boolean matchStrings(String str, int start, int end, Map<String, String> uriTemplateVariables,
+				Map<String, Object> typedUriTemplateVariables) {
+			switch (type) {
+			case LITERAL:
+				return (end - start == literal.length() && str.regionMatches(start, literal, 0, literal.length()));
+			case ANY:
+				return !containsLineTerminator(str, start, end);
+			case VARIABLE:
+				if (containsLineTerminator(str, start, end)) {
+					return false;
+				}
+				if (uriTemplateVariables != null) {
+					uriTemplateVariables.put(variableName, str.substring(start, end));
+				}
+				return true;
+			case TYPED:
+				return matchTyped(str, start, end, uriTemplateVariables, typedUriTemplateVariables);
+			default:
+				return matchRegex(str, start, end, uriTemplateVariables);
+			}
+		}
+
+		private boolean matchTyped(String str, int start, int end, Map<String, String> uriTemplateVariables,
+				Map<String, Object> typedUriTemplateVariables) {
+			if (typedUriTemplateVariables == null) {
+				if (!variableType.matches(str, start, end)) {
+					return false;
+				}
+			} else {
+				Object value = variableType.parse(str, start, end);
+				if (value == null) {
+					return false;
+				}
+				typedUriTemplateVariables.put(variableName, value);
+			}
+			if (uriTemplateVariables != null) {
+				uriTemplateVariables.put(variableName, str.substring(start, end));
+			}
+			return true;
+		}
+
+		private boolean matchRegex(String str, int start, int end, Map<String, String> uriTemplateVariables) {
 			Matcher matcher = pattern.matcher(str);
+			matcher.region(start, end);
 			if (matcher.matches()) {
 				if (uriTemplateVariables != null) {
 					for (int i = 1; i <= matcher.groupCount(); i++) {
@@ -639,6 +852,19 @@ public class AntPathMatcher implements PathMatcher {
 			}
 		}
 
+		/**
+		 * 与正则表达式中的"."保持一致，"."不匹配行结束符
+		 */
+		private boolean containsLineTerminator(String str, int start, int end) {
+			for (int i = start; i < end; i++) {
+				char c = str.charAt(i);
+				if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+					return true;
+				}
+			}
+			return false;
+		}
+
 	}
 
 }
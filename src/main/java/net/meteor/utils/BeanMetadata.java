@@ -0,0 +1,245 @@
+package net.meteor.utils;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.meteor.annotation.Pattern;
+
+/**
+ * Bean类型的元数据，包括所有属性及其getter/setter方法、setter参数的泛型类型和@Pattern注解，每个类型只解析一次。
+ * <p>
+ * 能被框架的ClassLoader加载的类型直接缓存；其他ClassLoader（如热部署的应用）加载的类型使用弱引用缓存，
+ * 避免ClassLoader无法被回收
+ *
+ * @author wuqh
+ *
+ */
+public class BeanMetadata {
+	private static final Map<Class<?>, BeanMetadata> STRONG_CACHE = new ConcurrentHashMap<Class<?>, BeanMetadata>();
+	private static final Map<Class<?>, Reference<BeanMetadata>> WEAK_CACHE = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Reference<BeanMetadata>>());
+
+	private final Class<?> beanClass;
+	private final Map<String, PropertyMetadata> properties;
+	private final Map<String, PropertyDescriptor> propertyDescriptors;
+	private final PropertyMetadata[] writableProperties;
+
+	private BeanMetadata(Class<?> beanClass) throws IntrospectionException {
+		this.beanClass = beanClass;
+
+		BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+		Map<String, PropertyMetadata> properties = new LinkedHashMap<String, PropertyMetadata>();
+		Map<String, PropertyDescriptor> propertyDescriptors = new LinkedHashMap<String, PropertyDescriptor>();
+		List<PropertyMetadata> writableProperties = new ArrayList<PropertyMetadata>();
+		for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+			PropertyMetadata property = new PropertyMetadata(descriptor);
+			properties.put(property.getName(), property);
+			propertyDescriptors.put(property.getName(), descriptor);
+			if (property.getWriteMethod() != null && property.getType() != null) {
+				writableProperties.add(property);
+			}
+		}
+
+		this.properties = Collections.unmodifiableMap(properties);
+		this.propertyDescriptors = Collections.unmodifiableMap(propertyDescriptors);
+		this.writableProperties = writableProperties.toArray(new PropertyMetadata[writableProperties.size()]);
+	}
+
+	/**
+	 * 获取类型的元数据
+	 *
+	 * @param clazz
+	 * @return
+	 * @throws IntrospectionException
+	 */
+	public static BeanMetadata forClass(Class<?> clazz) throws IntrospectionException {
+		BeanMetadata metadata = STRONG_CACHE.get(clazz);
+		if (metadata != null) {
+			return metadata;
+		}
+
+		boolean cacheSafe = isCacheSafe(clazz);
+		if (!cacheSafe) {
+			Reference<BeanMetadata> reference = WEAK_CACHE.get(clazz);
+			metadata = (reference == null ? null : reference.get());
+			if (metadata != null) {
+				return metadata;
+			}
+		}
+
+		// 并发时可能重复解析，结果相同，不需要加锁
+		metadata = new BeanMetadata(clazz);
+		if (cacheSafe) {
+			STRONG_CACHE.put(clazz, metadata);
+		} else {
+			WEAK_CACHE.put(clazz, new SoftReference<BeanMetadata>(metadata));
+		}
+		return metadata;
+	}
+
+	/**
+	 * 获取缓存的类型数量，用于监控
+	 *
+	 * @return
+	 */
+	public static int getCacheSize() {
+		return STRONG_CACHE.size() + WEAK_CACHE.size();
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public static void clearCache() {
+		STRONG_CACHE.clear();
+		WEAK_CACHE.clear();
+	}
+
+	/**
+	 * 类型的ClassLoader是框架的ClassLoader或者其父ClassLoader时，可以直接缓存（{@link ScalarParsers}也使用该规则）
+	 */
+	static boolean isCacheSafe(Class<?> clazz) {
+		ClassLoader target = clazz.getClassLoader();
+		if (target == null) {
+			return true;
+		}
+		ClassLoader current = BeanMetadata.class.getClassLoader();
+		while (current != null) {
+			if (current == target) {
+				return true;
+			}
+			current = current.getParent();
+		}
+		return false;
+	}
+
+	public Class<?> getBeanClass() {
+		return beanClass;
+	}
+
+	/**
+	 * 获取所有属性
+	 *
+	 * @return 属性名到属性元数据的映射，不可修改
+	 */
+	public Map<String, PropertyMetadata> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * 获取属性
+	 *
+	 * @param name
+	 * @return 不存在时返回<code>null</code>
+	 */
+	public PropertyMetadata getProperty(String name) {
+		return properties.get(name);
+	}
+
+	/**
+	 * 获取所有PropertyDescriptor
+	 *
+	 * @return 不可修改
+	 */
+	public Map<String, PropertyDescriptor> getPropertyDescriptors() {
+		return propertyDescriptors;
+	}
+
+	/**
+	 * 获取存在setter方法的属性
+	 *
+	 * @return 返回的是内部数组，不要修改
+	 */
+	public PropertyMetadata[] getWritableProperties() {
+		return writableProperties;
+	}
+
+	/**
+	 * 属性的元数据
+	 */
+	public static class PropertyMetadata {
+		private final String name;
+		private final Class<?> type;
+		private final Method readMethod;
+		private final Method writeMethod;
+		private final Class<?> elementType;
+		private final String pattern;
+
+		PropertyMetadata(PropertyDescriptor descriptor) {
+			this.name = descriptor.getName();
+			this.type = descriptor.getPropertyType();
+			this.readMethod = descriptor.getReadMethod();
+			this.writeMethod = descriptor.getWriteMethod();
+
+			Class<?> elementType = null;
+			String pattern = null;
+			if (writeMethod != null) {
+				Type genericType = writeMethod.getGenericParameterTypes()[0];
+				if (genericType instanceof ParameterizedType) {
+					Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+					if (arguments.length > 0 && arguments[0] instanceof Class) {
+						elementType = (Class<?>) arguments[0];
+					}
+				} else if (type != null && type.isArray()) {
+					elementType = type.getComponentType();
+				}
+
+				for (Annotation annotation : writeMethod.getParameterAnnotations()[0]) {
+					if (annotation instanceof Pattern) {
+						pattern = ((Pattern) annotation).value();
+					}
+				}
+			}
+			this.elementType = elementType;
+			this.pattern = pattern;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Class<?> getType() {
+			return type;
+		}
+
+		public Method getReadMethod() {
+			return readMethod;
+		}
+
+		public Method getWriteMethod() {
+			return writeMethod;
+		}
+
+		/**
+		 * 获取集合属性的泛型类型或者数组属性的组成类型
+		 *
+		 * @return 无法确定时返回<code>null</code>
+		 */
+		public Class<?> getElementType() {
+			return elementType;
+		}
+
+		/**
+		 * 获取setter方法参数上@Pattern注解的值
+		 *
+		 * @return 没有注解时返回<code>null</code>
+		 */
+		public String getPattern() {
+			return pattern;
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package net.meteor.utils;
+
+import java.lang.reflect.Modifier;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * 字节码生成工具类，用于使用ASM生成调用器、访问器等类时的公共操作
+ *
+ * @author wuqh
+ *
+ */
+public class BytecodeUtils {
+	private static final String INTERNAL_NAME = Type.getInternalName(BytecodeUtils.class);
+
+	private BytecodeUtils() {
+	}
+
+	/**
+	 * 获取同时能加载目标类和生成类的父类的ClassLoader，生成的类使用该ClassLoader作为父ClassLoader
+	 *
+	 * @param targetClass
+	 *            生成的类需要访问的类
+	 * @param superClass
+	 *            生成的类的父类
+	 * @return 找不到时返回<code>null</code>
+	 */
+	public static ClassLoader getParentClassLoader(Class<?> targetClass, Class<?> superClass) {
+		ClassLoader targetClassLoader = targetClass.getClassLoader();
+		if (targetClassLoader != null && isVisible(superClass, targetClassLoader)) {
+			return targetClassLoader;
+		}
+		ClassLoader superClassLoader = superClass.getClassLoader();
+		if (superClassLoader != null && isVisible(targetClass, superClassLoader)) {
+			return superClassLoader;
+		}
+		return null;
+	}
+
+	private static boolean isVisible(Class<?> clazz, ClassLoader classLoader) {
+		try {
+			return Class.forName(clazz.getName(), false, classLoader) == clazz;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 判断生成的类能否直接访问该类型。生成的类由单独的ClassLoader加载，只能访问public的类型，
+	 * 数组判断元素类型，嵌套类还要求外部类都是public的
+	 *
+	 * @param type
+	 * @return
+	 */
+	public static boolean isPublicType(Class<?> type) {
+		Class<?> clazz = type;
+		while (clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		if (clazz.isPrimitive()) {
+			return true;
+		}
+		for (Class<?> current = clazz; current != null; current = current.getDeclaringClass()) {
+			if (!Modifier.isPublic(current.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 使用新的ClassLoader定义生成的类
+	 *
+	 * @param parent
+	 * @param className
+	 * @param bytes
+	 * @return
+	 */
+	public static Class<?> defineClass(ClassLoader parent, String className, byte[] bytes) {
+		return new GeneratedClassLoader(parent).defineClass(className, bytes);
+	}
+
+	/**
+	 * 将int常量压入操作数栈
+	 *
+	 * @param mv
+	 * @param value
+	 */
+	public static void pushInt(MethodVisitor mv, int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(Opcodes.ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(Integer.valueOf(value));
+		}
+	}
+
+	/**
+	 * 将栈顶的Object转换为指定类型。基本类型调用该类中对应的拆箱方法，与反射调用一样只允许宽化转换（如Character、Short转换为int），
+	 * 类型不匹配或者为<code>null</code>时抛出IllegalArgumentException
+	 *
+	 * @param mv
+	 * @param type
+	 */
+	public static void unbox(MethodVisitor mv, Class<?> type) {
+		if (!type.isPrimitive()) {
+			if (type != Object.class) {
+				mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+			}
+		} else {
+			String name = type.getName();
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, INTERNAL_NAME, "to" + Character.toUpperCase(name.charAt(0))
+					+ name.substring(1), "(Ljava/lang/Object;)" + Type.getDescriptor(type));
+		}
+	}
+
+	/**
+	 * 拆箱为boolean，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return ((Boolean) value).booleanValue();
+		}
+		throw argumentTypeMismatch(value, boolean.class);
+	}
+
+	/**
+	 * 拆箱为char，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static char toChar(Object value) {
+		if (value instanceof Character) {
+			return ((Character) value).charValue();
+		}
+		throw argumentTypeMismatch(value, char.class);
+	}
+
+	/**
+	 * 拆箱为byte，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static byte toByte(Object value) {
+		if (value instanceof Byte) {
+			return ((Byte) value).byteValue();
+		}
+		throw argumentTypeMismatch(value, byte.class);
+	}
+
+	/**
+	 * 拆箱为short，允许byte宽化，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static short toShort(Object value) {
+		if (value instanceof Short) {
+			return ((Short) value).shortValue();
+		} else if (value instanceof Byte) {
+			return ((Byte) value).byteValue();
+		}
+		throw argumentTypeMismatch(value, short.class);
+	}
+
+	/**
+	 * 拆箱为int，允许byte、short、char宽化，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static int toInt(Object value) {
+		if (value instanceof Integer) {
+			return ((Integer) value).intValue();
+		} else if (value instanceof Character) {
+			return ((Character) value).charValue();
+		} else if (value instanceof Short || value instanceof Byte) {
+			return ((Number) value).intValue();
+		}
+		throw argumentTypeMismatch(value, int.class);
+	}
+
+	/**
+	 * 拆箱为long，允许byte、short、char、int宽化，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static long toLong(Object value) {
+		if (value instanceof Long) {
+			return ((Long) value).longValue();
+		}
+		return toInt(value, long.class);
+	}
+
+	/**
+	 * 拆箱为float，允许byte、short、char、int、long宽化，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static float toFloat(Object value) {
+		if (value instanceof Float) {
+			return ((Float) value).floatValue();
+		} else if (value instanceof Long) {
+			return ((Long) value).longValue();
+		}
+		return toInt(value, float.class);
+	}
+
+	/**
+	 * 拆箱为double，允许除boolean外的其他基本类型宽化，供生成的类调用
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static double toDouble(Object value) {
+		if (value instanceof Double) {
+			return ((Double) value).doubleValue();
+		} else if (value instanceof Float) {
+			return ((Float) value).floatValue();
+		} else if (value instanceof Long) {
+			return ((Long) value).longValue();
+		}
+		return toInt(value, double.class);
+	}
+
+	/**
+	 * 宽化为long、float、double时，处理可以转换为int的类型
+	 */
+	private static int toInt(Object value, Class<?> type) {
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).intValue();
+		} else if (value instanceof Character) {
+			return ((Character) value).charValue();
+		}
+		throw argumentTypeMismatch(value, type);
+	}
+
+	/**
+	 * 与反射调用一样使用IllegalArgumentException
+	 */
+	private static IllegalArgumentException argumentTypeMismatch(Object value, Class<?> type) {
+		return new IllegalArgumentException("参数类型不匹配，不能将" + (value == null ? "null" : value.getClass()
+				.getName()) + "转换为" + type.getName());
+	}
+
+	/**
+	 * 将栈顶的值转换为Object，void压入<code>null</code>
+	 *
+	 * @param mv
+	 * @param type
+	 */
+	public static void box(MethodVisitor mv, Class<?> type) {
+		if (type == void.class) {
+			mv.visitInsn(Opcodes.ACONST_NULL);
+		} else if (type.isPrimitive()) {
+			Type wrapperType = Type.getType(getWrapperType(type));
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapperType.getInternalName(), "valueOf", "("
+					+ Type.getDescriptor(type) + ")" + wrapperType.getDescriptor());
+		}
+	}
+
+	private static Class<?> getWrapperType(Class<?> primitiveType) {
+		if (primitiveType == boolean.class) {
+			return Boolean.class;
+		} else if (primitiveType == char.class) {
+			return Character.class;
+		} else if (primitiveType == byte.class) {
+			return Byte.class;
+		} else if (primitiveType == short.class) {
+			return Short.class;
+		} else if (primitiveType == int.class) {
+			return Integer.class;
+		} else if (primitiveType == long.class) {
+			return Long.class;
+		} else if (primitiveType == float.class) {
+			return Float.class;
+		} else {
+			return Double.class;
+		}
+	}
+
+	/**
+	 * 用于定义生成的类，每个生成的类使用一个单独的ClassLoader，以便不再使用时可以被回收
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+		GeneratedClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> defineClass(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
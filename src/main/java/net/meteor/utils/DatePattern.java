@@ -0,0 +1,386 @@
+package net.meteor.utils;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 日期格式，创建时预先解析格式字符串，解析日期时直接读取字符，不使用Calendar，实例不可变，可以在多个线程间共享。
+ * <p>
+ * 支持y、M（数字形式）、d、H、m、s、S以及引号和非字母的文字，解析时不进行滚动（如2013-02-30无法解析）；
+ * 格式为{@link #EPOCH_MILLIS}时按照毫秒数解析；其他格式每个线程使用自己的SimpleDateFormat解析
+ *
+ * @author wuqh
+ *
+ */
+public final class DatePattern {
+	/**
+	 * 按照1970-01-01 00:00:00 UTC起的毫秒数解析
+	 */
+	public static final String EPOCH_MILLIS = "millis";
+
+	/**
+	 * 解析失败时{@link #parseMillis(String, int, int, boolean)}的返回值
+	 */
+	public static final long INVALID = Long.MIN_VALUE;
+
+	private static final Map<String, DatePattern> PATTERNS = new ConcurrentHashMap<String, DatePattern>();
+
+	private static final int YEAR = 0;
+	private static final int MONTH = 1;
+	private static final int DAY = 2;
+	private static final int HOUR = 3;
+	private static final int MINUTE = 4;
+	private static final int SECOND = 5;
+	private static final int MILLISECOND = 6;
+	private static final int LITERAL = 7;
+
+	private static final int[] MAX_VALUES = { 9999, 12, 31, 23, 59, 59, 999 };
+
+	private final String pattern;
+	private final boolean epochMillis;
+	private final Field[] fields;
+	private final TimeZone timeZone;
+	// 两位年份的起始年份，与SimpleDateFormat一致，为创建时间之前80年
+	private final int defaultCenturyStart;
+	private final ThreadLocal<SimpleDateFormat> dateFormatHolder;
+
+	private DatePattern(final String pattern) {
+		this.pattern = pattern;
+		this.epochMillis = EPOCH_MILLIS.equals(pattern);
+		this.timeZone = TimeZone.getDefault();
+		this.defaultCenturyStart = Calendar.getInstance().get(Calendar.YEAR) - 80;
+
+		Field[] fields = null;
+		if (!epochMillis) {
+			fields = compile(pattern);
+		}
+		this.fields = fields;
+
+		if (!epochMillis && fields == null) {
+			// 提前校验日期格式
+			new SimpleDateFormat(pattern);
+			this.dateFormatHolder = new ThreadLocal<SimpleDateFormat>() {
+				@Override
+				protected SimpleDateFormat initialValue() {
+					SimpleDateFormat dateFormat = new SimpleDateFormat(pattern);
+					dateFormat.setLenient(false);
+					return dateFormat;
+				}
+			};
+		} else {
+			this.dateFormatHolder = null;
+		}
+	}
+
+	/**
+	 * 获取日期格式，相同的格式字符串共用一个实例
+	 *
+	 * @param pattern
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             格式字符串不正确时
+	 */
+	public static DatePattern forPattern(String pattern) {
+		DatePattern datePattern = PATTERNS.get(pattern);
+		if (datePattern == null) {
+			datePattern = new DatePattern(pattern);
+			PATTERNS.put(pattern, datePattern);
+		}
+		return datePattern;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * 解析日期，与SimpleDateFormat.parse(String)一致，日期后多余的字符会被忽略
+	 *
+	 * @param text
+	 * @return
+	 * @throws ParseException
+	 */
+	public Date parse(String text) throws ParseException {
+		long millis = parseMillis(text, 0, text.length(), false);
+		if (millis == INVALID) {
+			throw new ParseException("日期[" + text + "]与格式[" + pattern + "]不匹配", 0);
+		}
+		return new Date(millis);
+	}
+
+	/**
+	 * 解析字符串中指定范围内的日期
+	 *
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @param fully
+	 *            是否要求整个范围都是日期
+	 * @return 毫秒数，解析失败时返回{@link #INVALID}
+	 */
+	public long parseMillis(String text, int start, int end, boolean fully) {
+		if (epochMillis) {
+			return parseEpochMillis(text, start, end);
+		}
+		if (fields == null) {
+			return parseByDateFormat(text, start, end, fully);
+		}
+
+		int year = 1970;
+		int month = 1;
+		int day = 1;
+		int hour = 0;
+		int minute = 0;
+		int second = 0;
+		int millisecond = 0;
+
+		int pos = start;
+		for (Field field : fields) {
+			if (field.type == LITERAL) {
+				int length = field.literal.length();
+				if (end - pos < length || !text.regionMatches(pos, field.literal, 0, length)) {
+					return INVALID;
+				}
+				pos += length;
+				continue;
+			}
+
+			int limit = (field.width > 0 ? Math.min(end, pos + field.width) : Math.min(end, pos + 9));
+			int value = 0;
+			int digitStart = pos;
+			while (pos < limit) {
+				char c = text.charAt(pos);
+				if (c < '0' || c > '9') {
+					break;
+				}
+				value = value * 10 + (c - '0');
+				pos++;
+			}
+			if (pos == digitStart || (field.width > 0 && pos - digitStart != field.width)) {
+				return INVALID;
+			}
+
+			switch (field.type) {
+			case YEAR:
+				if (field.count <= 2 && pos - digitStart == 2) {
+					value += (defaultCenturyStart / 100) * 100;
+					if (value < defaultCenturyStart) {
+						value += 100;
+					}
+				}
+				year = value;
+				break;
+			case MONTH:
+				month = value;
+				break;
+			case DAY:
+				day = value;
+				break;
+			case HOUR:
+				hour = value;
+				break;
+			case MINUTE:
+				minute = value;
+				break;
+			case SECOND:
+				second = value;
+				break;
+			default:
+				millisecond = value;
+				break;
+			}
+			if (value > MAX_VALUES[field.type]) {
+				return INVALID;
+			}
+		}
+
+		if (fully && pos != end) {
+			return INVALID;
+		}
+		if (month < 1 || day < 1 || day > getDaysOfMonth(year, month)) {
+			return INVALID;
+		}
+
+		long localMillis = toEpochDay(year, month, day) * 86400000L + hour * 3600000L + minute * 60000L + second
+				* 1000L + millisecond;
+		return localMillis - timeZone.getOffset(localMillis - timeZone.getRawOffset());
+	}
+
+	private long parseEpochMillis(String text, int start, int end) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+			negative = (text.charAt(pos) == '-');
+			pos++;
+		}
+		// 最多18位，不会溢出
+		if (pos == end || end - pos > 18) {
+			return INVALID;
+		}
+		long value = 0;
+		for (; pos < end; pos++) {
+			char c = text.charAt(pos);
+			if (c < '0' || c > '9') {
+				return INVALID;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return (negative ? -value : value);
+	}
+
+	private long parseByDateFormat(String text, int start, int end, boolean fully) {
+		String value = text.substring(start, end);
+		ParsePosition position = new ParsePosition(0);
+		Date date = dateFormatHolder.get().parse(value, position);
+		if (date == null || (fully && position.getIndex() != value.length())) {
+			return INVALID;
+		}
+		return date.getTime();
+	}
+
+	private static int getDaysOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * 计算距1970-01-01的天数（公历）
+	 */
+	private static long toEpochDay(int year, int month, int day) {
+		long y = (month <= 2 ? year - 1 : year);
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * 解析格式字符串
+	 *
+	 * @param pattern
+	 * @return 含有不支持的格式时返回<code>null</code>
+	 */
+	private static Field[] compile(String pattern) {
+		List<Field> fields = new ArrayList<Field>();
+		StringBuilder literal = new StringBuilder();
+		int length = pattern.length();
+		int i = 0;
+		while (i < length) {
+			char c = pattern.charAt(i);
+			if (c == '\'') {
+				if (i + 1 < length && pattern.charAt(i + 1) == '\'') {
+					literal.append('\'');
+					i += 2;
+					continue;
+				}
+				int close = i + 1;
+				while (true) {
+					if (close >= length) {
+						return null;
+					}
+					if (pattern.charAt(close) == '\'') {
+						if (close + 1 < length && pattern.charAt(close + 1) == '\'') {
+							literal.append('\'');
+							close += 2;
+							continue;
+						}
+						break;
+					}
+					literal.append(pattern.charAt(close));
+					close++;
+				}
+				i = close + 1;
+				continue;
+			}
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+				literal.append(c);
+				i++;
+				continue;
+			}
+
+			int count = 1;
+			while (i + count < length && pattern.charAt(i + count) == c) {
+				count++;
+			}
+			int type = getFieldType(c, count);
+			if (type < 0) {
+				return null;
+			}
+			if (literal.length() > 0) {
+				fields.add(new Field(LITERAL, 0, literal.toString()));
+				literal.setLength(0);
+			}
+			fields.add(new Field(type, count, null));
+			i += count;
+		}
+		if (literal.length() > 0) {
+			fields.add(new Field(LITERAL, 0, literal.toString()));
+		}
+
+		// 与SimpleDateFormat一致，紧跟着其他数字的字段按照格式中的位数读取
+		for (int j = 0; j < fields.size() - 1; j++) {
+			Field field = fields.get(j);
+			if (field.type != LITERAL && fields.get(j + 1).type != LITERAL) {
+				field.width = field.count;
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	private static int getFieldType(char c, int count) {
+		switch (c) {
+		case 'y':
+			return YEAR;
+		case 'M':
+			// MMM以上为月份名称
+			return (count <= 2 ? MONTH : -1);
+		case 'd':
+			return DAY;
+		case 'H':
+			return HOUR;
+		case 'm':
+			return MINUTE;
+		case 's':
+			return SECOND;
+		case 'S':
+			return MILLISECOND;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * 格式中的一个字段
+	 */
+	private static class Field {
+		private final int type;
+		private final int count;
+		private final String literal;
+		// 固定读取的位数，0表示读取所有连续的数字
+		private int width;
+
+		Field(int type, int count, String literal) {
+			this.type = type;
+			this.count = count;
+			this.literal = literal;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package net.meteor.utils;
+
+/**
+ * 路径分段信息，只记录每段路径在原路径中的起止位置，不生成子字符串。
+ * <p>
+ * 分段规则与<code>StringUtils.split(path, separator)</code>一致（连续的分隔符之间的空串会被忽略）。
+ * 对象可以重复使用，但不是线程安全的，一般配合ThreadLocal使用
+ *
+ * @author wuqh
+ *
+ */
+public class PathSegments {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String path;
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] ends = new int[INITIAL_CAPACITY];
+	private int count;
+
+	/**
+	 * 使用分隔符对路径进行分段，会覆盖上次分段的结果
+	 *
+	 * @param path
+	 * @param separator
+	 *            分隔符中的每个字符都作为分隔符
+	 * @return 当前对象
+	 */
+	public PathSegments tokenize(String path, String separator) {
+		this.path = path;
+		this.count = 0;
+
+		int length = path.length();
+		int start = -1;
+		for (int i = 0; i < length; i++) {
+			if (isSeparator(path.charAt(i), separator)) {
+				if (start != -1) {
+					add(start, i);
+					start = -1;
+				}
+			} else if (start == -1) {
+				start = i;
+			}
+		}
+		if (start != -1) {
+			add(start, length);
+		}
+		return this;
+	}
+
+	private boolean isSeparator(char c, String separator) {
+		return (separator.length() == 1 ? separator.charAt(0) == c : separator.indexOf(c) != -1);
+	}
+
+	private void add(int start, int end) {
+		if (count == starts.length) {
+			int[] newStarts = new int[count * 2];
+			int[] newEnds = new int[count * 2];
+			System.arraycopy(starts, 0, newStarts, 0, count);
+			System.arraycopy(ends, 0, newEnds, 0, count);
+			starts = newStarts;
+			ends = newEnds;
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+
+	/**
+	 * 被分段的路径
+	 *
+	 * @return
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * 分段数量
+	 *
+	 * @return
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * 第index段在路径中的起始位置（包含）
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int start(int index) {
+		return starts[index];
+	}
+
+	/**
+	 * 第index段在路径中的结束位置（不包含）
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int end(int index) {
+		return ends[index];
+	}
+
+	/**
+	 * 获取第index段的字符串，会生成子字符串，只在需要时调用
+	 *
+	 * @param index
+	 * @return
+	 */
+	public String get(int index) {
+		return path.substring(starts[index], ends[index]);
+	}
+}
@@ -0,0 +1,202 @@
+package net.meteor.utils;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * 带类型的URI模板变量，用于<code>{name:type}</code>形式的路径分段，在路径匹配时直接从路径字符中解析变量值。
+ * <p>
+ * 支持的类型：
+ * <ul>
+ * <li><code>{id:int}</code> - 解析为Integer</li>
+ * <li><code>{id:long}</code> - 解析为Long</li>
+ * <li><code>{id:uuid}</code> - 解析为UUID，必须是8-4-4-4-12格式</li>
+ * <li><code>{day:date(yyyyMMdd)}</code> - 使用括号中的日期格式解析为Date</li>
+ * </ul>
+ * 格式不正确的路径不会匹配该分段。这些类型名称优先于<code>{name:regex}</code>中的正则表达式
+ *
+ * @author wuqh
+ *
+ */
+public abstract class PathVariableType {
+	private static final String DATE_PREFIX = "date(";
+
+	public static final PathVariableType INT = new PathVariableType("int") {
+		@Override
+		public boolean matches(String str, int start, int end) {
+			return parseLong(str, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE) != null;
+		}
+
+		@Override
+		public Object parse(String str, int start, int end) {
+			Long value = parseLong(str, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+			return (value == null ? null : Integer.valueOf(value.intValue()));
+		}
+	};
+
+	public static final PathVariableType LONG = new PathVariableType("long") {
+		@Override
+		public boolean matches(String str, int start, int end) {
+			return parseLong(str, start, end, Long.MIN_VALUE, Long.MAX_VALUE) != null;
+		}
+
+		@Override
+		public Object parse(String str, int start, int end) {
+			return parseLong(str, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+		}
+	};
+
+	public static final PathVariableType UUID_TYPE = new PathVariableType("uuid") {
+		@Override
+		public boolean matches(String str, int start, int end) {
+			return parseUuid(str, start, end) != null;
+		}
+
+		@Override
+		public Object parse(String str, int start, int end) {
+			return parseUuid(str, start, end);
+		}
+	};
+
+	private final String name;
+
+	PathVariableType(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * 根据<code>{name:type}</code>中的type获取PathVariableType
+	 *
+	 * @param type
+	 * @return 不是支持的类型时返回<code>null</code>
+	 */
+	public static PathVariableType forName(String type) {
+		if (INT.name.equals(type)) {
+			return INT;
+		}
+		if (LONG.name.equals(type)) {
+			return LONG;
+		}
+		if (UUID_TYPE.name.equals(type)) {
+			return UUID_TYPE;
+		}
+		if (type.startsWith(DATE_PREFIX) && type.endsWith(")") && type.length() > DATE_PREFIX.length() + 1) {
+			return new DateType(type, type.substring(DATE_PREFIX.length(), type.length() - 1));
+		}
+		return null;
+	}
+
+	/**
+	 * 判断str中从start到end的字符是否符合该类型
+	 *
+	 * @param str
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public abstract boolean matches(String str, int start, int end);
+
+	/**
+	 * 将str中从start到end的字符解析为该类型的值
+	 *
+	 * @param str
+	 * @param start
+	 * @param end
+	 * @return 不符合该类型时返回<code>null</code>
+	 */
+	public abstract Object parse(String str, int start, int end);
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * 解析十进制整数，超出范围时返回<code>null</code>
+	 */
+	private static Long parseLong(String str, int start, int end, long min, long max) {
+		if (start >= end) {
+			return null;
+		}
+		boolean negative = (str.charAt(start) == '-');
+		int index = (negative ? start + 1 : start);
+		if (index == end) {
+			return null;
+		}
+		// 使用负数累加，避免Long.MIN_VALUE溢出
+		long limit = (negative ? min : -max);
+		long multmin = limit / 10;
+		long result = 0;
+		for (; index < end; index++) {
+			int digit = str.charAt(index) - '0';
+			if (digit < 0 || digit > 9 || result < multmin) {
+				return null;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return null;
+			}
+			result -= digit;
+		}
+		return Long.valueOf(negative ? result : -result);
+	}
+
+	/**
+	 * 解析8-4-4-4-12格式的UUID
+	 */
+	private static UUID parseUuid(String str, int start, int end) {
+		if (end - start != 36) {
+			return null;
+		}
+		long mostSigBits = 0;
+		long leastSigBits = 0;
+		int digits = 0;
+		for (int i = 0; i < 36; i++) {
+			char c = str.charAt(start + i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') {
+					return null;
+				}
+				continue;
+			}
+			int value = Character.digit(c, 16);
+			if (value == -1) {
+				return null;
+			}
+			if (digits < 16) {
+				mostSigBits = (mostSigBits << 4) | value;
+			} else {
+				leastSigBits = (leastSigBits << 4) | value;
+			}
+			digits++;
+		}
+		return new UUID(mostSigBits, leastSigBits);
+	}
+
+	/**
+	 * 日期类型，使用共享的{@link DatePattern}直接解析路径中的字符
+	 */
+	private static class DateType extends PathVariableType {
+		private final DatePattern datePattern;
+
+		DateType(String name, String pattern) {
+			super(name);
+			this.datePattern = DatePattern.forPattern(pattern);
+		}
+
+		@Override
+		public boolean matches(String str, int start, int end) {
+			return datePattern.parseMillis(str, start, end, true) != DatePattern.INVALID;
+		}
+
+		@Override
+		public Object parse(String str, int start, int end) {
+			long millis = datePattern.parseMillis(str, start, end, true);
+			return (millis == DatePattern.INVALID ? null : new Date(millis));
+		}
+	}
+}
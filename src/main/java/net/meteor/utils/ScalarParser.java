@@ -0,0 +1,22 @@
+package net.meteor.utils;
+
+/**
+ * 简单类型解析器，将字符串解析为某一种确定的类型，每种类型的解析器只需要在启动时获取一次。
+ * 应用可以通过{@link ScalarParsers#register(Class, ScalarParser)}注册自定义类型的解析器
+ *
+ * @param <T>
+ *            解析结果的类型
+ *
+ * @author wuqh
+ *
+ * @see ScalarParsers
+ */
+public interface ScalarParser<T> {
+	/**
+	 * 将字符串解析为指定类型的对象
+	 *
+	 * @param value
+	 * @return 字符串为空时基本类型返回默认值，其他类型返回<code>null</code>（String返回原值）
+	 */
+	T parse(String value);
+}
@@ -0,0 +1,556 @@
+package net.meteor.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 简单类型解析器的注册表，每种类型对应一个解析器，解析规则与{@link BeanUtils#convertValue(String, Class)}一致。
+ * 使用者应该在启动时获取解析器，请求时直接调用，避免每次都判断类型。
+ * <p>
+ * 枚举类型使用预先生成的名称映射查找，无法匹配时返回<code>null</code>；应用可以注册自定义类型（如金额、商品编号等值对象）的解析器，
+ * 注册后该类型可以像基本类型一样作为方法参数或者Bean属性
+ * <p>
+ * 数值类型和枚举类型的解析器可以通过{@link #isParsable(ScalarParser, String)}预先检查格式，收集绑定错误时不需要捕获NumberFormatException。
+ * URI、URL、UUID、Class等类型无法解析时返回<code>null</code>，需要根据解析结果判断
+ * <p>
+ * 与{@link BeanMetadata}相同，能被框架的ClassLoader加载的类型直接缓存；其他ClassLoader加载的类型（如应用的枚举）使用弱引用缓存，
+ * 避免ClassLoader无法被回收
+ *
+ * @author wuqh
+ *
+ */
+public class ScalarParsers {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScalarParsers.class);
+
+	private static final Map<Class<?>, ScalarParser<?>> PARSERS = new ConcurrentHashMap<Class<?>, ScalarParser<?>>();
+	// 其他ClassLoader加载的类型，枚举的解析器引用了枚举类型，值也使用弱引用（使用者已经持有解析器）
+	private static final Map<Class<?>, Reference<ScalarParser<?>>> WEAK_PARSERS = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Reference<ScalarParser<?>>>());
+
+	// 应用注册的自定义类型，需要一直保留
+	private static final Map<Class<?>, ScalarParser<?>> CUSTOM_PARSERS = new ConcurrentHashMap<Class<?>, ScalarParser<?>>();
+
+	// 不支持的类型，非空字符串也返回null
+	private static final ScalarParser<Object> UNSUPPORTED_PARSER = new AbstractScalarParser<Object>(null) {
+		@Override
+		protected Object doParse(String value) {
+			return null;
+		}
+	};
+
+	static {
+		ScalarParser<String> stringParser = new ScalarParser<String>() {
+			public String parse(String value) {
+				return value;
+			}
+		};
+		PARSERS.put(String.class, stringParser);
+		PARSERS.put(Object.class, new AbstractScalarParser<Object>(null) {
+			@Override
+			protected Object doParse(String value) {
+				return value;
+			}
+		});
+		PARSERS.put(CharSequence.class, PARSERS.get(Object.class));
+
+		registerPrimitive(Integer.class, Integer.TYPE, Integer.valueOf(0), new AbstractScalarParser<Integer>(null) {
+			@Override
+			protected Integer doParse(String value) {
+				return Integer.valueOf(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isInteger(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+			}
+		});
+		registerPrimitive(Double.class, Double.TYPE, Double.valueOf(0.0), new AbstractScalarParser<Double>(null) {
+			@Override
+			protected Double doParse(String value) {
+				return Double.valueOf(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isFloatingPoint(value);
+			}
+		});
+		registerPrimitive(Long.class, Long.TYPE, Long.valueOf(0L), new AbstractScalarParser<Long>(null) {
+			@Override
+			protected Long doParse(String value) {
+				return Long.valueOf(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isInteger(value, Long.MIN_VALUE, Long.MAX_VALUE);
+			}
+		});
+		registerPrimitive(Boolean.class, Boolean.TYPE, Boolean.FALSE, new AbstractScalarParser<Boolean>(null) {
+			@Override
+			protected Boolean doParse(String value) {
+				return Boolean.valueOf(value);
+			}
+		});
+		registerPrimitive(Byte.class, Byte.TYPE, Byte.valueOf((byte) 0), new AbstractScalarParser<Byte>(null) {
+			@Override
+			protected Byte doParse(String value) {
+				return Byte.valueOf(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isInteger(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+			}
+		});
+		registerPrimitive(Character.class, Character.TYPE, Character.valueOf((char) 0), new AbstractScalarParser<Character>(
+				null) {
+			@Override
+			protected Character doParse(String value) {
+				return Character.valueOf(value.charAt(0));
+			}
+		});
+		registerPrimitive(Short.class, Short.TYPE, Short.valueOf((short) 0), new AbstractScalarParser<Short>(null) {
+			@Override
+			protected Short doParse(String value) {
+				return Short.valueOf(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isInteger(value, Short.MIN_VALUE, Short.MAX_VALUE);
+			}
+		});
+		registerPrimitive(Float.class, Float.TYPE, Float.valueOf(0.0f), new AbstractScalarParser<Float>(null) {
+			@Override
+			protected Float doParse(String value) {
+				return Float.valueOf(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isFloatingPoint(value);
+			}
+		});
+
+		PARSERS.put(BigInteger.class, new AbstractScalarParser<BigInteger>(null) {
+			@Override
+			protected BigInteger doParse(String value) {
+				return new BigInteger(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				int start = (value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0);
+				return isDigits(value, start, value.length(), true);
+			}
+		});
+		ScalarParser<BigDecimal> bigDecimalParser = new AbstractScalarParser<BigDecimal>(null) {
+			@Override
+			protected BigDecimal doParse(String value) {
+				return new BigDecimal(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return isDecimal(value);
+			}
+		};
+		PARSERS.put(BigDecimal.class, bigDecimalParser);
+		PARSERS.put(Number.class, bigDecimalParser);
+
+		PARSERS.put(URI.class, new AbstractScalarParser<URI>(null) {
+			@Override
+			protected URI doParse(String value) {
+				try {
+					return new URI(value);
+				} catch (URISyntaxException e) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("转换到URI失败：" + e.getMessage(), e);
+					}
+					return null;
+				}
+			}
+		});
+		PARSERS.put(URL.class, new AbstractScalarParser<URL>(null) {
+			@Override
+			protected URL doParse(String value) {
+				try {
+					return new URL(value);
+				} catch (MalformedURLException e) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("转换到URL失败：" + e.getMessage(), e);
+					}
+					return null;
+				}
+			}
+		});
+		PARSERS.put(Locale.class, new AbstractScalarParser<Locale>(null) {
+			@Override
+			protected Locale doParse(String value) {
+				return new Locale(value);
+			}
+		});
+		PARSERS.put(UUID.class, new AbstractScalarParser<UUID>(null) {
+			@Override
+			protected UUID doParse(String value) {
+				try {
+					return UUID.fromString(value);
+				} catch (IllegalArgumentException e) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("转换到UUID失败：" + e.getMessage(), e);
+					}
+					return null;
+				}
+			}
+		});
+		PARSERS.put(Class.class, new AbstractScalarParser<Class<?>>(null) {
+			@Override
+			protected Class<?> doParse(String value) {
+				try {
+					// 不初始化请求中指定的类，避免执行其静态代码块
+					return Class.forName(value, false, getClassLoader());
+				} catch (ClassNotFoundException e) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("转换到Class失败：" + e.getMessage(), e);
+					}
+					return null;
+				}
+			}
+		});
+	}
+
+	private ScalarParsers() {
+	}
+
+	/**
+	 * 基本类型与封装类型使用相同的解析规则，区别只在于空字符串时基本类型返回默认值
+	 */
+	private static <T> void registerPrimitive(Class<T> wrapperType, Class<?> primitiveType, T defaultValue,
+			final AbstractScalarParser<T> wrapperParser) {
+		PARSERS.put(wrapperType, wrapperParser);
+		PARSERS.put(primitiveType, new AbstractScalarParser<T>(defaultValue) {
+			@Override
+			protected T doParse(String value) {
+				return wrapperParser.doParse(value);
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return wrapperParser.isValid(value);
+			}
+		});
+	}
+
+	private static ClassLoader getClassLoader() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return (classLoader != null ? classLoader : ScalarParsers.class.getClassLoader());
+	}
+
+	/**
+	 * 注册自定义类型的解析器，注册后该类型作为简单类型处理，应该在启动时注册
+	 *
+	 * @param type
+	 * @param parser
+	 */
+	public static <T> void register(Class<T> type, ScalarParser<? extends T> parser) {
+		Assert.notNull(type, "type不能为空");
+		Assert.notNull(parser, "parser不能为空");
+		CUSTOM_PARSERS.put(type, parser);
+		if (BeanMetadata.isCacheSafe(type)) {
+			PARSERS.put(type, parser);
+		}
+	}
+
+	/**
+	 * 是否为应用注册的自定义类型
+	 *
+	 * @param type
+	 * @return
+	 */
+	public static boolean isRegistered(Class<?> type) {
+		return CUSTOM_PARSERS.containsKey(type);
+	}
+
+	/**
+	 * 获取指定类型的解析器
+	 *
+	 * @param type
+	 * @return 不支持的类型返回的解析器总是返回<code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ScalarParser<T> getParser(Class<T> type) {
+		ScalarParser<?> parser = PARSERS.get(type);
+		if (parser != null) {
+			return (ScalarParser<T>) parser;
+		}
+
+		boolean cacheSafe = BeanMetadata.isCacheSafe(type);
+		if (!cacheSafe) {
+			parser = CUSTOM_PARSERS.get(type);
+			if (parser == null) {
+				Reference<ScalarParser<?>> reference = WEAK_PARSERS.get(type);
+				parser = (reference == null ? null : reference.get());
+			}
+			if (parser != null) {
+				return (ScalarParser<T>) parser;
+			}
+		}
+
+		parser = createParser(type);
+		if (cacheSafe) {
+			PARSERS.put(type, parser);
+		} else {
+			WEAK_PARSERS.put(type, new WeakReference<ScalarParser<?>>(parser));
+		}
+		return (ScalarParser<T>) parser;
+	}
+
+	/**
+	 * 判断字符串能否被解析器正常解析，用于在收集绑定错误时避免抛出异常。只检查内置的数值类型和枚举类型，其他解析器总是返回<code>true</code>，
+	 * 解析结果为<code>null</code>时同样表示格式不正确
+	 *
+	 * @param parser
+	 * @param value
+	 * @return
+	 */
+	public static boolean isParsable(ScalarParser<?> parser, String value) {
+		if (parser instanceof AbstractScalarParser && StringUtils.isNotBlank(value)) {
+			return ((AbstractScalarParser<?>) parser).isValid(value);
+		}
+		return true;
+	}
+
+	/**
+	 * 获取解析器对空字符串返回的值，基本类型为默认值
+	 *
+	 * @param parser
+	 * @return
+	 */
+	public static Object getBlankValue(ScalarParser<?> parser) {
+		if (parser instanceof AbstractScalarParser) {
+			return ((AbstractScalarParser<?>) parser).blankValue;
+		}
+		return null;
+	}
+
+	/**
+	 * 判断是否为指定范围内的十进制整数，规则与Long.parseLong一致
+	 */
+	private static boolean isInteger(String value, long min, long max) {
+		int length = value.length();
+		int pos = 0;
+		boolean negative = false;
+		char first = value.charAt(0);
+		if (first == '-' || first == '+') {
+			negative = (first == '-');
+			pos = 1;
+		}
+		if (pos == length) {
+			return false;
+		}
+		// 与JDK一致按负数累加，避免溢出
+		long limit = (negative ? min : -max);
+		long multmin = limit / 10;
+		long result = 0;
+		for (; pos < length; pos++) {
+			int digit = Character.digit(value.charAt(pos), 10);
+			if (digit < 0 || result < multmin) {
+				return false;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return false;
+			}
+			result -= digit;
+		}
+		return true;
+	}
+
+	/**
+	 * 判断是否为BigDecimal支持的十进制数（如-1.5、.5、1E10）
+	 */
+	private static boolean isDecimal(String value) {
+		int length = value.length();
+		int pos = 0;
+		if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+			pos = 1;
+		}
+		int exponent = length;
+		for (int i = pos; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == 'e' || c == 'E') {
+				exponent = i;
+				break;
+			}
+		}
+		int dot = value.indexOf('.', pos);
+		if (dot < 0 || dot > exponent) {
+			dot = exponent;
+		}
+		// 整数部分和小数部分至少有一位数字
+		int digits = (dot - pos) + (dot < exponent ? exponent - dot - 1 : 0);
+		if (digits < 1) {
+			return false;
+		}
+		if (!isDigits(value, pos, dot, false) || (dot < exponent && !isDigits(value, dot + 1, exponent, false))) {
+			return false;
+		}
+		if (exponent == length) {
+			return true;
+		}
+		// 指数超过int范围时BigDecimal无法解析
+		return exponent + 1 < length && isInteger(value.substring(exponent + 1), Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 判断是否为Double.parseDouble支持的十进制数，还允许首尾空白、NaN、Infinity和d、f后缀，不支持十六进制形式
+	 */
+	private static boolean isFloatingPoint(String value) {
+		String text = value.trim();
+		if (text.length() == 0) {
+			return false;
+		}
+		// 只支持ASCII数字
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) > 127) {
+				return false;
+			}
+		}
+		int start = (text.charAt(0) == '-' || text.charAt(0) == '+' ? 1 : 0);
+		if (text.regionMatches(start, "NaN", 0, 3) || text.regionMatches(start, "Infinity", 0, 8)) {
+			return text.length() == start + (text.charAt(start) == 'N' ? 3 : 8);
+		}
+		int end = text.length();
+		char last = text.charAt(end - 1);
+		if (last == 'd' || last == 'D' || last == 'f' || last == 'F') {
+			end--;
+		}
+		if (end == start) {
+			return false;
+		}
+		// 与BigDecimal不同，指数的位数不受限制
+		int exponent = end;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == 'e' || c == 'E') {
+				exponent = i;
+				break;
+			}
+		}
+		if (exponent < end) {
+			int expStart = exponent + 1;
+			if (expStart < end && (text.charAt(expStart) == '-' || text.charAt(expStart) == '+')) {
+				expStart++;
+			}
+			if (!isDigits(text, expStart, end, true)) {
+				return false;
+			}
+		}
+		return isDecimal(text.substring(0, exponent));
+	}
+
+	/**
+	 * 判断范围内是否都是数字
+	 *
+	 * @param nonEmpty
+	 *            是否要求至少有一位数字
+	 */
+	private static boolean isDigits(String value, int start, int end, boolean nonEmpty) {
+		if (nonEmpty && start >= end) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (Character.digit(value.charAt(i), 10) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 创建枚举类型的解析器，使用预先生成的名称映射查找，无法匹配时返回<code>null</code>
+	 *
+	 * @param type
+	 * @param ignoreCase
+	 *            是否忽略大小写
+	 * @return
+	 */
+	public static <E extends Enum<E>> ScalarParser<E> createEnumParser(final Class<E> type, boolean ignoreCase) {
+		final Map<String, E> constants = (ignoreCase ? new TreeMap<String, E>(String.CASE_INSENSITIVE_ORDER)
+				: new HashMap<String, E>());
+		for (E constant : type.getEnumConstants()) {
+			constants.put(constant.name(), constant);
+		}
+		return new AbstractScalarParser<E>(null) {
+			@Override
+			protected E doParse(String value) {
+				E constant = constants.get(value);
+				if (constant == null && LOGGER.isDebugEnabled()) {
+					LOGGER.debug("转换到[" + type + "]失败：没有名称为[" + value + "]的枚举值");
+				}
+				return constant;
+			}
+
+			@Override
+			boolean isValid(String value) {
+				return constants.containsKey(value);
+			}
+		};
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ScalarParser<?> createParser(Class<?> type) {
+		if (Enum.class.isAssignableFrom(type)) {
+			// 带有方法体的枚举值是枚举类型的子类
+			Class<?> enumType = (type.isEnum() ? type : type.getSuperclass());
+			return createEnumParser((Class<Enum>) enumType, false);
+		}
+		return UNSUPPORTED_PARSER;
+	}
+
+	/**
+	 * 非空字符串才进行解析，空字符串返回默认值
+	 */
+	private abstract static class AbstractScalarParser<T> implements ScalarParser<T> {
+		private final T blankValue;
+
+		AbstractScalarParser(T blankValue) {
+			this.blankValue = blankValue;
+		}
+
+		public T parse(String value) {
+			if (StringUtils.isNotBlank(value)) {
+				return doParse(value);
+			}
+			return blankValue;
+		}
+
+		protected abstract T doParse(String value);
+
+		/**
+		 * 判断非空字符串的格式是否正确，默认不检查
+		 */
+		boolean isValid(String value) {
+			return true;
+		}
+	}
+}
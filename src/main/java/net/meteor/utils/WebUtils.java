@@ -1,6 +1,7 @@
 package net.meteor.utils;
 
 import java.io.File;
+import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -40,9 +41,17 @@ public class WebUtils {
 
 	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
 	private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+	private static final String HEADER_ETAG = "ETag";
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	private static final String WEAK_ETAG_PREFIX = "W/";
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 
 	public static final String METEOR_ERROR_ATTRIBUTE = "net.meteor.errors";
 	public static final String METEOR_ERROR_PARAMETER = "errors";
+	// 需要根据输出内容生成ETag的请求
+	public static final String METEOR_ETAG_ATTRIBUTE = "net.meteor.etag";
 
 	/**
 	 * 获取Web应用的临时目录
@@ -126,7 +135,7 @@ public class WebUtils {
 			long ifModifiedSince = request.getDateHeader(HEADER_IF_MODIFIED_SINCE);
 			notModified = (ifModifiedSince >= (lastModifiedTimestamp / 1000 * 1000));
 			if (response != null) {
-				if (notModified && "GET".equals(request.getMethod())) {
+				if (notModified && isNotModifiedApplicable(request)) {
 					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 				} else {
 					response.setDateHeader(HEADER_LAST_MODIFIED, lastModifiedTimestamp);
@@ -136,6 +145,99 @@ public class WebUtils {
 		return notModified;
 	}
 
+	/**
+	 * 判断请求的内容是否修改过，没有修改过的GET和HEAD请求设置304状态
+	 * 
+	 * @param etag
+	 *            内容的ETag，response中已经有ETag时不判断
+	 * @param request
+	 * @param response
+	 * @return
+	 */
+	public static boolean checkNotModified(String etag, HttpServletRequest request, HttpServletResponse response) {
+		boolean notModified = false;
+		if (etag != null && (response == null || !response.containsHeader(HEADER_ETAG))) {
+			notModified = matchesETag(request.getHeader(HEADER_IF_NONE_MATCH), etag);
+			if (response != null) {
+				if (notModified && isNotModifiedApplicable(request)) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				}
+				// 304也需要返回ETag
+				response.setHeader(HEADER_ETAG, etag);
+			}
+		}
+		return notModified;
+	}
+
+	/**
+	 * 判断请求能否返回304，只有GET和HEAD请求可以
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public static boolean isNotModifiedApplicable(HttpServletRequest request) {
+		String method = request.getMethod();
+		return ("GET".equals(method) || "HEAD".equals(method));
+	}
+
+	/**
+	 * 使用弱比较判断If-None-Match中是否包含指定的ETag
+	 */
+	private static boolean matchesETag(String ifNoneMatch, String etag) {
+		if (StringUtils.isBlank(ifNoneMatch)) {
+			return false;
+		}
+		String opaqueTag = StringUtils.removeStart(etag, WEAK_ETAG_PREFIX);
+		for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+			candidate = candidate.trim();
+			if ("*".equals(candidate) || opaqueTag.equals(StringUtils.removeStart(candidate, WEAK_ETAG_PREFIX))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 根据输出的内容生成弱ETag（内容经过压缩等编码后仍然可以使用）
+	 * 
+	 * @param bytes
+	 * @param off
+	 * @param len
+	 * @return
+	 */
+	public static String createETag(byte[] bytes, int off, int len) {
+		return WEAK_ETAG_PREFIX + "\"" + Integer.toHexString(len) + "-" + Long.toHexString(hash(bytes, off, len))
+				+ "\"";
+	}
+
+	/**
+	 * 根据内容的版本生成弱ETag
+	 * 
+	 * @param version
+	 * @return
+	 */
+	public static String createETag(String version) {
+		byte[] bytes;
+		try {
+			bytes = version.getBytes(DEFAULT_CHARACTER_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return WEAK_ETAG_PREFIX + "\"" + Long.toHexString(hash(bytes, 0, bytes.length)) + "\"";
+	}
+
+	/**
+	 * 64位FNV-1a，只用于判断内容是否变化，不需要加密强度
+	 */
+	private static long hash(byte[] bytes, int off, int len) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = off, end = off + len; i < end; i++) {
+			hash ^= (bytes[i] & 0xff);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
 	/**
 	 * 创建MessageWriterView
 	 * 
@@ -0,0 +1,183 @@
+package net.meteor.web;
+
+import java.util.Collections;
+import java.util.Enumeration;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+
+/**
+ * 延迟获取的HttpSession，作为处理方法的HttpSession参数，避免只声明了参数的处理方法为每个请求创建session。
+ * <p>
+ * 读取和删除属性时只使用已经存在的session，不存在时按空session处理；设置非空属性或者调用getId等需要session本身的方法时才创建session，
+ * 创建时在request中设置{@link #SESSION_CREATED_ATTRIBUTE}属性
+ *
+ * @author wuqh
+ *
+ */
+public class LazyHttpSession implements HttpSession {
+	/**
+	 * 通过该类创建了新的session时设置的request属性，值为{@link Boolean#TRUE}
+	 */
+	public static final String SESSION_CREATED_ATTRIBUTE = "net.meteor.sessionCreated";
+
+	private static final String[] EMPTY_NAMES = new String[0];
+
+	private final HttpServletRequest request;
+	private HttpSession session;
+
+	public LazyHttpSession(HttpServletRequest request) {
+		this.request = request;
+	}
+
+	/**
+	 * 获取已经存在的session
+	 *
+	 * @return 不存在时返回<code>null</code>
+	 */
+	public HttpSession getExistingSession() {
+		if (session == null) {
+			session = request.getSession(false);
+		}
+		return session;
+	}
+
+	/**
+	 * 获取session，不存在时创建
+	 *
+	 * @return
+	 */
+	public HttpSession getSession() {
+		if (session == null) {
+			session = request.getSession(false);
+			if (session == null) {
+				session = request.getSession(true);
+				request.setAttribute(SESSION_CREATED_ATTRIBUTE, Boolean.TRUE);
+			}
+		}
+		return session;
+	}
+
+	/**
+	 * 判断容器中是否已经存在session
+	 *
+	 * @return
+	 */
+	public boolean exists() {
+		return getExistingSession() != null;
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		HttpSession existing = getExistingSession();
+		return (existing == null ? null : existing.getAttribute(name));
+	}
+
+	@Deprecated
+	@Override
+	public Object getValue(String name) {
+		return getAttribute(name);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public Enumeration getAttributeNames() {
+		HttpSession existing = getExistingSession();
+		return (existing == null ? Collections.enumeration(Collections.emptyList()) : existing.getAttributeNames());
+	}
+
+	@Deprecated
+	@Override
+	public String[] getValueNames() {
+		HttpSession existing = getExistingSession();
+		return (existing == null ? EMPTY_NAMES : existing.getValueNames());
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+		// 与规范一致，设置null等同于删除属性，不需要创建session
+		if (value == null) {
+			removeAttribute(name);
+			return;
+		}
+		getSession().setAttribute(name, value);
+	}
+
+	@Deprecated
+	@Override
+	public void putValue(String name, Object value) {
+		setAttribute(name, value);
+	}
+
+	@Override
+	public void removeAttribute(String name) {
+		HttpSession existing = getExistingSession();
+		if (existing != null) {
+			existing.removeAttribute(name);
+		}
+	}
+
+	@Deprecated
+	@Override
+	public void removeValue(String name) {
+		removeAttribute(name);
+	}
+
+	@Override
+	public void invalidate() {
+		HttpSession existing = getExistingSession();
+		if (existing != null) {
+			existing.invalidate();
+			// 之后再使用时重新获取
+			session = null;
+		}
+	}
+
+	@Override
+	public long getCreationTime() {
+		return getSession().getCreationTime();
+	}
+
+	@Override
+	public String getId() {
+		return getSession().getId();
+	}
+
+	@Override
+	public long getLastAccessedTime() {
+		return getSession().getLastAccessedTime();
+	}
+
+	@Override
+	public ServletContext getServletContext() {
+		return getSession().getServletContext();
+	}
+
+	@Override
+	public void setMaxInactiveInterval(int interval) {
+		getSession().setMaxInactiveInterval(interval);
+	}
+
+	@Override
+	public int getMaxInactiveInterval() {
+		return getSession().getMaxInactiveInterval();
+	}
+
+	@Deprecated
+	@Override
+	public HttpSessionContext getSessionContext() {
+		return getSession().getSessionContext();
+	}
+
+	@Override
+	public boolean isNew() {
+		return getSession().isNew();
+	}
+
+	@Override
+	public String toString() {
+		return "LazyHttpSession[" + session + "]";
+	}
+}
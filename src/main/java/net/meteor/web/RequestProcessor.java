@@ -20,8 +20,11 @@ import net.meteor.handler.RequestHandleContext;
 import net.meteor.handler.RequestHandler;
 import net.meteor.multipart.MultipartHttpServletRequest;
 import net.meteor.multipart.MultipartParser;
+import net.meteor.render.AbstractPageRender;
+import net.meteor.render.CompressionStats;
 import net.meteor.render.MessageWriterFactory;
 import net.meteor.render.PageRender;
+import net.meteor.render.ResponseCompressor;
 import net.meteor.utils.ReflectionUtils;
 import net.meteor.utils.StaticFileScanner;
 import net.meteor.utils.WebUtils;
@@ -41,6 +44,12 @@ class RequestProcessor {
 
 	private static final String METEOR_CONFIG_CLASS = "configClass";
 	private static final String ENCODING = "encoding";
+	private static final String REUSE_REQUEST_STATE = "reuseRequestState";
+	private static final String REJECT_BINDING_ERRORS = "rejectBindingErrors";
+	private static final String COMPRESS_RESPONSE = "compressResponse";
+	private static final String COMPRESS_MIN_SIZE = "compressMinSize";
+	private static final String ALLOW_HEADER = "Allow";
+	private static final String OPTIONS_METHOD = "OPTIONS";
 
 	// Meteor配置
 	private MeteorConfig meteorConfig;
@@ -62,6 +71,8 @@ class RequestProcessor {
 
 	private StaticFileScanner fileScanner;
 
+	private ResponseCompressor responseCompressor;
+
 	public RequestProcessor(WebConfig webConfig) throws ServletException {
 		initMeteorConfig(webConfig);
 		detectControllers(webConfig);
@@ -76,6 +87,10 @@ class RequestProcessor {
 		exceptionHandler = null;
 		messageWriterFactory = null;
 		fileScanner = null;
+		if (responseCompressor != null) {
+			responseCompressor.destroy();
+			responseCompressor = null;
+		}
 	}
 
 	private void initMeteorConfig(WebConfig webConfig) throws ServletException {
@@ -120,9 +135,50 @@ class RequestProcessor {
 
 		encoding = webConfig.getInitParameter(ENCODING);
 
+		// 开启后同一线程的请求之间重用请求状态，减少每个请求生成的对象
+		if (Boolean.parseBoolean(webConfig.getInitParameter(REUSE_REQUEST_STATE))) {
+			pathDetector.setReuseRequestState(true);
+		}
+
+		// 开启后参数格式不正确的请求直接返回400，不抛出转换异常
+		if (Boolean.parseBoolean(webConfig.getInitParameter(REJECT_BINDING_ERRORS))) {
+			requestHandler.setRejectBindingErrors(true);
+		}
+
+		// 开启后按照Accept-Encoding压缩渲染的内容
+		if (Boolean.parseBoolean(webConfig.getInitParameter(COMPRESS_RESPONSE))) {
+			initResponseCompressor(webConfig);
+		}
+		if (pageRender instanceof AbstractPageRender) {
+			responseCompressor = ((AbstractPageRender) pageRender).getResponseCompressor();
+		}
+
 		fileScanner = new StaticFileScanner(servletContext);
 	}
 
+	/**
+	 * 为PageRender设置响应压缩
+	 * 
+	 * @param webConfig
+	 * @throws ServletException
+	 */
+	private void initResponseCompressor(WebConfig webConfig) throws ServletException {
+		if (!(pageRender instanceof AbstractPageRender)) {
+			webConfig.getServletContext().log("PageRender不是AbstractPageRender的子类，不支持响应压缩");
+			return;
+		}
+		int minSize = ResponseCompressor.DEFAULT_MIN_SIZE;
+		String minSizeValue = webConfig.getInitParameter(COMPRESS_MIN_SIZE);
+		if (StringUtils.isNotBlank(minSizeValue)) {
+			try {
+				minSize = Integer.parseInt(minSizeValue.trim());
+			} catch (NumberFormatException e) {
+				throw new ServletException("初始化RequestProcessor失败：" + COMPRESS_MIN_SIZE + "必须是整数", e);
+			}
+		}
+		((AbstractPageRender) pageRender).setResponseCompressor(new ResponseCompressor(minSize));
+	}
+
 	/**
 	 * 扫描Controller
 	 * 
@@ -166,20 +222,22 @@ class RequestProcessor {
 			debugQueryString(request);
 
 			try {
-				processedRequest = parseMultipart(request);
+				// 获取当前request的处理器链，只使用请求路径和方法，不需要解析请求体
+				handleChain = getHandleChain(request);
 
-				// 获取当前request的处理器链
-				handleChain = getHandleChain(processedRequest);
+				RequestHandleContext handleContext = getRequestHandleContext(request, response, handleChain);
 
-				RequestHandleContext handleContext = getRequestHandleContext(processedRequest, response, handleChain);
+				// 只有处理方法需要请求参数或者上传文件时才解析文件上传的请求，找不到处理方法时不解析
+				if (handleContext != null && handleContext.isMultipartRequired()) {
+					processedRequest = parseMultipart(request);
+				}
 
 				if (!preHandleProcess(processedRequest, response, handleChain, handleContext)) {
 					return;
 				}
 
 				// URL的实际处理方法
-				handleResult = requestHandler.handle(processedRequest, response, handleContext,
-						handleChain.getUriTemplateVariables());
+				handleResult = requestHandler.handle(processedRequest, response, handleChain);
 
 				handleChain.doAfterHandle(processedRequest, response, handleResult);
 			} catch (Exception ex) {
@@ -195,11 +253,14 @@ class RequestProcessor {
 			if (isMultipartRequestParsed(processedRequest, request)) {
 				cleanupMultipart(processedRequest);
 			}
+			if (handleChain != null) {
+				handleChain.release();
+			}
 		}
 	}
 
 	/**
-	 * 预处理，判断处理方法是存在，判断last-modified头信息，以及进行HandlerInterceptor的预处理
+	 * 预处理，判断处理方法是存在，进行HandlerInterceptor的预处理，以及判断last-modified头信息
 	 * 
 	 * @param processedRequest
 	 * @param response
@@ -211,16 +272,21 @@ class RequestProcessor {
 	private boolean preHandleProcess(HttpServletRequest processedRequest, HttpServletResponse response,
 			HandleChain handleChain, RequestHandleContext handleContext) throws Exception {
 		if (handleContext == null) {
-			noHandlerFound(processedRequest, response);
+			if (handleChain != null && handleChain.getAllowHeader() != null) {
+				methodNotAllowed(processedRequest, response, handleChain.getAllowHeader());
+			} else {
+				noHandlerFound(processedRequest, response);
+			}
 			return false;
 		}
 
-		// 处理last-modified头信息（需要requestHandler支持）
-		if (isNotModified(processedRequest, response)) {
+		if (!handleChain.doPreHandle(processedRequest, response)) {
 			return false;
 		}
 
-		if (!handleChain.doPreHandle(processedRequest, response)) {
+		// 拦截器（如权限检查）通过后才处理last-modified和ETag头信息（需要requestHandler支持），避免未授权的请求得到资源的版本
+		if (isNotModified(processedRequest, response, handleContext)) {
+			handleChain.doAfterCompletion(processedRequest, response, null);
 			return false;
 		}
 
@@ -274,24 +340,33 @@ class RequestProcessor {
 	}
 
 	/**
-	 * 处理last-modified头信息
+	 * 处理last-modified和ETag头信息，处理方法标注了&#64;ETag但是没有提供版本时，渲染后根据内容生成ETag
 	 * 
 	 * @param processedRequest
 	 * @param response
+	 * @param handleContext
 	 * 
 	 */
-	private boolean isNotModified(HttpServletRequest processedRequest, HttpServletResponse response) {
-		String method = processedRequest.getMethod();
-		boolean isGet = "GET".equals(method);
-		if (isGet || "HEAD".equals(method)) {
-			long lastModified = requestHandler.getLastModified(processedRequest);
+	private boolean isNotModified(HttpServletRequest processedRequest, HttpServletResponse response,
+			RequestHandleContext handleContext) {
+		if (WebUtils.isNotModifiedApplicable(processedRequest)) {
+			long lastModified = requestHandler.getLastModified(processedRequest, handleContext);
 			if (LOGGER.isDebugEnabled()) {
 				String requestUri = meteorConfig.getUrlPathHelper().getRequestUri(processedRequest);
 				LOGGER.debug("[" + requestUri + "]的Last-Modified值是: " + lastModified);
 			}
-			if (WebUtils.checkNotModified(lastModified, processedRequest, response) && isGet) {
+			if (WebUtils.checkNotModified(lastModified, processedRequest, response)) {
 				return true;
 			}
+
+			if (handleContext.isETagEnabled()) {
+				String version = requestHandler.getVersion(processedRequest, handleContext);
+				if (version == null) {
+					processedRequest.setAttribute(WebUtils.METEOR_ETAG_ATTRIBUTE, Boolean.TRUE);
+				} else if (WebUtils.checkNotModified(WebUtils.createETag(version), processedRequest, response)) {
+					return true;
+				}
+			}
 		}
 
 		return false;
@@ -359,6 +434,30 @@ class RequestProcessor {
 		response.sendError(HttpServletResponse.SC_NOT_FOUND);
 	}
 
+	/**
+	 * 处理路径匹配但是不支持请求的HTTP方法的情况。OPTIONS请求直接返回Allow头信息，其他请求设置HTTP返回码为405
+	 * 
+	 * @param request
+	 * @param response
+	 * @param allowHeader
+	 * @throws Exception
+	 */
+	private void methodNotAllowed(HttpServletRequest request, HttpServletResponse response, String allowHeader)
+			throws Exception {
+		response.setHeader(ALLOW_HEADER, allowHeader);
+		if (OPTIONS_METHOD.equalsIgnoreCase(request.getMethod())) {
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentLength(0);
+			return;
+		}
+		if (LOGGER.isDebugEnabled()) {
+			String requestUri = meteorConfig.getUrlPathHelper().getRequestUri(request);
+			LOGGER.debug("URI [" + requestUri + "]不支持Method[" + request.getMethod() + "]，支持的方法有[" + allowHeader
+					+ "]");
+		}
+		response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+	}
+
 	/**
 	 * 处理返回的ModelAndView或者调用异常
 	 * 
@@ -379,16 +478,38 @@ class RequestProcessor {
 		}
 
 		if (result != null) {
+			if (responseCompressor != null && handleChain != null && handleChain.getHandleContext() != null) {
+				// 压缩结果计入该路径的统计
+				request.setAttribute(CompressionStats.STATS_ATTRIBUTE, handleChain.getHandleContext()
+						.getCompressionStats());
+			}
 			render(request, response, result);
 		} else {
 			LOGGER.debug("请求返回的HandleResult为null，系统认为处理成功结束");
 		}
 
 		if (handleChain != null) {
+			countCreatedSession(request, handleChain.getHandleContext());
 			handleChain.doAfterCompletion(request, response, null);
 		}
 	}
 
+	/**
+	 * 处理方法通过{@link LazyHttpSession}创建了session时计入该路径的session创建数。
+	 * 不使用session.isNew()判断，客户端返回session的cookie之前每个请求都会被重复计入
+	 * 
+	 * @param request
+	 * @param handleContext
+	 */
+	private void countCreatedSession(HttpServletRequest request, RequestHandleContext handleContext) {
+		if (handleContext != null && request.getAttribute(LazyHttpSession.SESSION_CREATED_ATTRIBUTE) != null) {
+			handleContext.recordSessionCreated();
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(handleContext + "创建了新的session");
+			}
+		}
+	}
+
 	/**
 	 * 处理返回异常的情况
 	 * 
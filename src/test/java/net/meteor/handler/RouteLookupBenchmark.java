@@ -0,0 +1,130 @@
+package net.meteor.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.meteor.utils.AntPathMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 路由查找的基准测试，比较{@link RouteTrie}与{@link PathDetector}在非AntPathMatcher时使用的逐个匹配所有路径的查找方式。
+ * <p>
+ * 路由表按常见的REST接口生成，每个资源包括列表、详情、子资源、搜索、静态文件等路径；请求路径包括直接命中、URI模板变量、
+ * "**"通配以及找不到的路径。运行方式：<code>mvn test-compile</code>后执行该类的main方法
+ *
+ * @author wuqh
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteLookupBenchmark {
+	private static final String[] ROUTE_TEMPLATES = { "/api/{res}", "/api/{res}/{id}", "/api/{res}/{id}/edit",
+			"/api/{res}/{id}/items/{itemId}", "/api/{res}/{id:\\d+}/history", "/api/{res}/search",
+			"/static/{res}/**", "/{res}/*.html" };
+
+	/**
+	 * 资源数量，路由数量为资源数量乘以每个资源的路径数
+	 */
+	@Param({ "10", "50", "200" })
+	private int resourceCount;
+
+	private AntPathMatcher pathMatcher;
+	private RouteTrie routeTrie;
+	private List<String> patterns;
+	private String[] lookupPaths;
+	private int next;
+
+	private final Map<String, String> uriTemplateVariables = new HashMap<String, String>();
+	private final Map<String, Object> typedUriTemplateVariables = new HashMap<String, Object>();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		pathMatcher = new AntPathMatcher();
+		Map<String, RestfulHandleContext> handleContextMap = new LinkedHashMap<String, RestfulHandleContext>();
+		for (int i = 0; i < resourceCount; i++) {
+			String resource = "resource" + i;
+			for (String template : ROUTE_TEMPLATES) {
+				handleContextMap.put(template.replace("{res}", resource), null);
+			}
+		}
+		handleContextMap.put("/", null);
+
+		routeTrie = new RouteTrie(pathMatcher, handleContextMap);
+		patterns = new ArrayList<String>(handleContextMap.keySet());
+
+		String last = "resource" + (resourceCount - 1);
+		String middle = "resource" + (resourceCount / 2);
+		lookupPaths = new String[] { "/api/" + middle, "/api/" + last + "/1024", "/api/" + middle + "/77/edit",
+				"/api/" + last + "/5/items/9", "/api/" + middle + "/42/history", "/api/" + last + "/search",
+				"/static/" + middle + "/js/app/main.js", "/" + last + "/index.html", "/unknown/path/here" };
+	}
+
+	private String nextPath() {
+		String path = lookupPaths[next];
+		next = (next + 1 == lookupPaths.length ? 0 : next + 1);
+		return path;
+	}
+
+	@Benchmark
+	public void routeTrie(Blackhole blackhole) {
+		uriTemplateVariables.clear();
+		typedUriTemplateVariables.clear();
+		blackhole.consume(routeTrie.lookup(nextPath(), uriTemplateVariables, typedUriTemplateVariables));
+	}
+
+	/**
+	 * 与PathDetector在非AntPathMatcher时的查找方式相同：匹配所有路径，排序后取最匹配的一个并提取URI模板变量
+	 */
+	@Benchmark
+	public void linearScan(Blackhole blackhole) {
+		uriTemplateVariables.clear();
+		typedUriTemplateVariables.clear();
+		String lookupPath = nextPath();
+		List<String> matchingPatterns = new ArrayList<String>();
+		for (String pattern : patterns) {
+			if (pathMatcher.match(pattern, lookupPath)) {
+				matchingPatterns.add(pattern);
+			}
+		}
+		if (matchingPatterns.isEmpty()) {
+			blackhole.consume(null);
+			return;
+		}
+		Collections.sort(matchingPatterns, pathMatcher.getPatternComparator(lookupPath));
+		String bestMatchPattern = matchingPatterns.get(0);
+		pathMatcher.extractUriTemplateVariables(bestMatchPattern, lookupPath, uriTemplateVariables,
+				typedUriTemplateVariables);
+		blackhole.consume(bestMatchPattern);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(RouteLookupBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
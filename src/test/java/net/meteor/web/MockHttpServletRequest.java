@@ -0,0 +1,288 @@
+package net.meteor.web;
+
+import java.io.BufferedReader;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * 测试用的HttpServletRequest，请求的路径、参数和头信息在构造后固定，除了request属性外不会在请求中创建对象，
+ * 用于统计框架本身分配的内存
+ *
+ * @author wuqh
+ *
+ */
+class MockHttpServletRequest implements HttpServletRequest {
+	private final String method;
+	private final String requestUri;
+	private final String contextPath;
+	private final Map<String, String[]> parameters = new HashMap<String, String[]>();
+	private final Map<String, String> headers = new HashMap<String, String>();
+	private final Map<String, Object> attributes = new HashMap<String, Object>();
+	private String characterEncoding;
+
+	MockHttpServletRequest(String method, String contextPath, String requestUri) {
+		this.method = method;
+		this.contextPath = contextPath;
+		this.requestUri = requestUri;
+	}
+
+	void addParameter(String name, String... values) {
+		parameters.put(name, values);
+	}
+
+	void addHeader(String name, String value) {
+		headers.put(name.toLowerCase(Locale.ENGLISH), value);
+	}
+
+	/**
+	 * 请求结束后清空属性，模拟容器为每个请求创建新的request
+	 */
+	void clearAttributes() {
+		attributes.clear();
+	}
+
+	public String getAuthType() {
+		return null;
+	}
+
+	public Cookie[] getCookies() {
+		return null;
+	}
+
+	public long getDateHeader(String name) {
+		return -1;
+	}
+
+	public String getHeader(String name) {
+		return (headers.isEmpty() ? null : headers.get(name.toLowerCase(Locale.ENGLISH)));
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Enumeration getHeaders(String name) {
+		String value = getHeader(name);
+		return Collections.enumeration(value == null ? Collections.<String> emptyList() : Collections
+				.singletonList(value));
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Enumeration getHeaderNames() {
+		return Collections.enumeration(headers.keySet());
+	}
+
+	public int getIntHeader(String name) {
+		String value = getHeader(name);
+		return (value == null ? -1 : Integer.parseInt(value));
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getPathInfo() {
+		return null;
+	}
+
+	public String getPathTranslated() {
+		return null;
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public String getQueryString() {
+		return null;
+	}
+
+	public String getRemoteUser() {
+		return null;
+	}
+
+	public boolean isUserInRole(String role) {
+		return false;
+	}
+
+	public Principal getUserPrincipal() {
+		return null;
+	}
+
+	public String getRequestedSessionId() {
+		return null;
+	}
+
+	public String getRequestURI() {
+		return requestUri;
+	}
+
+	public StringBuffer getRequestURL() {
+		return new StringBuffer("http://localhost").append(requestUri);
+	}
+
+	public String getServletPath() {
+		return "";
+	}
+
+	public HttpSession getSession(boolean create) {
+		if (create) {
+			throw new UnsupportedOperationException("测试中不能创建session");
+		}
+		return null;
+	}
+
+	public HttpSession getSession() {
+		return getSession(true);
+	}
+
+	public boolean isRequestedSessionIdValid() {
+		return false;
+	}
+
+	public boolean isRequestedSessionIdFromCookie() {
+		return false;
+	}
+
+	public boolean isRequestedSessionIdFromURL() {
+		return false;
+	}
+
+	@Deprecated
+	public boolean isRequestedSessionIdFromUrl() {
+		return false;
+	}
+
+	public Object getAttribute(String name) {
+		return (attributes.isEmpty() ? null : attributes.get(name));
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Enumeration getAttributeNames() {
+		return Collections.enumeration(attributes.keySet());
+	}
+
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	public void setCharacterEncoding(String characterEncoding) {
+		this.characterEncoding = characterEncoding;
+	}
+
+	public int getContentLength() {
+		return -1;
+	}
+
+	public String getContentType() {
+		return null;
+	}
+
+	public ServletInputStream getInputStream() {
+		throw new UnsupportedOperationException("测试请求没有请求体");
+	}
+
+	public String getParameter(String name) {
+		String[] values = parameters.get(name);
+		return (values == null || values.length == 0 ? null : values[0]);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Enumeration getParameterNames() {
+		return Collections.enumeration(parameters.keySet());
+	}
+
+	public String[] getParameterValues(String name) {
+		return parameters.get(name);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Map getParameterMap() {
+		return parameters;
+	}
+
+	public String getProtocol() {
+		return "HTTP/1.1";
+	}
+
+	public String getScheme() {
+		return "http";
+	}
+
+	public String getServerName() {
+		return "localhost";
+	}
+
+	public int getServerPort() {
+		return 80;
+	}
+
+	public BufferedReader getReader() {
+		throw new UnsupportedOperationException("测试请求没有请求体");
+	}
+
+	public String getRemoteAddr() {
+		return "127.0.0.1";
+	}
+
+	public String getRemoteHost() {
+		return "localhost";
+	}
+
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+	public Locale getLocale() {
+		return Locale.getDefault();
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Enumeration getLocales() {
+		return Collections.enumeration(Collections.singletonList(getLocale()));
+	}
+
+	public boolean isSecure() {
+		return false;
+	}
+
+	public RequestDispatcher getRequestDispatcher(String path) {
+		return null;
+	}
+
+	@Deprecated
+	public String getRealPath(String path) {
+		return null;
+	}
+
+	public int getRemotePort() {
+		return 0;
+	}
+
+	public String getLocalName() {
+		return "localhost";
+	}
+
+	public String getLocalAddr() {
+		return "127.0.0.1";
+	}
+
+	public int getLocalPort() {
+		return 80;
+	}
+}
@@ -0,0 +1,208 @@
+package net.meteor.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 测试用的HttpServletResponse，输出内容写到可重复使用的缓冲区中，通过{@link #recycle()}在请求之间重用，
+ * 用于统计框架本身分配的内存
+ *
+ * @author wuqh
+ *
+ */
+class MockHttpServletResponse implements HttpServletResponse {
+	private final ByteArrayOutputStream content = new ByteArrayOutputStream(1024);
+	private final ServletOutputStream outputStream = new ServletOutputStream() {
+		@Override
+		public void write(int b) {
+			content.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			content.write(b, off, len);
+		}
+	};
+	private final Map<String, String> headers = new HashMap<String, String>();
+	private PrintWriter writer;
+	private String characterEncoding = "ISO-8859-1";
+	private String contentType;
+	private int status = SC_OK;
+	private boolean committed;
+
+	/**
+	 * 清空响应状态和内容，模拟容器为下一个请求准备新的response，已经分配的缓冲区保留
+	 */
+	void recycle() {
+		content.reset();
+		headers.clear();
+		contentType = null;
+		status = SC_OK;
+		committed = false;
+	}
+
+	int getStatus() {
+		return status;
+	}
+
+	String getHeader(String name) {
+		return headers.get(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	String getContentAsString() throws UnsupportedEncodingException {
+		if (writer != null) {
+			writer.flush();
+		}
+		return content.toString(characterEncoding);
+	}
+
+	public void addCookie(Cookie cookie) {
+	}
+
+	public boolean containsHeader(String name) {
+		return headers.containsKey(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	public String encodeURL(String url) {
+		return url;
+	}
+
+	public String encodeRedirectURL(String url) {
+		return url;
+	}
+
+	@Deprecated
+	public String encodeUrl(String url) {
+		return url;
+	}
+
+	@Deprecated
+	public String encodeRedirectUrl(String url) {
+		return url;
+	}
+
+	public void sendError(int sc, String msg) {
+		status = sc;
+		committed = true;
+	}
+
+	public void sendError(int sc) {
+		sendError(sc, null);
+	}
+
+	public void sendRedirect(String location) {
+		status = SC_FOUND;
+		setHeader("Location", location);
+		committed = true;
+	}
+
+	public void setDateHeader(String name, long date) {
+		setHeader(name, String.valueOf(date));
+	}
+
+	public void addDateHeader(String name, long date) {
+		setDateHeader(name, date);
+	}
+
+	public void setHeader(String name, String value) {
+		headers.put(name.toLowerCase(Locale.ENGLISH), value);
+	}
+
+	public void addHeader(String name, String value) {
+		setHeader(name, value);
+	}
+
+	public void setIntHeader(String name, int value) {
+		setHeader(name, String.valueOf(value));
+	}
+
+	public void addIntHeader(String name, int value) {
+		setIntHeader(name, value);
+	}
+
+	public void setStatus(int sc) {
+		status = sc;
+	}
+
+	@Deprecated
+	public void setStatus(int sc, String sm) {
+		status = sc;
+	}
+
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public ServletOutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			writer = new PrintWriter(new OutputStreamWriter(outputStream, characterEncoding));
+		}
+		return writer;
+	}
+
+	public void setCharacterEncoding(String charset) {
+		if (writer == null) {
+			characterEncoding = charset;
+		}
+	}
+
+	public void setContentLength(int len) {
+	}
+
+	public void setContentType(String type) {
+		contentType = type;
+	}
+
+	public void setBufferSize(int size) {
+	}
+
+	public int getBufferSize() {
+		return content.size();
+	}
+
+	public void flushBuffer() {
+		if (writer != null) {
+			writer.flush();
+		}
+		committed = true;
+	}
+
+	public void resetBuffer() {
+		content.reset();
+	}
+
+	public boolean isCommitted() {
+		return committed;
+	}
+
+	public void reset() {
+		resetBuffer();
+		headers.clear();
+		status = SC_OK;
+	}
+
+	public void setLocale(Locale locale) {
+	}
+
+	public Locale getLocale() {
+		return Locale.getDefault();
+	}
+}
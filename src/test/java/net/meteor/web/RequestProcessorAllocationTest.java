@@ -0,0 +1,214 @@
+package net.meteor.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import net.meteor.annotation.Path;
+import net.meteor.annotation.RespBody;
+import net.meteor.annotation.restful.GET;
+import net.meteor.handler.ExceptionHandler;
+import net.meteor.handler.HandlerInterceptor;
+import net.meteor.multipart.MultipartParser;
+import net.meteor.provider.internal.AbstractMeteorConfig;
+import net.meteor.validation.ValidatorFactory;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 统计开启reuseRequestState后一个简单的&#64;RespBody GET请求经过{@link RequestProcessor}时分配的内存。
+ * <p>
+ * 使用{@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}统计当前线程分配的字节数，预热后取多次请求的平均值。
+ * 测试用的request、response和Controller在请求中不分配内存，统计结果都是框架分配的。目前每个请求仍然会创建ModelAndView、
+ * MessageWriterView以及Jackson的JsonGenerator，统计结果会输出到控制台
+ *
+ * @author wuqh
+ *
+ */
+public class RequestProcessorAllocationTest {
+	// 每个请求允许分配的最大字节数，剩余的分配主要是ModelAndView、MessageWriterView和JsonGenerator。
+	// JDK 8上开启重用时约为630字节，不开启时约为1060字节
+	private static final long MAX_BYTES_PER_REQUEST = 900;
+	private static final int WARMUP_REQUESTS = 20000;
+	private static final int MEASURED_REQUESTS = 2000;
+
+	private File staticFolder;
+	private RequestProcessor processor;
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void setUp() throws ServletException {
+		staticFolder = new File(System.getProperty("java.io.tmpdir"), "meteor-test-" + System.nanoTime());
+		assertTrue(staticFolder.mkdirs());
+
+		Map<String, String> initParameters = new HashMap<String, String>();
+		initParameters.put("configClass", TestMeteorConfig.class.getName());
+		initParameters.put("reuseRequestState", "true");
+		initParameters.put("encoding", "UTF-8");
+		processor = new RequestProcessor(createWebConfig(initParameters, createServletContext(staticFolder)));
+
+		request = new MockHttpServletRequest("GET", "/app", "/app/hello");
+		request.addParameter("id", "7");
+		response = new MockHttpServletResponse();
+	}
+
+	@After
+	public void tearDown() {
+		processor.destroy();
+		staticFolder.delete();
+	}
+
+	@Test
+	public void respBodyRequestAllocatesLittle() throws Exception {
+		com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+		Assume.assumeTrue(threadMXBean != null);
+
+		processRequest();
+		assertEquals(200, response.getStatus());
+		assertEquals("{\"id\":7,\"name\":\"meteor\"}", response.getContentAsString());
+
+		for (int i = 0; i < WARMUP_REQUESTS; i++) {
+			processRequest();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_REQUESTS; i++) {
+			processRequest();
+		}
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+		long bytesPerRequest = allocated / MEASURED_REQUESTS;
+
+		System.out.println("@RespBody GET请求平均分配" + bytesPerRequest + "字节（reuseRequestState=true）");
+		assertTrue("每个请求分配了" + bytesPerRequest + "字节，超过了" + MAX_BYTES_PER_REQUEST + "字节",
+				bytesPerRequest <= MAX_BYTES_PER_REQUEST);
+	}
+
+	private void processRequest() throws ServletException {
+		response.recycle();
+		processor.process(request, response);
+		request.clearAttributes();
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadMXBean() {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (!sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+		sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+		return sunThreadMXBean;
+	}
+
+	private static ServletContext createServletContext(final File staticFolder) {
+		return (ServletContext) Proxy.newProxyInstance(RequestProcessorAllocationTest.class.getClassLoader(),
+				new Class<?>[] { ServletContext.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getRealPath".equals(method.getName())) {
+							return staticFolder.getAbsolutePath();
+						}
+						return null;
+					}
+				});
+	}
+
+	private static WebConfig createWebConfig(final Map<String, String> initParameters,
+			final ServletContext servletContext) {
+		return new WebConfig() {
+			public String getInitParameter(String name) {
+				return initParameters.get(name);
+			}
+
+			public ServletContext getServletContext() {
+				return servletContext;
+			}
+		};
+	}
+
+	/**
+	 * 只包含{@link HelloController}的配置，不支持文件上传和表单校验
+	 */
+	public static class TestMeteorConfig extends AbstractMeteorConfig {
+		private final List<?> controllers = Collections.singletonList(new HelloController());
+
+		@Override
+		public List<?> getControllers(ServletContext context) {
+			return controllers;
+		}
+
+		@Override
+		public List<HandlerInterceptor> getHandlerInterceptors(ServletContext context) {
+			return null;
+		}
+
+		@Override
+		public ExceptionHandler getExceptionHandler(ServletContext context) {
+			return null;
+		}
+
+		@Override
+		public ValidatorFactory getValidatorFactory(ServletContext context) {
+			return null;
+		}
+
+		@Override
+		public MultipartParser getMultipartParser(ServletContext context) {
+			return null;
+		}
+	}
+
+	/**
+	 * 返回预先创建的对象，处理方法本身不分配内存
+	 */
+	public static class HelloController {
+		private final Map<Integer, Hello> hellos = new HashMap<Integer, Hello>();
+
+		public HelloController() {
+			hellos.put(Integer.valueOf(7), new Hello(7, "meteor"));
+		}
+
+		@GET
+		@Path("/hello")
+		@RespBody(mime = "application/json;charset=utf-8")
+		public Hello hello(int id) {
+			return hellos.get(Integer.valueOf(id));
+		}
+	}
+
+	public static class Hello {
+		private final int id;
+		private final String name;
+
+		public Hello(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+}